@@ -0,0 +1,75 @@
+package GraphicsLab;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The cross products and normalisation of FaceNormals written with the
+ * incubating Vector API, so they are done a whole SIMD register of faces at
+ * a time whether or not the JIT would have vectorised the plain loops
+ *
+ * <p>This class needs the jdk.incubator.vector module, both to compile and
+ * to run, so it lives in the src-vector source root, which is compiled
+ * separately with {@code --add-modules jdk.incubator.vector}. Nothing refers
+ * to it by name: FaceNormals loads it reflectively, and only once it has
+ * checked that the module is there
+ */
+final class FaceNormalsVector implements FaceNormals.Kernel
+{
+	/** the widest vectors of floats the processor supports */
+	static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	/**
+	 * @throws UnsupportedOperationException if the processor has no vectors of more than one float
+	 */
+	FaceNormalsVector()
+	{
+		if(SPECIES.length() < 2)
+		{   throw new UnsupportedOperationException("vectors of " + SPECIES.length() + " float are no faster");
+		}
+	}
+
+	/**
+	 * Crosses each pair of edge vectors u and v and normalises the results;
+	 * degenerate faces get a zero normal rather than NaNs
+	 * @param n the number of faces in the arrays to compute
+	 */
+	public void crossAndNormalise(float[] ux, float[] uy, float[] uz, float[] vx, float[] vy, float[] vz,
+		float[] nx, float[] ny, float[] nz, int n)
+	{
+		FloatVector zero = FloatVector.zero(SPECIES);
+		FloatVector one = FloatVector.broadcast(SPECIES, 1.0f);
+		int i = 0;
+		for(int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length())
+		{
+			FloatVector ax = FloatVector.fromArray(SPECIES, ux, i);
+			FloatVector ay = FloatVector.fromArray(SPECIES, uy, i);
+			FloatVector az = FloatVector.fromArray(SPECIES, uz, i);
+			FloatVector bx = FloatVector.fromArray(SPECIES, vx, i);
+			FloatVector by = FloatVector.fromArray(SPECIES, vy, i);
+			FloatVector bz = FloatVector.fromArray(SPECIES, vz, i);
+			FloatVector cx = ay.mul(bz).sub(az.mul(by));
+			FloatVector cy = az.mul(bx).sub(ax.mul(bz));
+			FloatVector cz = ax.mul(by).sub(ay.mul(bx));
+			FloatVector lengthSq = cx.mul(cx).add(cy.mul(cy)).add(cz.mul(cz));
+			VectorMask<Float> degenerate = lengthSq.compare(VectorOperators.LE, 0.0f);
+			FloatVector inverse = one.div(lengthSq.lanewise(VectorOperators.SQRT)).blend(zero, degenerate);
+			cx.mul(inverse).intoArray(nx, i);
+			cy.mul(inverse).intoArray(ny, i);
+			cz.mul(inverse).intoArray(nz, i);
+		}
+		// the faces left over after the last whole vector
+		for(; i < n; i++)
+		{
+			float x = uy[i] * vz[i] - uz[i] * vy[i];
+			float y = uz[i] * vx[i] - ux[i] * vz[i];
+			float z = ux[i] * vy[i] - uy[i] * vx[i];
+			float lengthSq = x * x + y * y + z * z;
+			float inverse = lengthSq > 0.0f ? 1.0f / (float) Math.sqrt(lengthSq) : 0.0f;
+			nx[i] = x * inverse;
+			ny[i] = y * inverse;
+			nz[i] = z * inverse;
+		}
+	}
+}
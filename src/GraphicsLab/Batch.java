@@ -0,0 +1,224 @@
+package GraphicsLab;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GLContext;
+
+/**
+ * Collects triangles into a streaming vertex buffer and draws them together,
+ * instead of drawing each polygon with its own glBegin and glEnd
+ *
+ * <p>Triangles are added one vertex at a time in the same way as immediate
+ * mode: set the current normal and texture coordinates, then add a vertex,
+ * which takes a copy of them. Every vertex carries a position, a normal and
+ * texture coordinates, interleaved in that order. Vertices must be added in
+ * whole triangles.
+ *
+ * <p>The collected triangles are drawn with a single glDrawArrays whenever
+ * something that would change how they look is about to happen: GLState
+ * flushes before any call that reaches OpenGL, SceneNode before changing the
+ * modelview matrix, Mesh before drawing, and GraphicsLab at the end of each
+ * frame. Anything else that changes OpenGL state directly, including the
+ * current colour, must call flush() first. Triangles flushed while a display
+ * list is being compiled are compiled into the list.
+ *
+ * <p>The number of draw calls made each frame, by batches, meshes and display
+ * lists, is counted so that it can be reported
+ */
+public class Batch
+{
+	/** the most vertices held before the batch is drawn, a whole number of triangles */
+	public static final int CAPACITY = 3 * 1024;
+
+	/**
+	 * Sets the normal given to the vertices added from now on
+	 */
+	public static void normal(float x, float y, float z)
+	{
+		normalX = x;
+		normalY = y;
+		normalZ = z;
+	}
+	/**
+	 * Sets the normal given to the vertices added from now on to a cached face normal
+	 * @param verts the array holding the face normal
+	 * @param face the handle returned by verts.faceNormal
+	 */
+	public static void faceNormal(VertexArray verts, int face)
+	{
+		verts.getFaceNormal(face, scratch);
+		normal(scratch.x, scratch.y, scratch.z);
+	}
+	/**
+	 * Sets the texture coordinates given to the vertices added from now on
+	 */
+	public static void texCoord(float s, float t)
+	{
+		texS = s;
+		texT = t;
+	}
+	/**
+	 * Adds a vertex with the current normal and texture coordinates
+	 */
+	public static void vertex(float x, float y, float z)
+	{
+		if(capture != null)
+		{
+			capture.vertex(x, y, z, normalX, normalY, normalZ, texS, texT);
+			return;
+		}
+		if(count == CAPACITY)
+		{   flush();
+		}
+		int i = count * STRIDE;
+		data[i] = x;
+		data[i + 1] = y;
+		data[i + 2] = z;
+		data[i + 3] = normalX;
+		data[i + 4] = normalY;
+		data[i + 5] = normalZ;
+		data[i + 6] = texS;
+		data[i + 7] = texT;
+		count++;
+	}
+	/**
+	 * Adds a vertex from a VertexArray with the current normal and texture coordinates
+	 */
+	public static void vertex(VertexArray verts, int handle)
+	{	vertex(verts.getX(handle), verts.getY(handle), verts.getZ(handle));
+	}
+
+	/**
+	 * Draws the triangles collected so far with the current OpenGL state. An
+	 * incomplete triangle is kept for the next batch
+	 */
+	public static void flush()
+	{
+		int vertices = count - count % 3;
+		if(vertices == 0)
+		{   return;
+		}
+
+		buffer.clear();
+		buffer.put(data, 0, vertices * STRIDE).flip();
+
+		GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+		GL11.glEnableClientState(GL11.GL_NORMAL_ARRAY);
+		GL11.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		if(GLContext.getCapabilities().OpenGL15)
+		{
+			// orphan the previous contents so that the driver need not wait
+			// for earlier draws to finish with them
+			if(vertexBuffer == 0)
+			{   vertexBuffer = GL15.glGenBuffers();
+			}
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vertexBuffer);
+			GL15.glBufferData(GL15.GL_ARRAY_BUFFER, buffer, GL15.GL_STREAM_DRAW);
+			GL11.glVertexPointer(3, GL11.GL_FLOAT, STRIDE * 4, 0L);
+			GL11.glNormalPointer(GL11.GL_FLOAT, STRIDE * 4, 3 * 4L);
+			GL11.glTexCoordPointer(2, GL11.GL_FLOAT, STRIDE * 4, 6 * 4L);
+			GL11.glDrawArrays(GL11.GL_TRIANGLES, 0, vertices);
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		}
+		else
+		{
+			GL11.glVertexPointer(3, STRIDE * 4, buffer);
+			GL11.glNormalPointer(STRIDE * 4, normalView);
+			GL11.glTexCoordPointer(2, STRIDE * 4, texCoordView);
+			GL11.glDrawArrays(GL11.GL_TRIANGLES, 0, vertices);
+		}
+		GL11.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		GL11.glDisableClientState(GL11.GL_NORMAL_ARRAY);
+		GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+
+		batches++;
+		countDraw();
+		// keep any incomplete triangle
+		System.arraycopy(data, vertices * STRIDE, data, 0, (count - vertices) * STRIDE);
+		count -= vertices;
+	}
+
+	/**
+	 * Sends the vertices added from now on to a MeshBuilder instead of drawing
+	 * them, so that code written to draw through the batch can be baked into
+	 * a mesh. Anything already in the batch is drawn first
+	 * @param builder the builder to send vertices to
+	 */
+	public static void capture(MeshBuilder builder)
+	{
+		flush();
+		capture = builder;
+	}
+	/**
+	 * Stops sending vertices to a MeshBuilder
+	 */
+	public static void endCapture()
+	{	capture = null;
+	}
+
+	/**
+	 * Ends the current frame's counts, making them available from the getters
+	 */
+	public static void endFrame()
+	{
+		frameDrawCalls = drawCalls;
+		frameBatches = batches;
+		drawCalls = 0;
+		batches = 0;
+	}
+	/**
+	 * @return the number of draw calls made in the last frame, including batches,
+	 *         meshes and display lists
+	 */
+	public static int getFrameDrawCalls()
+	{   return frameDrawCalls;
+	}
+	/**
+	 * @return the number of batches drawn in the last frame
+	 */
+	public static int getFrameBatches()
+	{   return frameBatches;
+	}
+
+	/**
+	 * @return a view of buffer that starts the given number of floats in
+	 */
+	private static java.nio.FloatBuffer view(int offset)
+	{
+		java.nio.FloatBuffer view = buffer.duplicate();
+		view.position(offset);
+		return view.slice();
+	}
+
+	/**
+	 * Counts a draw call, for batches, meshes and display lists
+	 */
+	static void countDraw()
+	{	drawCalls++;
+	}
+
+	/** the number of floats per vertex */
+	private static final int STRIDE = 8;
+	/** the vertices collected so far */
+	private static float[] data = new float[CAPACITY * STRIDE];
+	/** the direct copy of data handed to OpenGL */
+	private static java.nio.FloatBuffer buffer = BufferUtils.createFloatBuffer(CAPACITY * STRIDE);
+	/** views of buffer starting at the first normal and the first texture coordinates */
+	private static java.nio.FloatBuffer normalView = view(3), texCoordView = view(6);
+	/** the number of vertices collected so far */
+	private static int count;
+	/** the current normal */
+	private static float normalX, normalY, normalZ = 1.0f;
+	/** the current texture coordinates */
+	private static float texS, texT;
+	/** scratch space for reading face normals */
+	private static Vec3 scratch = new Vec3();
+	/** the builder vertices are being sent to, or null if they are being drawn */
+	private static MeshBuilder capture;
+	/** the streaming buffer object, or 0 if it has not been created */
+	private static int vertexBuffer;
+	/** the draw calls and batches counted so far this frame */
+	private static int drawCalls, batches;
+	/** the draw calls and batches counted in the last frame */
+	private static int frameDrawCalls, frameBatches;
+}
@@ -0,0 +1,402 @@
+package GraphicsLab;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.EXTTextureCompressionS3TC;
+import org.lwjgl.opengl.GLContext;
+
+/**
+ * Compresses images into the S3TC block formats BC1 (DXT1) and BC3 (DXT5),
+ * and decompresses them again
+ *
+ * <p>Each 4x4 block of pixels is stored as two 16 bit 5:6:5 colours and a
+ * 2 bit index per pixel choosing between them and two colours in between,
+ * which is 8 bytes in BC1 and an eighth of the size of RGBA. BC3 adds 8
+ * bytes of alpha in the same way, with two 8 bit alphas and a 3 bit index
+ * per pixel choosing between them and six alphas in between, which is a
+ * quarter of the size of RGBA. Graphics cards sample compressed textures
+ * directly, so they take that much less video memory and upload time.
+ *
+ * <p>The two colours of a block are the ends of the line the block's colours
+ * lie closest to, found by power iteration on their covariance, pulled in
+ * slightly so that the colours in between land on the block's colours more
+ * often. Compressing needs no OpenGL context, so it can be done on any
+ * thread; it is done once per image, as TextureCache keeps the result
+ */
+public class BlockCompressor
+{
+	/** the number of bytes in a block of BC1, and in either half of a block of BC3 */
+	public static final int BC1_BLOCK_SIZE = 8;
+	/** the number of bytes in a block of BC3 */
+	public static final int BC3_BLOCK_SIZE = 16;
+
+	/**
+	 * Checks whether the current OpenGL context can upload compressed images.
+	 * Must be called on the thread that owns it
+	 * @return whether OpenGL 1.3 and EXT_texture_compression_s3tc are supported
+	 */
+	public static boolean isSupported()
+	{
+		ContextCapabilities capabilities = GLContext.getCapabilities();
+		return capabilities.OpenGL13 && capabilities.GL_EXT_texture_compression_s3tc;
+	}
+
+	/**
+	 * Compresses an RGBA image, into BC1 if every pixel is opaque and BC3 otherwise
+	 * @param image an uncompressed image
+	 * @return the compressed image
+	 */
+	public static DecodedImage compress(DecodedImage image)
+	{
+		if(image.getFormat() != DecodedImage.RGBA)
+		{   throw new IllegalArgumentException("the image is already compressed");
+		}
+		int width = image.getTextureWidth();
+		int height = image.getTextureHeight();
+		ByteBuffer source = image.getPixels();
+		int format = isOpaque(source, width, image.getWidth(), image.getHeight()) ? DecodedImage.BC1 : DecodedImage.BC3;
+		ByteBuffer blocks = BufferUtils.createByteBuffer(DecodedImage.dataSize(format, width, height));
+		blocks.order(ByteOrder.LITTLE_ENDIAN);
+
+		int[] r = new int[16], g = new int[16], b = new int[16], a = new int[16];
+		for(int blockY = 0; blockY < height; blockY += 4)
+		{
+			for(int blockX = 0; blockX < width; blockX += 4)
+			{
+				for(int i = 0; i < 16; i++)
+				{
+					// images smaller than a block repeat their last row and column
+					int x = Math.min(blockX + (i & 3), width - 1);
+					int y = Math.min(blockY + (i >> 2), height - 1);
+					int offset = (y * width + x) * DecodedImage.BYTES_PER_PIXEL;
+					r[i] = source.get(offset) & 0xff;
+					g[i] = source.get(offset + 1) & 0xff;
+					b[i] = source.get(offset + 2) & 0xff;
+					a[i] = source.get(offset + 3) & 0xff;
+				}
+				if(format == DecodedImage.BC3)
+				{   encodeAlpha(a, blocks);
+				}
+				encodeColour(r, g, b, blocks);
+			}
+		}
+		blocks.clear();
+		return new DecodedImage(blocks, image.getWidth(), image.getHeight(), width, height,
+			format == DecodedImage.BC3, format);
+	}
+
+	/**
+	 * Decompresses an image, for OpenGL contexts that cannot upload it compressed
+	 * @param image a compressed image
+	 * @return the image as RGBA pixels
+	 */
+	public static DecodedImage decompress(DecodedImage image)
+	{
+		int format = image.getFormat();
+		if(format == DecodedImage.RGBA)
+		{   return image;
+		}
+		int width = image.getTextureWidth();
+		int height = image.getTextureHeight();
+		ByteBuffer blocks = image.getPixels().duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		blocks.clear();
+		ByteBuffer pixels = BufferUtils.createByteBuffer(width * height * DecodedImage.BYTES_PER_PIXEL);
+
+		int[] colours = new int[16], alphas = new int[16];
+		for(int blockY = 0; blockY < height; blockY += 4)
+		{
+			for(int blockX = 0; blockX < width; blockX += 4)
+			{
+				if(format == DecodedImage.BC3)
+				{   decodeAlpha(blocks, alphas);
+				}
+				decodeColour(blocks, colours, format == DecodedImage.BC1);
+				for(int i = 0; i < 16; i++)
+				{
+					int x = blockX + (i & 3);
+					int y = blockY + (i >> 2);
+					if(x >= width || y >= height)
+					{   continue;
+					}
+					int offset = (y * width + x) * DecodedImage.BYTES_PER_PIXEL;
+					int alpha = format == DecodedImage.BC3 ? alphas[i] : colours[i] >>> 24;
+					pixels.put(offset, (byte) (colours[i] >> 16));
+					pixels.put(offset + 1, (byte) (colours[i] >> 8));
+					pixels.put(offset + 2, (byte) colours[i]);
+					pixels.put(offset + 3, (byte) alpha);
+				}
+			}
+		}
+		return new DecodedImage(pixels, image.getWidth(), image.getHeight(), width, height, image.hasAlpha());
+	}
+
+	/**
+	 * @return the OpenGL internal format of a compressed format
+	 */
+	static int internalFormat(int format)
+	{
+		return format == DecodedImage.BC1 ? EXTTextureCompressionS3TC.GL_COMPRESSED_RGB_S3TC_DXT1_EXT
+			: EXTTextureCompressionS3TC.GL_COMPRESSED_RGBA_S3TC_DXT5_EXT;
+	}
+
+	/**
+	 * Says whether every pixel of an image has an alpha of 255. The padding
+	 * to the right of and above the image, which is transparent, is not looked at
+	 * @param pixels RGBA pixels row by row, including the padding
+	 * @param stride the number of pixels in each row, including the padding
+	 * @param width the width of the image itself
+	 * @param height the height of the image itself
+	 */
+	private static boolean isOpaque(ByteBuffer pixels, int stride, int width, int height)
+	{
+		for(int y = 0; y < height; y++)
+		{
+			for(int x = 0; x < width; x++)
+			{
+				if(pixels.get((y * stride + x) * DecodedImage.BYTES_PER_PIXEL + 3) != (byte) 0xff)
+				{   return false;
+				}
+			}
+		}
+		return true;
+	}
+	/**
+	 * Writes the colour half of a block, always in the four colour mode
+	 */
+	private static void encodeColour(int[] r, int[] g, int[] b, ByteBuffer out)
+	{
+		// the mean and covariance of the colours
+		float meanR = 0, meanG = 0, meanB = 0;
+		for(int i = 0; i < 16; i++)
+		{
+			meanR += r[i];
+			meanG += g[i];
+			meanB += b[i];
+		}
+		meanR /= 16;
+		meanG /= 16;
+		meanB /= 16;
+		float rr = 0, rg = 0, rb = 0, gg = 0, gb = 0, bb = 0;
+		for(int i = 0; i < 16; i++)
+		{
+			float dr = r[i] - meanR, dg = g[i] - meanG, db = b[i] - meanB;
+			rr += dr * dr;
+			rg += dr * dg;
+			rb += dr * db;
+			gg += dg * dg;
+			gb += dg * db;
+			bb += db * db;
+		}
+		// the principal axis, by power iteration from the grey axis
+		float axisR = 1, axisG = 1, axisB = 1;
+		for(int iteration = 0; iteration < 4; iteration++)
+		{
+			float nextR = rr * axisR + rg * axisG + rb * axisB;
+			float nextG = rg * axisR + gg * axisG + gb * axisB;
+			float nextB = rb * axisR + gb * axisG + bb * axisB;
+			float length = Math.max(Math.abs(nextR), Math.max(Math.abs(nextG), Math.abs(nextB)));
+			if(length < 1e-6f)
+			{   break;
+			}
+			axisR = nextR / length;
+			axisG = nextG / length;
+			axisB = nextB / length;
+		}
+		// the colours furthest along the axis either way
+		float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+		int low = 0, high = 0;
+		for(int i = 0; i < 16; i++)
+		{
+			float t = r[i] * axisR + g[i] * axisG + b[i] * axisB;
+			if(t < min)
+			{
+				min = t;
+				low = i;
+			}
+			if(t > max)
+			{
+				max = t;
+				high = i;
+			}
+		}
+		// inset the ends by a sixteenth of the range each
+		int colour0 = pack565(inset(r[high], r[low]), inset(g[high], g[low]), inset(b[high], b[low]));
+		int colour1 = pack565(inset(r[low], r[high]), inset(g[low], g[high]), inset(b[low], b[high]));
+		if(colour0 < colour1)
+		{
+			int swap = colour0;
+			colour0 = colour1;
+			colour1 = swap;
+		}
+
+		int indices = 0;
+		if(colour0 != colour1)
+		{
+			int[] palette = new int[4];
+			palette[0] = unpack565(colour0);
+			palette[1] = unpack565(colour1);
+			palette[2] = mix(palette[0], palette[1], 2, 1, 3);
+			palette[3] = mix(palette[0], palette[1], 1, 2, 3);
+			for(int i = 0; i < 16; i++)
+			{   indices |= nearestColour(palette, r[i], g[i], b[i]) << (2 * i);
+			}
+		}
+		out.putShort((short) colour0).putShort((short) colour1).putInt(indices);
+	}
+	/**
+	 * Writes the alpha half of a block of BC3, always in the eight alpha mode
+	 */
+	private static void encodeAlpha(int[] a, ByteBuffer out)
+	{
+		int alpha0 = 0, alpha1 = 255;
+		for(int i = 0; i < 16; i++)
+		{
+			alpha0 = Math.max(alpha0, a[i]);
+			alpha1 = Math.min(alpha1, a[i]);
+		}
+		long indices = 0;
+		if(alpha0 != alpha1)
+		{
+			int[] palette = alphaPalette(alpha0, alpha1, new int[8]);
+			for(int i = 0; i < 16; i++)
+			{
+				int best = 0;
+				for(int j = 1; j < 8; j++)
+				{
+					if(Math.abs(palette[j] - a[i]) < Math.abs(palette[best] - a[i]))
+					{   best = j;
+					}
+				}
+				indices |= (long) best << (3 * i);
+			}
+		}
+		out.put((byte) alpha0).put((byte) alpha1);
+		for(int i = 0; i < 6; i++)
+		{   out.put((byte) (indices >>> (8 * i)));
+		}
+	}
+	/**
+	 * Reads the colour half of a block
+	 * @param colours filled with the 16 colours as ARGB
+	 * @param bc1 whether the block is BC1, whose three colour mode has transparent black
+	 */
+	private static void decodeColour(ByteBuffer in, int[] colours, boolean bc1)
+	{
+		int colour0 = in.getShort() & 0xffff;
+		int colour1 = in.getShort() & 0xffff;
+		int indices = in.getInt();
+		int[] palette = new int[4];
+		palette[0] = unpack565(colour0);
+		palette[1] = unpack565(colour1);
+		if(colour0 > colour1 || !bc1)
+		{
+			palette[2] = mix(palette[0], palette[1], 2, 1, 3);
+			palette[3] = mix(palette[0], palette[1], 1, 2, 3);
+		}
+		else
+		{
+			palette[2] = mix(palette[0], palette[1], 1, 1, 2);
+			palette[3] = 0;
+		}
+		for(int i = 0; i < 16; i++)
+		{   colours[i] = palette[(indices >>> (2 * i)) & 3];
+		}
+	}
+	/**
+	 * Reads the alpha half of a block of BC3
+	 * @param alphas filled with the 16 alphas
+	 */
+	private static void decodeAlpha(ByteBuffer in, int[] alphas)
+	{
+		int alpha0 = in.get() & 0xff;
+		int alpha1 = in.get() & 0xff;
+		long indices = 0;
+		for(int i = 0; i < 6; i++)
+		{   indices |= (long) (in.get() & 0xff) << (8 * i);
+		}
+		int[] palette = alphaPalette(alpha0, alpha1, new int[8]);
+		for(int i = 0; i < 16; i++)
+		{   alphas[i] = palette[(int) (indices >>> (3 * i)) & 7];
+		}
+	}
+
+	/**
+	 * @return the eight alphas a block can choose between
+	 */
+	private static int[] alphaPalette(int alpha0, int alpha1, int[] palette)
+	{
+		palette[0] = alpha0;
+		palette[1] = alpha1;
+		if(alpha0 > alpha1)
+		{
+			for(int k = 2; k < 8; k++)
+			{   palette[k] = ((8 - k) * alpha0 + (k - 1) * alpha1) / 7;
+			}
+		}
+		else
+		{
+			for(int k = 2; k < 6; k++)
+			{   palette[k] = ((6 - k) * alpha0 + (k - 1) * alpha1) / 5;
+			}
+			palette[6] = 0;
+			palette[7] = 255;
+		}
+		return palette;
+	}
+	/**
+	 * @return the index of the colour in a palette of opaque ARGB colours closest to a colour
+	 */
+	private static int nearestColour(int[] palette, int r, int g, int b)
+	{
+		int best = 0;
+		int bestDistance = Integer.MAX_VALUE;
+		for(int i = 0; i < palette.length; i++)
+		{
+			int dr = ((palette[i] >> 16) & 0xff) - r;
+			int dg = ((palette[i] >> 8) & 0xff) - g;
+			int db = (palette[i] & 0xff) - b;
+			int distance = dr * dr + dg * dg + db * db;
+			if(distance < bestDistance)
+			{
+				best = i;
+				bestDistance = distance;
+			}
+		}
+		return best;
+	}
+	/**
+	 * @return a channel moved a sixteenth of the way from one end towards the other
+	 */
+	private static int inset(int from, int towards)
+	{   return from + (towards - from) / 16;
+	}
+	/**
+	 * @return 8 bit channels rounded to a 5:6:5 colour
+	 */
+	private static int pack565(int r, int g, int b)
+	{   return ((r * 31 + 127) / 255) << 11 | ((g * 63 + 127) / 255) << 5 | (b * 31 + 127) / 255;
+	}
+	/**
+	 * @return a 5:6:5 colour as opaque ARGB, repeating the high bits into the low ones
+	 */
+	private static int unpack565(int colour)
+	{
+		int r = (colour >> 11) & 31, g = (colour >> 5) & 63, b = colour & 31;
+		return 0xff000000 | (r << 3 | r >> 2) << 16 | (g << 2 | g >> 4) << 8 | (b << 3 | b >> 2);
+	}
+	/**
+	 * @return (weight0 * colour0 + weight1 * colour1) / total, channel by channel
+	 */
+	private static int mix(int colour0, int colour1, int weight0, int weight1, int total)
+	{
+		int mixed = 0xff000000;
+		for(int shift = 0; shift < 24; shift += 8)
+		{
+			int channel = (weight0 * ((colour0 >> shift) & 0xff) + weight1 * ((colour1 >> shift) & 0xff)) / total;
+			mixed |= channel << shift;
+		}
+		return mixed;
+	}
+}
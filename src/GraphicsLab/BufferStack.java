@@ -0,0 +1,158 @@
+package GraphicsLab;
+import org.lwjgl.BufferUtils;
+
+/**
+ * Hands out short-lived direct FloatBuffers for passing values to OpenGL
+ *
+ * <p>Each thread has its own BufferStack. Buffers are grouped into size
+ * classes of powers of two, and each class keeps its own pool of direct
+ * buffers which are handed out in stack order: push() marks the current
+ * position of every pool and pop() returns everything handed out since the
+ * matching push(). A buffer is only ever allocated when a pool runs dry, so
+ * once the application has warmed up no memory is allocated at all.
+ *
+ * <pre>
+ * BufferStack stack = BufferStack.push();
+ * GL11.glLight(GL11.GL_LIGHT0, GL11.GL_AMBIENT, stack.floats(r, g, b, 1.0f));
+ * stack.pop();
+ * </pre>
+ */
+public class BufferStack
+{
+	/** the size of the largest class in floats; requests larger than this are rejected */
+	public static final int MAX_FLOATS = 1 << 12;
+
+	/**
+	 * @return the calling thread's BufferStack
+	 */
+	public static BufferStack get()
+	{   return STACKS.get();
+	}
+	/**
+	 * Marks the calling thread's BufferStack so that buffers handed out from
+	 * now on are returned by the next pop()
+	 * @return the calling thread's BufferStack
+	 */
+	public static BufferStack push()
+	{
+		BufferStack stack = STACKS.get();
+		stack.pushFrame();
+		return stack;
+	}
+
+	/**
+	 * Returns every buffer handed out since the matching push()
+	 */
+	public final void pop()
+	{
+		if(depth == 0)
+		{   throw new IllegalStateException("BufferStack popped more times than it was pushed");
+		}
+		depth--;
+		System.arraycopy(frames[depth], 0, used, 0, CLASSES);
+	}
+
+	/**
+	 * @param count the number of floats needed
+	 * @return a cleared direct buffer whose limit is count
+	 */
+	public final java.nio.FloatBuffer floats(int count)
+	{
+		int sizeClass = sizeClass(count);
+		java.nio.FloatBuffer[] pool = pools[sizeClass];
+		int index = used[sizeClass]++;
+		if(index == pool.length)
+		{   pool = pools[sizeClass] = java.util.Arrays.copyOf(pool, Math.max(4, pool.length * 2));
+		}
+		if(pool[index] == null)
+		{   pool[index] = BufferUtils.createFloatBuffer(1 << sizeClass);
+		}
+		java.nio.FloatBuffer buffer = pool[index];
+		buffer.clear().limit(count);
+		return buffer;
+	}
+	/**
+	 * @return a direct buffer holding a copy of the given values, ready to be read
+	 */
+	public final java.nio.FloatBuffer floats(float[] values)
+	{
+		java.nio.FloatBuffer buffer = floats(values.length);
+		buffer.put(values).flip();
+		return buffer;
+	}
+	/**
+	 * @return a direct buffer holding the four given values, ready to be read
+	 */
+	public final java.nio.FloatBuffer floats(float a, float b, float c, float d)
+	{
+		java.nio.FloatBuffer buffer = floats(4);
+		buffer.put(a).put(b).put(c).put(d).flip();
+		return buffer;
+	}
+
+	/**
+	 * Copies values into this thread's scratch buffer for their size class. The
+	 * buffer is only valid until the next call for the same size class, so it
+	 * should be passed straight to OpenGL
+	 * @return a direct buffer holding a copy of the given values, ready to be read
+	 */
+	final java.nio.FloatBuffer scratch(float[] values)
+	{
+		int sizeClass = sizeClass(values.length);
+		if(scratch[sizeClass] == null)
+		{   scratch[sizeClass] = BufferUtils.createFloatBuffer(1 << sizeClass);
+		}
+		java.nio.FloatBuffer buffer = scratch[sizeClass];
+		buffer.clear();
+		buffer.put(values).flip();
+		return buffer;
+	}
+
+	/**
+	 * Records the current position of every pool
+	 */
+	private void pushFrame()
+	{
+		if(depth == frames.length)
+		{
+			frames = java.util.Arrays.copyOf(frames, depth * 2);
+			for(int i = depth; i < frames.length; i++)
+			{   frames[i] = new int[CLASSES];
+			}
+		}
+		System.arraycopy(used, 0, frames[depth], 0, CLASSES);
+		depth++;
+	}
+	/**
+	 * @return the index of the smallest power of two size class that holds count floats
+	 */
+	private static int sizeClass(int count)
+	{
+		if(count < 0 || count > MAX_FLOATS)
+		{   throw new IllegalArgumentException("cannot hand out a buffer of " + count + " floats");
+		}
+		return count <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(count - 1);
+	}
+
+	/** the number of size classes, from 1 float up to MAX_FLOATS */
+	private static final int CLASSES = Integer.numberOfTrailingZeros(MAX_FLOATS) + 1;
+	/** the BufferStack of each thread */
+	private static final ThreadLocal<BufferStack> STACKS = new ThreadLocal<BufferStack>()
+	{
+		@Override
+		protected BufferStack initialValue()
+		{   return new BufferStack();
+		}
+	};
+
+	/** the buffers of each size class, allocated as they are first needed */
+	private java.nio.FloatBuffer[][] pools = new java.nio.FloatBuffer[CLASSES][0];
+	/** the number of buffers of each size class currently handed out */
+	private int[] used = new int[CLASSES];
+	/** the saved value of used for each push() */
+	private int[][] frames = new int[8][CLASSES];
+	/** the number of push() calls not yet popped */
+	private int depth;
+	/** one single-use buffer per size class backing FloatBuffer.wrap */
+	private java.nio.FloatBuffer[] scratch = new java.nio.FloatBuffer[CLASSES];
+}
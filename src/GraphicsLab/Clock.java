@@ -0,0 +1,29 @@
+package GraphicsLab;
+
+/**
+ * Decides how much time passes between frames
+ *
+ * <p>The application loop asks its clock once per frame how long the frame
+ * took, and hands that to the scene to advance its animations by. A
+ * RealTimeClock measures it, so animations keep pace with the wall clock
+ * however fast frames are drawn. A FixedStepClock or ScriptedClock makes it
+ * up, so the same run produces the same frames every time, as fast as they
+ * can be drawn, which is what benchmarks and comparisons need
+ */
+public interface Clock
+{
+	/**
+	 * Starts a new frame
+	 * @return the number of seconds that passed since the last frame started,
+	 *         or 0 for the first frame
+	 */
+	public float nextFrame();
+	/**
+	 * @return the number of seconds that have passed in total, by this clock
+	 */
+	public double getTime();
+	/**
+	 * @return whether the time follows the wall clock, so that runs cannot be repeated exactly
+	 */
+	public boolean isRealTime();
+}
@@ -0,0 +1,100 @@
+package GraphicsLab;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates clocks from short descriptions, so that a clock can be chosen
+ * without changing any code
+ *
+ * <p>A description is one of:
+ * <ul>
+ * <li>"real", or nothing, for a RealTimeClock
+ * <li>"fixed:<i>seconds</i>" for a FixedStepClock, such as "fixed:0.0166667"
+ * <li>"script:<i>seconds</i>,<i>seconds</i>,..." for a ScriptedClock
+ * <li>"script:<i>file</i>" for a ScriptedClock whose steps are read from a
+ *     file, one number of seconds per line
+ * </ul>
+ */
+public class Clocks
+{
+	/** the system property the application loop reads its clock's description from */
+	public static final String PROPERTY = "graphicslab.clock";
+
+	/**
+	 * @return the clock described by the graphicslab.clock system property
+	 * @throws IllegalArgumentException if the description cannot be understood
+	 */
+	public static Clock fromProperty()
+	{   return parse(System.getProperty(PROPERTY));
+	}
+
+	/**
+	 * @param description a description of a clock, or null for a RealTimeClock
+	 * @return the clock
+	 * @throws IllegalArgumentException if the description cannot be understood
+	 */
+	public static Clock parse(String description)
+	{
+		if(description == null || description.trim().isEmpty() || description.trim().equals("real"))
+		{   return new RealTimeClock();
+		}
+		description = description.trim();
+		try
+		{
+			if(description.startsWith("fixed:"))
+			{   return new FixedStepClock(Float.parseFloat(description.substring("fixed:".length())));
+			}
+			if(description.startsWith("script:"))
+			{
+				String script = description.substring("script:".length());
+				File file = new File(script);
+				return new ScriptedClock(file.isFile() ? readSteps(file) : parseSteps(script.split(",")));
+			}
+		}
+		catch(NumberFormatException e)
+		{   throw new IllegalArgumentException("cannot understand the clock \"" + description + "\"", e);
+		}
+		catch(IOException e)
+		{   throw new IllegalArgumentException("cannot read the clock \"" + description + "\"", e);
+		}
+		throw new IllegalArgumentException("cannot understand the clock \"" + description + "\"");
+	}
+
+	/**
+	 * @return the steps in a file, one per line, skipping blank lines
+	 */
+	private static float[] readSteps(File file) throws IOException
+	{
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try
+		{
+			String line;
+			while((line = reader.readLine()) != null)
+			{
+				if(!line.trim().isEmpty())
+				{   lines.add(line);
+				}
+			}
+		}
+		finally
+		{   reader.close();
+		}
+		return parseSteps(lines.toArray(new String[lines.size()]));
+	}
+	/**
+	 * @return numbers of seconds parsed from strings
+	 */
+	private static float[] parseSteps(String[] strings)
+	{
+		float[] steps = new float[strings.length];
+		for(int i = 0; i < strings.length; i++)
+		{   steps[i] = Float.parseFloat(strings[i].trim());
+		}
+		return steps;
+	}
+}
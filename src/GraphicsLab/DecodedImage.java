@@ -0,0 +1,263 @@
+package GraphicsLab;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import javax.imageio.ImageIO;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.newdawn.slick.opengl.Texture;
+import org.newdawn.slick.opengl.TextureImpl;
+
+/**
+ * An image decoded into RGBA pixels in a direct buffer, ready to be uploaded
+ * as a texture
+ *
+ * <p>The pixels are padded to power of two dimensions in the same way as
+ * Slick's TextureLoader: the image sits in the first rows and columns, and
+ * the rest is transparent black. Decoding needs no OpenGL context, so it can
+ * be done on any thread; only upload must be called on the thread that owns
+ * the context
+ *
+ * <p>The pixels may instead be compressed by BlockCompressor, in which case
+ * they are uploaded compressed if OpenGL supports it and decompressed first
+ * if not
+ */
+public class DecodedImage
+{
+	/** the number of bytes per pixel */
+	public static final int BYTES_PER_PIXEL = 4;
+	/** the formats pixels can be held in: uncompressed, BC1 (DXT1) and BC3 (DXT5) */
+	public static final int RGBA = 0, BC1 = 1, BC3 = 2;
+
+	/**
+	 * Constructs a DecodedImage from pixels that have already been decoded
+	 * @param pixels textureWidth * textureHeight RGBA pixels, row by row
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @param textureWidth the width of the padded pixels, a power of two
+	 * @param textureHeight the height of the padded pixels, a power of two
+	 * @param alpha whether the image has an alpha channel
+	 */
+	public DecodedImage(ByteBuffer pixels, int width, int height, int textureWidth, int textureHeight, boolean alpha)
+	{   this(pixels, width, height, textureWidth, textureHeight, alpha, RGBA);
+	}
+	/**
+	 * Constructs a DecodedImage from pixels that have already been decoded and maybe compressed
+	 * @param pixels dataSize(format, textureWidth, textureHeight) bytes of pixels
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @param textureWidth the width of the padded pixels, a power of two
+	 * @param textureHeight the height of the padded pixels, a power of two
+	 * @param alpha whether the image has an alpha channel
+	 * @param format RGBA, BC1 or BC3
+	 */
+	public DecodedImage(ByteBuffer pixels, int width, int height, int textureWidth, int textureHeight, boolean alpha,
+		int format)
+	{
+		this.pixels = pixels;
+		this.format = format;
+		this.width = width;
+		this.height = height;
+		this.textureWidth = textureWidth;
+		this.textureHeight = textureHeight;
+		this.alpha = alpha;
+	}
+
+	/**
+	 * Decodes an image with ImageIO
+	 * @param in the encoded image, such as a PNG or JPEG, which is not closed
+	 * @param flipped whether to flip the image so that its bottom row comes
+	 *        first, which puts it the right way up with a t of 0 at the bottom
+	 * @return the decoded image
+	 * @throws IOException if the image cannot be read or is not in a known format
+	 */
+	public static DecodedImage decode(InputStream in, boolean flipped) throws IOException
+	{
+		BufferedImage image = ImageIO.read(in);
+		if(image == null)
+		{   throw new IOException("not an image in a format ImageIO can read");
+		}
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int textureWidth = powerOfTwo(width);
+		int textureHeight = powerOfTwo(height);
+		boolean alpha = image.getColorModel().hasAlpha();
+
+		int[] row = new int[width];
+		ByteBuffer pixels = BufferUtils.createByteBuffer(textureWidth * textureHeight * BYTES_PER_PIXEL);
+		for(int y = 0; y < height; y++)
+		{
+			image.getRGB(0, flipped ? height - 1 - y : y, width, 1, row, 0, width);
+			pixels.position(y * textureWidth * BYTES_PER_PIXEL);
+			for(int argb : row)
+			{
+				pixels.put((byte) (argb >> 16)).put((byte) (argb >> 8)).put((byte) argb);
+				pixels.put(alpha ? (byte) (argb >>> 24) : (byte) 0xff);
+			}
+		}
+		pixels.clear();
+		return new DecodedImage(pixels, width, height, textureWidth, textureHeight, alpha);
+	}
+
+	/**
+	 * @param format RGBA, BC1 or BC3
+	 * @return the number of bytes of pixels a texture of a size takes in a format
+	 */
+	public static int dataSize(int format, int textureWidth, int textureHeight)
+	{
+		if(format == RGBA)
+		{   return textureWidth * textureHeight * BYTES_PER_PIXEL;
+		}
+		int blocks = ((textureWidth + 3) / 4) * ((textureHeight + 3) / 4);
+		return blocks * (format == BC1 ? BlockCompressor.BC1_BLOCK_SIZE : BlockCompressor.BC3_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param format RGBA, BC1 or BC3
+	 * @return the name of the format
+	 */
+	public static String formatName(int format)
+	{   return format == BC1 ? "BC1" : format == BC3 ? "BC3" : "RGBA";
+	}
+
+	/**
+	 * Uploads the pixels into a new texture with linear filtering. Must be
+	 * called on the thread that owns the OpenGL context
+	 * @param ref the name the texture is known by
+	 * @return the texture, which is left bound
+	 */
+	public final Texture upload(String ref)
+	{
+		if(format != RGBA && !BlockCompressor.isSupported())
+		{
+			DecodedImage decompressed = BlockCompressor.decompress(this);
+			Texture texture = decompressed.upload(ref);
+			uploadedBytes = decompressed.getUploadedBytes();
+			uploadedFormat = RGBA;
+			return texture;
+		}
+		int id = GL11.glGenTextures();
+		GLState.bindTexture(id);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+		if(format != RGBA)
+		{
+			GL13.glCompressedTexImage2D(GL11.GL_TEXTURE_2D, 0, BlockCompressor.internalFormat(format), textureWidth,
+				textureHeight, 0, pixels);
+		}
+		else
+		{
+			GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, alpha ? GL11.GL_RGBA8 : GL11.GL_RGB, textureWidth, textureHeight, 0,
+				GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, pixels);
+		}
+		uploadedBytes = dataSize(format, textureWidth, textureHeight);
+		uploadedFormat = format;
+		return texture(ref, id);
+	}
+
+	/**
+	 * @return the number of bytes of video memory the uploaded texture takes,
+	 *         which is more than the pixels if they had to be decompressed, or
+	 *         0 if it has not been uploaded
+	 */
+	public final int getUploadedBytes()
+	{   return uploadedBytes;
+	}
+	/**
+	 * @return the format the texture was uploaded in, which is RGBA if the
+	 *         pixels had to be decompressed
+	 */
+	public final int getUploadedFormat()
+	{   return uploadedFormat;
+	}
+	/**
+	 * @return the format of the pixels, RGBA, BC1 or BC3
+	 */
+	public final int getFormat()
+	{   return format;
+	}
+	/**
+	 * @return the pixels, as RGBA row by row including padding or as compressed blocks
+	 */
+	public final ByteBuffer getPixels()
+	{   return pixels;
+	}
+	/**
+	 * @return the width of the image
+	 */
+	public final int getWidth()
+	{   return width;
+	}
+	/**
+	 * @return the height of the image
+	 */
+	public final int getHeight()
+	{   return height;
+	}
+	/**
+	 * @return the width of the padded pixels
+	 */
+	public final int getTextureWidth()
+	{   return textureWidth;
+	}
+	/**
+	 * @return the height of the padded pixels
+	 */
+	public final int getTextureHeight()
+	{   return textureHeight;
+	}
+	/**
+	 * @return whether the image has an alpha channel
+	 */
+	public final boolean hasAlpha()
+	{   return alpha;
+	}
+
+	/**
+	 * @return the smallest power of two that is at least n
+	 */
+	public static int powerOfTwo(int n)
+	{
+		int power = 1;
+		while(power < n)
+		{   power *= 2;
+		}
+		return power;
+	}
+
+	/**
+	 * Describes an uploaded texture in the same way as Slick's TextureLoader
+	 * @param ref the name the texture is known by
+	 * @param id the OpenGL name of the texture
+	 * @return the Slick texture
+	 */
+	final Texture texture(String ref, int id)
+	{
+		TextureImpl texture = new TextureImpl(ref, GL11.GL_TEXTURE_2D, id);
+		texture.setWidth(width);
+		texture.setHeight(height);
+		texture.setTextureWidth(textureWidth);
+		texture.setTextureHeight(textureHeight);
+		texture.setAlpha(alpha);
+		return texture;
+	}
+
+	/** the pixels, as RGBA row by row including padding or as compressed blocks */
+	private ByteBuffer pixels;
+	/** the format of the pixels */
+	private int format;
+	/** the number of bytes of video memory the uploaded texture takes */
+	private int uploadedBytes;
+	/** the format the texture was uploaded in */
+	private int uploadedFormat;
+	/** the size of the image */
+	private int width, height;
+	/** the size of the padded pixels */
+	private int textureWidth, textureHeight;
+	/** whether the image has an alpha channel */
+	private boolean alpha;
+}
@@ -0,0 +1,170 @@
+package GraphicsLab;
+
+/**
+ * Computes the unit normals of many faces at once from a packed position array
+ *
+ * <p>Faces are read from an index array, three or four indices per face, and
+ * are processed in blocks: the positions of each block are first gathered into
+ * separate x, y and z arrays, then the cross products and normalisation are
+ * done a SIMD register of faces at a time with the incubating Vector API. This
+ * gives the same results as the Newell method used by the Normal constructors
+ * for planar faces.
+ *
+ * <p>The Vector API is kept out of this source tree, which builds on Java 11
+ * without it: FaceNormalsVector is in the src-vector source root, compiled
+ * on its own with {@code --add-modules jdk.incubator.vector}, and is loaded
+ * by name. It is only used when it has been compiled onto the class path,
+ * java is given the same flag, and the processor has vectors of at least two
+ * floats. Otherwise compute falls back to computeScalar, so the results are
+ * the same either way
+ *
+ * <p>A FaceNormals object holds the scratch arrays for one block, so it should
+ * be created once and reused; it is not safe to share between threads
+ */
+public class FaceNormals
+{
+	/** the number of faces processed per block */
+	public static final int BLOCK = 256;
+
+	/**
+	 * @return whether compute uses the Vector API rather than falling back to computeScalar
+	 */
+	public static boolean isVectorised()
+	{   return KERNEL != null;
+	}
+
+	/**
+	 * Computes the normals of a run of faces
+	 * @param positions x, y and z of each vertex in turn
+	 * @param indices the vertex indices of each face in turn
+	 * @param verticesPerFace 3 for triangles or 4 for planar quads
+	 * @param faceCount the number of faces to compute
+	 * @param out receives the normal x, y and z of each face in turn
+	 */
+	public final void compute(float[] positions, int[] indices, int verticesPerFace, int faceCount, float[] out)
+	{
+		if(verticesPerFace != 3 && verticesPerFace != 4)
+		{   throw new IllegalArgumentException("faces must have 3 or 4 vertices, not " + verticesPerFace);
+		}
+		if(KERNEL == null)
+		{
+			computeScalar(positions, indices, verticesPerFace, faceCount, out);
+			return;
+		}
+		for(int first = 0; first < faceCount; first += BLOCK)
+		{
+			int n = Math.min(BLOCK, faceCount - first);
+			gather(positions, indices, verticesPerFace, first, n);
+			KERNEL.crossAndNormalise(ux, uy, uz, vx, vy, vz, nx, ny, nz, n);
+			for(int i = 0; i < n; i++)
+			{
+				out[(first + i) * 3] = nx[i];
+				out[(first + i) * 3 + 1] = ny[i];
+				out[(first + i) * 3 + 2] = nz[i];
+			}
+		}
+	}
+
+	/**
+	 * Computes the normals of a run of faces one at a time with Newell's method.
+	 * This gives the reference results that compute is measured against, is
+	 * what compute falls back to without the Vector API, and works for faces
+	 * with any number of vertices
+	 * @param positions x, y and z of each vertex in turn
+	 * @param indices the vertex indices of each face in turn
+	 * @param verticesPerFace the number of vertices in every face
+	 * @param faceCount the number of faces to compute
+	 * @param out receives the normal x, y and z of each face in turn
+	 */
+	public static void computeScalar(float[] positions, int[] indices, int verticesPerFace, int faceCount, float[] out)
+	{
+		for(int face = 0; face < faceCount; face++)
+		{
+			float x = 0.0f, y = 0.0f, z = 0.0f;
+			int base = face * verticesPerFace;
+			// walk the edges starting with the one from the last vertex back to the first
+			int a = indices[base + verticesPerFace - 1] * 3;
+			for(int i = 0; i < verticesPerFace; i++)
+			{
+				int b = indices[base + i] * 3;
+				x += (positions[a + 1] - positions[b + 1]) * (positions[a + 2] + positions[b + 2]);
+				y += (positions[a + 2] - positions[b + 2]) * (positions[a] + positions[b]);
+				z += (positions[a] - positions[b]) * (positions[a + 1] + positions[b + 1]);
+				a = b;
+			}
+			out[face * 3] = x;
+			out[face * 3 + 1] = y;
+			out[face * 3 + 2] = z;
+			Vec3.normalise(out, face * 3);
+		}
+	}
+
+	/**
+	 * Gathers the two edge vectors of each face in a block. For a triangle abc
+	 * these are b-a and c-a; for a planar quad abcd they are the diagonals c-a
+	 * and d-b, whose cross product is parallel to the quad's Newell normal
+	 */
+	private void gather(float[] positions, int[] indices, int verticesPerFace, int first, int n)
+	{
+		for(int i = 0; i < n; i++)
+		{
+			int base = (first + i) * verticesPerFace;
+			int a = indices[base] * 3;
+			int b = indices[base + 1] * 3;
+			int c = indices[base + 2] * 3;
+			int d = verticesPerFace == 4 ? indices[base + 3] * 3 : a;
+			int e1 = verticesPerFace == 4 ? c : b;
+			int s2 = verticesPerFace == 4 ? b : a;
+			int e2 = verticesPerFace == 4 ? d : c;
+			ux[i] = positions[e1] - positions[a];
+			uy[i] = positions[e1 + 1] - positions[a + 1];
+			uz[i] = positions[e1 + 2] - positions[a + 2];
+			vx[i] = positions[e2] - positions[s2];
+			vy[i] = positions[e2 + 1] - positions[s2 + 1];
+			vz[i] = positions[e2 + 2] - positions[s2 + 2];
+		}
+	}
+
+	/**
+	 * @return the Vector API kernel, or null if FaceNormalsVector or the
+	 *         jdk.incubator.vector module is missing, or the processor has no
+	 *         vectors of more than one float
+	 */
+	private static Kernel loadKernel()
+	{
+		try
+		{
+			Class.forName("jdk.incubator.vector.FloatVector");
+			return (Kernel) Class.forName(FaceNormals.class.getName() + "Vector").getDeclaredConstructor().newInstance();
+		}
+		catch(ReflectiveOperationException e)
+		{   return null;
+		}
+		catch(LinkageError e)
+		{   return null;
+		}
+	}
+
+	/**
+	 * Crosses each pair of gathered edge vectors and normalises the results,
+	 * giving degenerate faces a zero normal rather than NaNs
+	 */
+	interface Kernel
+	{
+		/**
+		 * @param n the number of faces in the arrays to compute
+		 */
+		void crossAndNormalise(float[] ux, float[] uy, float[] uz, float[] vx, float[] vy, float[] vz,
+			float[] nx, float[] ny, float[] nz, int n);
+	}
+
+	/** the Vector API kernel, or null if compute falls back to computeScalar */
+	private static final Kernel KERNEL = loadKernel();
+
+	/** first edge vector of each face in the current block */
+	private final float[] ux = new float[BLOCK], uy = new float[BLOCK], uz = new float[BLOCK];
+	/** second edge vector of each face in the current block */
+	private final float[] vx = new float[BLOCK], vy = new float[BLOCK], vz = new float[BLOCK];
+	/** normal of each face in the current block */
+	private final float[] nx = new float[BLOCK], ny = new float[BLOCK], nz = new float[BLOCK];
+}
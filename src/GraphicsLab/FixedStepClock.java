@@ -0,0 +1,45 @@
+package GraphicsLab;
+
+/**
+ * A clock in which every frame takes the same time, however long it really
+ * took to draw
+ */
+public class FixedStepClock implements Clock
+{
+	/**
+	 * @param step the number of seconds each frame takes
+	 */
+	public FixedStepClock(float step)
+	{
+		if(!(step > 0.0f))
+		{   throw new IllegalArgumentException("the step must be positive, not " + step);
+		}
+		this.step = step;
+	}
+
+	public float nextFrame()
+	{
+		if(frames++ == 0)
+		{   return 0.0f;
+		}
+		return step;
+	}
+	public double getTime()
+	{   return Math.max(frames - 1, 0) * (double) step;
+	}
+	public boolean isRealTime()
+	{   return false;
+	}
+
+	/**
+	 * @return the number of seconds each frame takes
+	 */
+	public final float getStep()
+	{   return step;
+	}
+
+	/** the number of seconds each frame takes */
+	private float step;
+	/** the number of frames started */
+	private long frames;
+}
@@ -0,0 +1,79 @@
+package GraphicsLab;
+
+/**
+ * Turns frames of any length into a whole number of fixed length simulation
+ * steps
+ *
+ * <p>Each frame's time is added to an accumulator, and a step is taken for
+ * every whole step that has built up; whatever is left over carries into the
+ * next frame. Animations are then advanced by the same amount every step, so
+ * they play out the same way however the frames fall. getAlpha says how far
+ * the leftover time is into the next step, for drawing between the last two
+ * steps. After a long stall at most maxSteps are taken and the rest of the
+ * time is dropped, so that a slow frame cannot make the next one slower still
+ */
+public class FixedTimestep
+{
+	/**
+	 * @param step the number of seconds each step takes
+	 * @param maxSteps the most steps a single frame may take
+	 */
+	public FixedTimestep(float step, int maxSteps)
+	{
+		if(!(step > 0.0f) || maxSteps < 1)
+		{   throw new IllegalArgumentException("the step and the most steps per frame must be positive");
+		}
+		this.step = step;
+		this.maxSteps = maxSteps;
+	}
+
+	/**
+	 * Adds a frame's time to the accumulator
+	 * @param seconds the number of seconds the frame took
+	 * @return the number of steps to take
+	 */
+	public final int advance(float seconds)
+	{
+		accumulator += seconds;
+		int steps = (int) (accumulator / step);
+		if(steps > maxSteps)
+		{
+			// drop the time that cannot be caught up on
+			steps = maxSteps;
+			accumulator = 0.0;
+		}
+		else
+		{   accumulator -= steps * (double) step;
+		}
+		totalSteps += steps;
+		return steps;
+	}
+
+	/**
+	 * @return how far the leftover time is into the next step, from 0 to 1
+	 */
+	public final float getAlpha()
+	{   return (float) (accumulator / step);
+	}
+	/**
+	 * @return the number of seconds each step takes
+	 */
+	public final float getStep()
+	{   return step;
+	}
+	/**
+	 * @return the number of steps taken so far
+	 */
+	public final long getTotalSteps()
+	{   return totalSteps;
+	}
+
+	/** the number of seconds each step takes */
+	private float step;
+	/** the most steps a single frame may take */
+	private int maxSteps;
+	/** the seconds that have built up and not yet been stepped */
+	private double accumulator;
+	/** the number of steps taken so far */
+	private long totalSteps;
+}
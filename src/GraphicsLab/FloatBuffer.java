@@ -1,18 +1,16 @@
 package GraphicsLab;
 
-import org.lwjgl.BufferUtils;
-
-/** Creates a FloatBuffer from an array of floats **/
+/**
+ * Creates a FloatBuffer from an array of floats.
+ * 
+ * The returned buffer belongs to the calling thread and is sized to the array,
+ * but it is reused by the next call with an array of a similar size, so it
+ * should be passed straight to OpenGL. Prefer BufferStack where more than one
+ * buffer is needed at a time.
+ **/
 public class FloatBuffer {
 	
-	public static java.nio.FloatBuffer fb;
-	
 	public static java.nio.FloatBuffer wrap(float[] buffer) {
-		if (fb == null)
-		{
-			fb = BufferUtils.createFloatBuffer(buffer.length);
-		}
-		fb.put(buffer).flip();
-		return fb;
+		return BufferStack.get().scratch(buffer);
 	}
 }
@@ -0,0 +1,94 @@
+package GraphicsLab;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event for each frame of the application loop, with
+ * how long each of its phases took
+ *
+ * <p>The event lasts from the start of the frame until it has been shown,
+ * not counting the wait for the next frame. It is only made while a
+ * recording has it enabled, so frames cost nothing more than a check
+ * otherwise
+ */
+@Name("GraphicsLab.Frame")
+@Label("Frame")
+@Category("GraphicsLab")
+@Description("A frame of the application loop, and how long each of its phases took")
+@StackTrace(false)
+public class FrameEvent extends Event
+{
+	/**
+	 * @return a new event that has begun, or null if no recording wants frames
+	 */
+	public static FrameEvent start()
+	{
+		if(!TYPE.isEnabled())
+		{   return null;
+		}
+		FrameEvent event = new FrameEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends an event and commits it with the durations of the frame's phases
+	 * @param event the event returned by start, or null to do nothing
+	 * @param checkInput the nanoseconds checking input took
+	 * @param updateCamera the nanoseconds updating the camera took
+	 * @param updateScene the nanoseconds updating the scene took
+	 * @param renderScene the nanoseconds drawing the scene took
+	 * @param displayUpdate the nanoseconds showing the frame took
+	 * @param throttled whether the frame is held to the idle frame rate
+	 */
+	public static void finish(FrameEvent event, long checkInput, long updateCamera, long updateScene, long renderScene,
+		long displayUpdate, boolean throttled)
+	{
+		if(event == null)
+		{   return;
+		}
+		event.end();
+		if(event.shouldCommit())
+		{
+			event.checkInput = checkInput;
+			event.updateCamera = updateCamera;
+			event.updateScene = updateScene;
+			event.renderScene = renderScene;
+			event.displayUpdate = displayUpdate;
+			event.drawCalls = Batch.getFrameDrawCalls();
+			event.throttled = throttled;
+			event.commit();
+		}
+	}
+
+	/** the type of the event, which says whether any recording wants it */
+	private static final EventType TYPE = EventType.getEventType(FrameEvent.class);
+
+	@Label("Check Input")
+	@Timespan(Timespan.NANOSECONDS)
+	long checkInput;
+	@Label("Update Camera")
+	@Timespan(Timespan.NANOSECONDS)
+	long updateCamera;
+	@Label("Update Scene")
+	@Timespan(Timespan.NANOSECONDS)
+	long updateScene;
+	@Label("Render Scene")
+	@Timespan(Timespan.NANOSECONDS)
+	long renderScene;
+	@Label("Display Update")
+	@Description("Includes waiting for the graphics card and, with vertical sync, for the vertical blank")
+	@Timespan(Timespan.NANOSECONDS)
+	long displayUpdate;
+	@Label("Draw Calls")
+	int drawCalls;
+	@Label("Throttled")
+	@Description("Whether the frame rate was being held to the idle rate as the frame began")
+	boolean throttled;
+}
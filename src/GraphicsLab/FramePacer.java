@@ -0,0 +1,206 @@
+package GraphicsLab;
+import java.util.concurrent.locks.LockSupport;
+
+import org.lwjgl.opengl.Display;
+
+/**
+ * Holds the application loop to a frame rate, so that a scene that has
+ * nothing new to show does not keep a core and the graphics card busy
+ *
+ * <p>Each frame has a deadline one period after the last. sync sleeps until
+ * shortly before it, then spins the rest of the way, which is far more
+ * precise than sleeping alone: sleeps can overrun by a millisecond or more,
+ * so the margin left for spinning grows to the longest overrun seen and
+ * shrinks again slowly while sleeps are punctual. A frame that misses its
+ * deadline by more than a period does not make the next frames hurry to
+ * catch up.
+ *
+ * <p>While the scene says it is idle, meaning only ambient motion is being
+ * shown, the frame rate drops to the idle rate. It only does so once the
+ * scene has been idle for a while, so that a brief pause does not make the
+ * frame rate jump up and down, and goes back up as soon as it is not.
+ *
+ * <p>Vertical sync is set through the pacer too, as it also decides when
+ * frames are shown. All methods but the setters must be called on the
+ * thread that owns the OpenGL context
+ */
+public class FramePacer
+{
+	/** the system property the frame rate cap is read from, 0 for none */
+	public static final String FPS_PROPERTY = "graphicslab.fps";
+	/** the system property the idle frame rate is read from, 0 for no idle throttling */
+	public static final String IDLE_FPS_PROPERTY = "graphicslab.idlefps";
+	/** the system property whether to wait for the vertical blank is read from, true or false */
+	public static final String VSYNC_PROPERTY = "graphicslab.vsync";
+
+	/**
+	 * @param targetFps the most frames to draw per second, or 0 for no limit
+	 * @param idleFps the most frames to draw per second while the scene is idle, or 0 to not throttle
+	 * @param vSync whether to wait for the vertical blank before showing each frame
+	 */
+	public FramePacer(int targetFps, int idleFps, boolean vSync)
+	{
+		this.targetFps = targetFps;
+		this.idleFps = idleFps;
+		this.vSync = vSync;
+	}
+
+	/**
+	 * Makes a pacer from the graphicslab.fps, graphicslab.idlefps and
+	 * graphicslab.vsync system properties. Unless they say otherwise, a real
+	 * time clock is capped at 60 frames per second with vertical sync and
+	 * throttled to 15 while idle, and any other clock is not paced at all so
+	 * that benchmarks run as fast as frames can be drawn
+	 * @param realTime whether the application loop's clock is real time
+	 * @return the pacer
+	 * @throws IllegalArgumentException if a frame rate is not a whole number
+	 */
+	public static FramePacer fromProperties(boolean realTime)
+	{
+		return new FramePacer(intProperty(FPS_PROPERTY, realTime ? 60 : 0),
+			intProperty(IDLE_FPS_PROPERTY, realTime ? 15 : 0),
+			Boolean.parseBoolean(System.getProperty(VSYNC_PROPERTY, String.valueOf(realTime))));
+	}
+
+	/**
+	 * Waits until the deadline of the next frame. Call once per frame, after
+	 * the frame has been shown
+	 * @param idle whether the scene is showing nothing but ambient motion
+	 */
+	public final void sync(boolean idle)
+	{
+		if(vSyncChanged)
+		{
+			vSyncChanged = false;
+			Display.setVSyncEnabled(vSync);
+		}
+		long now = System.nanoTime();
+		if(!idle)
+		{   idleSince = -1;
+		}
+		else if(idleSince < 0)
+		{   idleSince = now;
+		}
+		throttled = idle && idleFps > 0 && now - idleSince >= IDLE_DELAY;
+		int fps = throttled && (idleFps < targetFps || targetFps <= 0) ? idleFps : targetFps;
+		if(fps <= 0)
+		{
+			deadline = now;
+			return;
+		}
+		long period = 1000000000L / fps;
+		deadline += period;
+		// too far behind to catch up, so start again from now
+		if(deadline < now - period)
+		{   deadline = now;
+		}
+		// sleep most of the way, learning how far sleeps overrun
+		for(long remaining = deadline - now; remaining > spinNanos; remaining = deadline - System.nanoTime())
+		{
+			long sleep = remaining - spinNanos;
+			long before = System.nanoTime();
+			LockSupport.parkNanos(sleep);
+			long overrun = System.nanoTime() - before - sleep;
+			if(overrun > spinNanos)
+			{   spinNanos = Math.min(overrun, MAX_SPIN);
+			}
+			else
+			{   spinNanos -= (spinNanos - MIN_SPIN) / 16;
+			}
+		}
+		// and spin the rest
+		while(System.nanoTime() < deadline)
+		{   Thread.yield();
+		}
+	}
+
+	/**
+	 * @return the most frames to draw per second, or 0 for no limit
+	 */
+	public final int getTargetFps()
+	{   return targetFps;
+	}
+	/**
+	 * @param targetFps the most frames to draw per second, or 0 for no limit
+	 */
+	public final void setTargetFps(int targetFps)
+	{   this.targetFps = targetFps;
+	}
+	/**
+	 * @return the most frames to draw per second while the scene is idle, or 0 to not throttle
+	 */
+	public final int getIdleFps()
+	{   return idleFps;
+	}
+	/**
+	 * @param idleFps the most frames to draw per second while the scene is idle, or 0 to not throttle
+	 */
+	public final void setIdleFps(int idleFps)
+	{   this.idleFps = idleFps;
+	}
+	/**
+	 * @return whether to wait for the vertical blank before showing each frame
+	 */
+	public final boolean isVSyncEnabled()
+	{   return vSync;
+	}
+	/**
+	 * @param vSync whether to wait for the vertical blank before showing each frame, from the next sync
+	 */
+	public final void setVSyncEnabled(boolean vSync)
+	{
+		this.vSync = vSync;
+		vSyncChanged = true;
+	}
+	/**
+	 * @return whether the last frame was held to the idle frame rate
+	 */
+	public final boolean isThrottled()
+	{   return throttled;
+	}
+	/**
+	 * @return how long before each deadline sleeping stops and spinning starts, in nanoseconds
+	 */
+	public final long getSpinNanos()
+	{   return spinNanos;
+	}
+
+	/**
+	 * @return the whole number in a system property, or a default if it is not set
+	 */
+	private static int intProperty(String name, int defaultValue)
+	{
+		String value = System.getProperty(name);
+		if(value == null || value.trim().isEmpty())
+		{   return defaultValue;
+		}
+		try
+		{   return Integer.parseInt(value.trim());
+		}
+		catch(NumberFormatException e)
+		{   throw new IllegalArgumentException("cannot understand " + name + "=\"" + value + "\"", e);
+		}
+	}
+
+	/** the least and most time left for spinning before a deadline, in nanoseconds */
+	private static final long MIN_SPIN = 200000L, MAX_SPIN = 4000000L;
+	/** how long the scene must be idle before the frame rate drops, in nanoseconds */
+	private static final long IDLE_DELAY = 500000000L;
+
+	/** the most frames to draw per second, or 0 for no limit */
+	private volatile int targetFps;
+	/** the most frames to draw per second while the scene is idle, or 0 to not throttle */
+	private volatile int idleFps;
+	/** whether to wait for the vertical blank */
+	private volatile boolean vSync;
+	/** whether vSync has not been passed to the display yet */
+	private volatile boolean vSyncChanged = true;
+	/** the deadline of the last frame, by System.nanoTime */
+	private long deadline = System.nanoTime();
+	/** how long before a deadline sleeping stops */
+	private long spinNanos = 1000000L;
+	/** when the scene became idle, or -1 if it is not */
+	private long idleSince = -1;
+	/** whether the last frame was held to the idle frame rate */
+	private boolean throttled;
+}
@@ -0,0 +1,80 @@
+package GraphicsLab;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Keeps every TimingSpan, so that the time a frame takes can be broken down
+ * into its parts
+ *
+ * <p>The application loop times each of its phases, named after the methods
+ * they call: checkInput, updateCamera, updateScene, renderScene and
+ * Display.update, along with the whole frame. A scene can time parts of its
+ * own work in the same way by asking for spans of its own, preferably named
+ * after the class doing the work, such as "Hologram.render". Spans time
+ * work on the CPU only: drawing commands may finish on the graphics card
+ * long after they are issued, which then shows up in Display.update.
+ *
+ * <p>Each span is registered with the platform MBean server as
+ * GraphicsLab:type=FrameTiming,name=<i>name</i>, so it can be watched with
+ * JConsole or any other JMX client, and is shown by the timings overlay
+ */
+public class FrameTimings
+{
+	/** the JMX domain the spans are registered in */
+	public static final String DOMAIN = "GraphicsLab";
+
+	/**
+	 * Gets the span with a name, making and registering it the first time it
+	 * is asked for. Spans should be looked up once and kept, not looked up
+	 * every frame
+	 * @param name the name of the span, which may not contain any of ,=:*?"
+	 * @return the span
+	 */
+	public static synchronized TimingSpan span(String name)
+	{
+		TimingSpan span = byName.get(name);
+		if(span == null)
+		{
+			span = new TimingSpan(name);
+			byName.put(name, span);
+			spans.add(span);
+			try
+			{   ManagementFactory.getPlatformMBeanServer().registerMBean(span,
+					new ObjectName(DOMAIN + ":type=FrameTiming,name=" + name));
+			}
+			catch(JMException e)
+			{   System.err.println("Could not register the timing span " + name + " with JMX: " + e.getMessage());
+			}
+		}
+		return span;
+	}
+
+	/**
+	 * @return every span, in the order they were made
+	 */
+	public static List<TimingSpan> getSpans()
+	{   return Collections.unmodifiableList(spans);
+	}
+
+	/**
+	 * Forgets every duration recorded by every span
+	 */
+	public static void reset()
+	{
+		for(TimingSpan span : spans)
+		{   span.reset();
+		}
+	}
+
+	/** the spans by name */
+	private static Map<String, TimingSpan> byName = new HashMap<String, TimingSpan>();
+	/** the spans in the order they were made, which can be read while a span is being made */
+	private static List<TimingSpan> spans = new CopyOnWriteArrayList<TimingSpan>();
+}
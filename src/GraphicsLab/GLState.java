@@ -0,0 +1,393 @@
+package GraphicsLab;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Shadows the parts of OpenGL's fixed function state that the labs change
+ * every frame, and drops calls that would not change anything
+ *
+ * <p>Capabilities, the bound 2D texture, the blend function, front face
+ * materials, light colours and the global ambient light are tracked. Each
+ * call through this class either reaches OpenGL and updates the shadow copy,
+ * or is elided because the shadow copy already matches; both are counted.
+ *
+ * <p>The shadow copy is only correct if every change to the tracked state goes
+ * through this class. Code that changes it any other way, for example by
+ * calling GL11 directly or popping an attribute group that was pushed after
+ * a tracked change, must call invalidate() afterwards. While a display list is
+ * being compiled nothing is executed, so every call is passed through and the
+ * shadow copy is left alone; use newList and endList for this, and callList
+ * to call the list so that only the state the list changes is forgotten.
+ *
+ * <p>Any triangles waiting in the Batch are drawn before a call reaches OpenGL.
+ * All calls must be made on the thread that owns the OpenGL context
+ */
+public class GLState
+{
+	/**
+	 * Enables an OpenGL capability, such as GL_LIGHTING, unless it is already enabled
+	 */
+	public static void enable(int cap)
+	{
+		touch(CAPS);
+		int slot = capSlot(cap);
+		if(slot >= 0 && capStates[slot] == ON)
+		{   elided++;
+		    return;
+		}
+		Batch.flush();
+		GL11.glEnable(cap);
+		issued++;
+		if(slot >= 0)
+		{   capStates[slot] = ON;
+		}
+	}
+	/**
+	 * Disables an OpenGL capability unless it is already disabled
+	 */
+	public static void disable(int cap)
+	{
+		touch(CAPS);
+		int slot = capSlot(cap);
+		if(slot >= 0 && capStates[slot] == OFF)
+		{   elided++;
+		    return;
+		}
+		Batch.flush();
+		GL11.glDisable(cap);
+		issued++;
+		if(slot >= 0)
+		{   capStates[slot] = OFF;
+		}
+	}
+	/**
+	 * Binds a texture to GL_TEXTURE_2D unless it is already bound
+	 */
+	public static void bindTexture(int texture)
+	{
+		touch(TEXTURE);
+		if(!recording && boundTexture == texture)
+		{   elided++;
+		    return;
+		}
+		Batch.flush();
+		GL11.glBindTexture(GL11.GL_TEXTURE_2D, texture);
+		issued++;
+		if(!recording)
+		{   boundTexture = texture;
+		}
+	}
+	/**
+	 * Deletes a texture. If it was bound, OpenGL binds texture 0 in its place.
+	 * Deleting is never compiled into a display list, so it always happens at once
+	 */
+	public static void deleteTexture(int texture)
+	{
+		Batch.flush();
+		GL11.glDeleteTextures(texture);
+		issued++;
+		if(boundTexture == texture)
+		{   boundTexture = 0;
+		}
+	}
+	/**
+	 * Sets the blend function unless it is already set
+	 */
+	public static void blendFunc(int source, int destination)
+	{
+		touch(BLEND);
+		if(!recording && blendSource == source && blendDestination == destination)
+		{   elided++;
+		    return;
+		}
+		Batch.flush();
+		GL11.glBlendFunc(source, destination);
+		issued++;
+		if(!recording)
+		{
+			blendSource = source;
+			blendDestination = destination;
+		}
+	}
+	/**
+	 * Sets the front face shininess unless it is already set
+	 */
+	public static void shininess(float shininess)
+	{
+		touch(MATERIAL);
+		if(!recording && shininessValid && frontShininess == shininess)
+		{   elided++;
+		    return;
+		}
+		Batch.flush();
+		GL11.glMaterialf(GL11.GL_FRONT, GL11.GL_SHININESS, shininess);
+		issued++;
+		if(!recording)
+		{
+			frontShininess = shininess;
+			shininessValid = true;
+		}
+	}
+	/**
+	 * Sets a front face material colour unless it is already set
+	 * @param pname GL_SPECULAR or GL_AMBIENT_AND_DIFFUSE
+	 */
+	public static void material(int pname, float r, float g, float b, float a)
+	{
+		touch(MATERIAL);
+		float[] shadow = pname == GL11.GL_SPECULAR ? frontSpecular
+			: pname == GL11.GL_AMBIENT_AND_DIFFUSE ? frontAmbientAndDiffuse : null;
+		if(issue(shadow, r, g, b, a))
+		{
+			BufferStack stack = BufferStack.push();
+			GL11.glMaterial(GL11.GL_FRONT, pname, stack.floats(r, g, b, a));
+			stack.pop();
+		}
+	}
+	/**
+	 * Sets a light's colour unless it is already set. Light positions are not
+	 * handled here, as OpenGL transforms them by the current modelview matrix
+	 * and so they must be re-issued whenever that changes
+	 * @param light GL_LIGHT0 to GL_LIGHT7
+	 * @param pname GL_AMBIENT, GL_DIFFUSE or GL_SPECULAR
+	 */
+	public static void light(int light, int pname, float r, float g, float b, float a)
+	{
+		touch(LIGHT);
+		int index = light - GL11.GL_LIGHT0;
+		int param = pname - GL11.GL_AMBIENT;
+		float[] shadow = index >= 0 && index < 8 && param >= 0 && param < 3 ? lightColours[index * 3 + param] : null;
+		if(issue(shadow, r, g, b, a))
+		{
+			BufferStack stack = BufferStack.push();
+			GL11.glLight(light, pname, stack.floats(r, g, b, a));
+			stack.pop();
+		}
+	}
+	/**
+	 * Sets the global ambient light unless it is already set
+	 */
+	public static void lightModelAmbient(float r, float g, float b, float a)
+	{
+		touch(AMBIENT);
+		if(issue(globalAmbient, r, g, b, a))
+		{
+			BufferStack stack = BufferStack.push();
+			GL11.glLightModel(GL11.GL_LIGHT_MODEL_AMBIENT, stack.floats(r, g, b, a));
+			stack.pop();
+		}
+	}
+
+	/**
+	 * Starts compiling a display list. Until endList is called every call is
+	 * passed through to OpenGL and recorded into the list
+	 */
+	public static void newList(int list)
+	{
+		Batch.flush();
+		GL11.glNewList(list, GL11.GL_COMPILE);
+		recording = true;
+		recordingList = list;
+		recordingTouched = 0;
+	}
+	/**
+	 * Finishes compiling a display list
+	 */
+	public static void endList()
+	{
+		Batch.flush();
+		GL11.glEndList();
+		recording = false;
+		if(listCount == lists.length)
+		{
+			lists = java.util.Arrays.copyOf(lists, listCount * 2);
+			listTouched = java.util.Arrays.copyOf(listTouched, listCount * 2);
+		}
+		lists[listCount] = recordingList;
+		listTouched[listCount] = recordingTouched;
+		listCount++;
+	}
+	/**
+	 * Calls a display list, then forgets the shadow copy of whatever state was
+	 * changed through this class while the list was compiled. Lists that were
+	 * not compiled with newList and endList make the whole shadow copy be forgotten
+	 */
+	public static void callList(int list)
+	{
+		Batch.flush();
+		GL11.glCallList(list);
+		Batch.countDraw();
+		issued++;
+		int touched = ALL;
+		// later compilations of the same list replace earlier ones
+		for(int i = listCount - 1; i >= 0; i--)
+		{
+			if(lists[i] == list)
+			{
+				touched = listTouched[i];
+				break;
+			}
+		}
+		invalidate(touched);
+	}
+	/**
+	 * Forgets the shadow copy so that the next call for each piece of state reaches OpenGL
+	 */
+	public static void invalidate()
+	{	invalidate(ALL);
+	}
+
+	/**
+	 * @return the number of calls that have reached OpenGL since the counters were last reset
+	 */
+	public static long getIssued()
+	{   return issued;
+	}
+	/**
+	 * @return the number of calls that were dropped since the counters were last reset
+	 */
+	public static long getElided()
+	{   return elided;
+	}
+	/**
+	 * Sets both counters back to zero
+	 */
+	public static void resetCounters()
+	{
+		issued = 0;
+		elided = 0;
+	}
+
+	/**
+	 * Forgets the shadow copy of some kinds of state
+	 * @param kinds a combination of CAPS, TEXTURE, BLEND, MATERIAL, LIGHT and AMBIENT
+	 */
+	private static void invalidate(int kinds)
+	{
+		if((kinds & CAPS) != 0)
+		{   java.util.Arrays.fill(capStates, UNKNOWN);
+		}
+		if((kinds & TEXTURE) != 0)
+		{   boundTexture = -1;
+		}
+		if((kinds & BLEND) != 0)
+		{
+			blendSource = -1;
+			blendDestination = -1;
+		}
+		if((kinds & MATERIAL) != 0)
+		{
+			shininessValid = false;
+			frontSpecular[4] = 0.0f;
+			frontAmbientAndDiffuse[4] = 0.0f;
+		}
+		if((kinds & LIGHT) != 0)
+		{
+			for(float[] colour : lightColours)
+			{   colour[4] = 0.0f;
+			}
+		}
+		if((kinds & AMBIENT) != 0)
+		{   globalAmbient[4] = 0.0f;
+		}
+	}
+	/**
+	 * Notes that a kind of state is being changed by the display list being compiled, if any
+	 */
+	private static void touch(int kind)
+	{
+		if(recording)
+		{   recordingTouched |= kind;
+		}
+	}
+	/**
+	 * Decides whether a colour needs to be issued, and if so updates its shadow
+	 * and flushes the batch so that it is drawn with the old colour.
+	 * Element 4 of a shadow array is non-zero when the first four are valid
+	 * @param shadow the shadow copy, or null if the state is not tracked
+	 * @return true if the call should reach OpenGL
+	 */
+	private static boolean issue(float[] shadow, float r, float g, float b, float a)
+	{
+		if(shadow == null || recording)
+		{   Batch.flush();
+		    issued++;
+		    return true;
+		}
+		if(shadow[4] != 0.0f && shadow[0] == r && shadow[1] == g && shadow[2] == b && shadow[3] == a)
+		{   elided++;
+		    return false;
+		}
+		shadow[0] = r;
+		shadow[1] = g;
+		shadow[2] = b;
+		shadow[3] = a;
+		shadow[4] = 1.0f;
+		Batch.flush();
+		issued++;
+		return true;
+	}
+	/**
+	 * @return the slot tracking a capability, claiming a free one if needed,
+	 *         or -1 if the capability should not be tracked right now
+	 */
+	private static int capSlot(int cap)
+	{
+		if(recording)
+		{   return -1;
+		}
+		for(int i = 0; i < capCount; i++)
+		{
+			if(caps[i] == cap)
+			{   return i;
+			}
+		}
+		if(capCount == caps.length)
+		{   return -1;
+		}
+		caps[capCount] = cap;
+		capStates[capCount] = UNKNOWN;
+		return capCount++;
+	}
+
+	/** capability states */
+	private static final byte UNKNOWN = 0, ON = 1, OFF = 2;
+	/** kinds of state, for tracking what display lists change */
+	private static final int CAPS = 1, TEXTURE = 2, BLEND = 4, MATERIAL = 8, LIGHT = 16, AMBIENT = 32, ALL = 63;
+
+	/** the capabilities being tracked */
+	private static int[] caps = new int[32];
+	/** the known state of each tracked capability */
+	private static byte[] capStates = new byte[32];
+	/** the number of capabilities being tracked */
+	private static int capCount;
+	/** the texture bound to GL_TEXTURE_2D, or -1 if unknown */
+	private static int boundTexture = -1;
+	/** the blend function, or -1 if unknown */
+	private static int blendSource = -1, blendDestination = -1;
+	/** the front face shininess */
+	private static float frontShininess;
+	/** whether frontShininess is known */
+	private static boolean shininessValid;
+	/** front face material colours */
+	private static float[] frontSpecular = new float[5], frontAmbientAndDiffuse = new float[5];
+	/** ambient, diffuse and specular colours of each light */
+	private static float[][] lightColours = new float[8 * 3][5];
+	/** the global ambient light */
+	private static float[] globalAmbient = new float[5];
+	/** whether a display list is being compiled */
+	private static boolean recording;
+	/** the display list being compiled */
+	private static int recordingList;
+	/** the kinds of state changed by the display list being compiled */
+	private static int recordingTouched;
+	/** the display lists compiled so far */
+	private static int[] lists = new int[8];
+	/** the kinds of state changed by each compiled display list */
+	private static int[] listTouched = new int[8];
+	/** the number of compiled display lists */
+	private static int listCount;
+	/** the number of calls that reached OpenGL */
+	private static long issued;
+	/** the number of calls that were dropped */
+	private static long elided;
+}
@@ -7,7 +7,6 @@ package GraphicsLab;
 import org.lwjgl.opengl.Display;
 import org.lwjgl.opengl.DisplayMode;
 import org.lwjgl.opengl.GL11;
-import org.lwjgl.util.glu.GLU;
 import org.newdawn.slick.opengl.Texture;
 import org.newdawn.slick.opengl.TextureLoader;
 import org.newdawn.slick.util.ResourceLoader;
@@ -57,10 +56,42 @@ public abstract class GraphicsLab
     private final float viewingAxisDistanceMin = 0.1f;
     /** the maximum camera offset for axis aligned views */
     private final float viewingAxisDistanceMax = 100.0f;
+    /** the projection and viewing matrices of the axis aligned view, rebuilt only when the axis or offset changes */
+    private Matrix4f axisProjection = new Matrix4f(), axisView = new Matrix4f();
+    /** the axis, 'x', 'y' or 'z', that axisProjection and axisView were built for, or 0 if they have not been */
+    private char axisBuilt = 0;
+    /** the camera offset that axisProjection and axisView were built for */
+    private float axisDistanceBuilt;
+    /** when the draw call count was last shown in the window title, in nanoseconds */
+    private long lastReport;
+    /** the projection last built by setPerspective */
+    private Matrix4f perspective = new Matrix4f();
+    /** the field of view, aspect ratio and clipping planes that perspective was built for */
+    private float perspectiveFovy = -1.0f, perspectiveAspect, perspectiveNear, perspectiveFar;
     /** the rate at which all animations should take place. This value should be used
      * to scale animation speeds up or down in order to accommodate a range of target hardware
      * with differing capabilities */
     private float animationScale = 1.0f;
+    /** decides how much time passes each frame, read from the graphicslab.clock property unless set */
+    private Clock clock;
+    /** the number of seconds the current frame takes, by the clock */
+    private float frameSeconds;
+    /** holds the loop to a frame rate, made from the graphicslab.fps, graphicslab.idlefps and graphicslab.vsync properties unless set */
+    private FramePacer pacer;
+    /** the time each phase of the application loop takes, and the work of the whole frame without waiting for the next */
+    private TimingSpan inputSpan = FrameTimings.span("checkInput"), cameraSpan = FrameTimings.span("updateCamera"),
+        updateSpan = FrameTimings.span("updateScene"), renderSpan = FrameTimings.span("renderScene"),
+        displaySpan = FrameTimings.span("Display.update"), frameSpan = FrameTimings.span("frame");
+    /** how long drawing the scene and showing the frame took this frame, in nanoseconds */
+    private long renderNanos, displayNanos;
+    /** draws the timings over the scene */
+    private TimingOverlay timingOverlay = new TimingOverlay();
+    /** is the timings overlay shown? */
+    private boolean showingTimings = false;
+    /** which keys have been pressed since the last frame, by key code */
+    private boolean[] keysPressed = new boolean[Keyboard.KEYBOARD_SIZE];
+    /** has any key been pressed or released since the last frame? */
+    private boolean keyEvents = false;
     
     /**
      * @return a boolean value indicating whether the user is currently viewing the X axis 
@@ -132,6 +163,66 @@ public abstract class GraphicsLab
     public final void setAnimationScale(float animationScale)
     {   this.animationScale = animationScale;
     }
+    /**
+     * @return the clock that decides how much time passes each frame
+     */
+    public final Clock getClock()
+    {   return clock;
+    }
+    /**
+     * Sets the clock that decides how much time passes each frame. Must be
+     * called before run, otherwise the clock is described by the
+     * graphicslab.clock system property, and is real time if it is not set
+     * @param clock the clock
+     */
+    public final void setClock(Clock clock)
+    {   this.clock = clock;
+    }
+    /**
+     * @return the number of seconds the current frame takes by the clock, not
+     *         scaled by the animation scale. The first frame takes 0
+     */
+    public final float getFrameSeconds()
+    {   return frameSeconds;
+    }
+    /**
+     * @return the pacer that holds the application loop to a frame rate
+     */
+    public final FramePacer getFramePacer()
+    {   return pacer;
+    }
+    /**
+     * Sets the pacer that holds the application loop to a frame rate. Must be
+     * called before run, otherwise the pacer is described by the FramePacer
+     * system properties
+     * @param pacer the pacer
+     */
+    public final void setFramePacer(FramePacer pacer)
+    {   this.pacer = pacer;
+    }
+    /**
+     * @return a boolean value indicating whether the frame timings are being drawn over the scene
+     */
+    public final boolean isShowingTimings()
+    {   return showingTimings;
+    }
+    /**
+     * Shows or hides the frame timings over the scene, as pressing F3 does
+     * @param b true or false
+     */
+    public final void setShowingTimings(boolean b)
+    {   showingTimings = b;
+    }
+    /**
+     * Says whether a key went down since the last frame, however briefly. Unlike
+     * Keyboard.isKeyDown this does not miss a key tapped between two frames, as
+     * can happen while the frame rate is held down for an idle scene
+     * @param key the key code, such as Keyboard.KEY_SPACE
+     * @return a boolean value indicating whether the key has been pressed since the last frame
+     */
+    public final boolean wasKeyPressed(int key)
+    {   return key >= 0 && key < keysPressed.length && keysPressed[key];
+    }
 
     /**
      * Runs the deriving lab sample by handing runtime control over to GraphicsLab's application loop 
@@ -147,6 +238,12 @@ public abstract class GraphicsLab
         this.viewingMode = viewingMode;
         this.windowTitle = windowTitle;
         this.animationScale = animationScale;
+        if(clock == null)
+        {   clock = Clocks.fromProperty();
+        }
+        if(pacer == null)
+        {   pacer = FramePacer.fromProperties(clock.isRealTime());
+        }
 
         try
         {
@@ -155,14 +252,31 @@ public abstract class GraphicsLab
             while(running)
             {
             	// check for user input
+            	FrameEvent frameEvent = FrameEvent.start();
+            	long frameStart = frameSpan.begin();
+            	long start = inputSpan.begin();
             	checkInput();
+            	long inputNanos = inputSpan.end(start);
             	
-            	// update everything for this frame
+            	// update everything for this frame, by however long the clock
+            	// says it takes
+            	frameSeconds = clock.nextFrame();
+            	start = cameraSpan.begin();
             	updateCamera();
+            	long cameraNanos = cameraSpan.end(start);
+            	start = updateSpan.begin();
                 updateScene();
+                long updateNanos = updateSpan.end(start);
                 
                 // render this frame
                 renderFrame();
+                frameSpan.end(frameStart);
+                FrameEvent.finish(frameEvent, inputNanos, cameraNanos, updateNanos, renderNanos, displayNanos,
+                    pacer.isThrottled());
+
+                // wait until the next frame is due, which is later while the
+                // scene is idle or cannot be seen
+                pacer.sync(!Display.isVisible() || (!viewingAxis && !keyEvents && isSceneIdle()));
             }
             // allow the application to perform any last-minute actions
             cleanup();
@@ -189,9 +303,9 @@ public abstract class GraphicsLab
         
         GL11.glClearDepth(1.0f);
         GL11.glDepthFunc(GL11.GL_LEQUAL);
-        GL11.glEnable(GL11.GL_DEPTH_TEST);
+        GLState.enable(GL11.GL_DEPTH_TEST);
        
-        GL11.glEnable(GL11.GL_CULL_FACE);
+        GLState.enable(GL11.GL_CULL_FACE);
 
         // initialise the sample's scene 
         initScene();
@@ -237,14 +351,32 @@ public abstract class GraphicsLab
      */
     private void checkInput()
     {
+        // go through every key press and release since the last frame, so that
+        // a key tapped and let go between two frames is still seen
+        java.util.Arrays.fill(keysPressed, false);
+        keyEvents = false;
+        while(Keyboard.next())
+        {
+            keyEvents = true;
+            int key = Keyboard.getEventKey();
+            if(Keyboard.getEventKeyState() && key >= 0 && key < keysPressed.length)
+            {   keysPressed[key] = true;
+            }
+        }
+
         // check for input corresponding to terminating the application
-        if(Keyboard.isKeyDown(Keyboard.KEY_ESCAPE))
+        if(Keyboard.isKeyDown(Keyboard.KEY_ESCAPE) || wasKeyPressed(Keyboard.KEY_ESCAPE))
         {   running = false;
         }
         if(Display.isCloseRequested())
         {   running = false;
         }
 
+        // show or hide the frame timings each time F3 is pressed
+        if(wasKeyPressed(Keyboard.KEY_F3))
+        {   showingTimings = !showingTimings;
+        }
+
         // check for input corresponding to the axis aligned views
         viewingX = Keyboard.isKeyDown(Keyboard.KEY_X);
         viewingY = Keyboard.isKeyDown(Keyboard.KEY_Y);
@@ -276,22 +408,28 @@ public abstract class GraphicsLab
         // viewing parameters, including an orthographic projection and corresponding viewpoints
         if(viewingAxis)
         {
-            GL11.glMatrixMode(GL11.GL_PROJECTION);
-            GL11.glLoadIdentity();
-            GL11.glOrtho(-viewingAxisDistance*hwratio,viewingAxisDistance*hwratio,-viewingAxisDistance,viewingAxisDistance,0.1f,100.0f);
+            // the matrices only need rebuilding when the axis or the camera offset changes
+            char axis = viewingX ? 'x' : viewingY ? 'y' : 'z';
+            if(axis != axisBuilt || viewingAxisDistance != axisDistanceBuilt)
+            {
+                axisProjection.identity().ortho(-viewingAxisDistance*hwratio,viewingAxisDistance*hwratio,-viewingAxisDistance,viewingAxisDistance,0.1f,100.0f);
 
-            GL11.glMatrixMode(GL11.GL_MODELVIEW);
-            GL11.glLoadIdentity();
-            // Set the viewing parameters so that the scene can be viewed along each axis, X, Y and Z
-            if(viewingX)
-            {   GLU.gluLookAt(viewingAxisDistance, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f);
-            }
-            else if(viewingY)
-            {   GLU.gluLookAt(0.0f, viewingAxisDistance, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, -1.0f);
-            }
-            else if(viewingZ)
-            {   GLU.gluLookAt(0.0f, 0.0f, viewingAxisDistance, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f);
+                // Set the viewing parameters so that the scene can be viewed along each axis, X, Y and Z
+                axisView.identity();
+                if(axis == 'x')
+                {   axisView.lookAt(viewingAxisDistance, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f);
+                }
+                else if(axis == 'y')
+                {   axisView.lookAt(0.0f, viewingAxisDistance, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, -1.0f);
+                }
+                else
+                {   axisView.lookAt(0.0f, 0.0f, viewingAxisDistance, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f);
+                }
+                axisBuilt = axis;
+                axisDistanceBuilt = viewingAxisDistance;
             }
+            MatrixStack.load(axisProjection, GL11.GL_PROJECTION);
+            MatrixStack.load(axisView, GL11.GL_MODELVIEW);
         }
         // if the user is not using an axis aligned view, then set projection and viewing parameters
         // that are suitable for the sample scene - i.e. set by the user in the program that implements this class
@@ -308,14 +446,34 @@ public abstract class GraphicsLab
     {
         // default projection is a perspective projection with a 90 (45*2) degree field of view, width/height
         // aspect ratio and visible range of 0.1 to 100.0 scene units
-        GL11.glMatrixMode(GL11.GL_PROJECTION);
-        GL11.glLoadIdentity();
-        GLU.gluPerspective(45.0f,hwratio,0.1f,100.0f);
+        setPerspective(45.0f,hwratio,0.1f,100.0f);
 
         // default viewpoint is positioned at the scene origin facing along the negative Z axis
-        GL11.glMatrixMode(GL11.GL_MODELVIEW);
         GL11.glLoadIdentity();
     }
+    /**
+     * Loads a perspective projection, as glLoadIdentity followed by gluPerspective would. The
+     * matrix is only rebuilt when one of the parameters differs from the previous call, so this
+     * can be called every frame. GL_MODELVIEW is left as the current matrix mode
+     * 
+     * @param fovy the vertical field of view in degrees
+     * @param aspect the width/height aspect ratio
+     * @param zNear the distance to the near clipping plane
+     * @param zFar the distance to the far clipping plane
+     */
+    protected final void setPerspective(float fovy, float aspect, float zNear, float zFar)
+    {
+        if(fovy != perspectiveFovy || aspect != perspectiveAspect || zNear != perspectiveNear || zFar != perspectiveFar)
+        {
+            perspective.identity().perspective(fovy, aspect, zNear, zFar);
+            perspectiveFovy = fovy;
+            perspectiveAspect = aspect;
+            perspectiveNear = zNear;
+            perspectiveFar = zFar;
+        }
+        MatrixStack.load(perspective, GL11.GL_PROJECTION);
+        GL11.glMatrixMode(GL11.GL_MODELVIEW);
+    }
     /**
      * Renders a single frame to the application's display. If an axis aligned view is in use,
      * appropriate axis lines will also be drawn 
@@ -334,12 +492,33 @@ public abstract class GraphicsLab
         // the call is surrounded by a push/pop pair to isolate any transform calls,
         // preventing their effects from 'leaking' into subsequent frames 
         GL11.glPushMatrix();
-        {   renderScene();
+        {   long start = renderSpan.begin();
+            renderScene();
+            // draw anything the sample left in the batch
+            Batch.flush();
+            renderNanos = renderSpan.end(start);
         }
         GL11.glPopMatrix();
 
+        // draw the frame timings over the scene if they are wanted
+        if(showingTimings)
+        {   timingOverlay.draw(displayMode.getWidth(), displayMode.getHeight());
+        }
+
+        // report how many draw calls the frame took, once a second
+        Batch.endFrame();
+        long now = System.nanoTime();
+        if(now - lastReport >= 1000000000L)
+        {
+            Display.setTitle(windowTitle + " (" + Batch.getFrameDrawCalls() + " draw calls, "
+                + Batch.getFrameBatches() + " batched)");
+            lastReport = now;
+        }
+
         // inform the display that this frame is ready for rendering to screen
+        long start = displaySpan.begin();
         Display.update();
+        displayNanos = displaySpan.end(start);
     }
     /**
      * Draws the X,Y and Z axis lines for axis aligned views
@@ -377,7 +556,9 @@ public abstract class GraphicsLab
      * Allows the application to perform any last-minute operations before it is destroyed
      */
     private void cleanup()
-    {   Display.destroy();
+    {
+        cleanupScene();
+        Display.destroy();
     }
 
     /**
@@ -396,6 +577,24 @@ public abstract class GraphicsLab
      * Renders the sample scene
      */
     protected abstract void renderScene();
+    /**
+     * Says whether the sample scene is showing nothing but ambient motion, so
+     * that the application loop can draw fewer frames. This behaviour may be
+     * overriden by each sample; by default the scene is never idle
+     * 
+     * @return whether the sample scene is idle
+     */
+    protected boolean isSceneIdle()
+    {   return false;
+    }
+    /**
+     * Releases anything the sample scene started, such as threads of its own,
+     * while the OpenGL context still exists. This behaviour may be overriden
+     * by each sample; by default there is nothing to release
+     */
+    protected void cleanupScene()
+    {
+    }
     
 
     /**
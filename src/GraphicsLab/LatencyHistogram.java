@@ -0,0 +1,134 @@
+package GraphicsLab;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how often durations of each length are recorded, so that
+ * percentiles can be read back without keeping every duration
+ *
+ * <p>Durations are in nanoseconds, and are counted in buckets that split
+ * every power of two into 16, so a percentile is never more than about 6%
+ * above the true duration, from a nanosecond up to centuries. Recording only
+ * increments atomic counters, so it takes no lock and allocates nothing, and
+ * any number of threads may record at once. Reading is not atomic with
+ * recording: a percentile read while durations are being recorded may count
+ * some of them and not others
+ */
+public class LatencyHistogram
+{
+	/**
+	 * Records a duration
+	 * @param nanos the duration, in nanoseconds; a negative one counts as 0
+	 */
+	public final void record(long nanos)
+	{
+		if(nanos < 0)
+		{   nanos = 0;
+		}
+		counts.incrementAndGet(bucket(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+		long longest = max.get();
+		while(nanos > longest && !max.compareAndSet(longest, nanos))
+		{   longest = max.get();
+		}
+	}
+
+	/**
+	 * @param percentile the percentage of durations that are no longer than the result, such as 99.9
+	 * @return the duration at the percentile, in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public final long getValueAtPercentile(double percentile)
+	{
+		long recorded = count.get();
+		if(recorded == 0)
+		{   return 0;
+		}
+		// the rank of the duration wanted, counting from 1
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * recorded));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++)
+		{
+			seen += counts.get(i);
+			if(seen >= rank)
+			{   return Math.min(highest(i), max.get());
+			}
+		}
+		return max.get();
+	}
+	/**
+	 * @return the number of durations recorded
+	 */
+	public final long getCount()
+	{   return count.get();
+	}
+	/**
+	 * @return the mean duration, in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public final double getMean()
+	{
+		long recorded = count.get();
+		return recorded == 0 ? 0.0 : (double) total.get() / recorded;
+	}
+	/**
+	 * @return the longest duration, in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public final long getMax()
+	{   return max.get();
+	}
+
+	/**
+	 * Forgets every duration recorded
+	 */
+	public final void reset()
+	{
+		for(int i = 0; i < BUCKETS; i++)
+		{   counts.set(i, 0);
+		}
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	/**
+	 * @return the bucket a duration is counted in
+	 */
+	private static int bucket(long nanos)
+	{
+		if(nanos < SUB_BUCKETS)
+		{   return (int) nanos;
+		}
+		// the power of two, and which sixteenth of it above that
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+	/**
+	 * @return the longest duration counted in a bucket
+	 */
+	private static long highest(int bucket)
+	{
+		if(bucket < SUB_BUCKETS)
+		{   return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	/** the number of bits of a duration below its highest that pick its bucket */
+	private static final int SUB_BUCKET_BITS = 4;
+	/** the number of buckets each power of two is split into */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** the number of buckets, enough for any positive long */
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	/** the number of durations counted in each bucket */
+	private AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	/** the number of durations recorded */
+	private AtomicLong count = new AtomicLong();
+	/** the sum of the durations recorded */
+	private AtomicLong total = new AtomicLong();
+	/** the longest duration recorded */
+	private AtomicLong max = new AtomicLong();
+}
@@ -0,0 +1,266 @@
+package GraphicsLab;
+
+/**
+ * A mutable 4x4 matrix of floats, stored in the column-major order used by OpenGL
+ *
+ * <p>The transform operations post-multiply, in the same way as their OpenGL
+ * and GLU equivalents: m.translate(...).rotate(...) gives the same matrix as
+ * calling glTranslatef then glRotatef, and m.identity().perspective(...) the
+ * same as glLoadIdentity then gluPerspective. Every operation works in place
+ * and returns the matrix so that calls can be chained.
+ *
+ * <p>None of the operations touch OpenGL, so matrices can be built and
+ * checked without a context and then handed over with a single glLoadMatrix
+ */
+public class Matrix4f
+{
+	/**
+	 * Constructs an identity matrix
+	 */
+	public Matrix4f()
+	{	identity();
+	}
+
+	/**
+	 * Sets this matrix to the identity
+	 * @return this matrix
+	 */
+	public final Matrix4f identity()
+	{
+		java.util.Arrays.fill(m, 0.0f);
+		m[0] = m[5] = m[10] = m[15] = 1.0f;
+		return this;
+	}
+	/**
+	 * Copies another matrix
+	 * @return this matrix
+	 */
+	public final Matrix4f set(Matrix4f other)
+	{
+		System.arraycopy(other.m, 0, m, 0, 16);
+		return this;
+	}
+	/**
+	 * @param index the element's index in column-major order
+	 * @return the element
+	 */
+	public final float get(int index)
+	{   return m[index];
+	}
+	/**
+	 * @return the element at the given row and column
+	 */
+	public final float get(int row, int column)
+	{   return m[column * 4 + row];
+	}
+
+	/**
+	 * Sets this matrix to a * b. It is safe for a or b to be this matrix
+	 * @return this matrix
+	 */
+	public final Matrix4f mul(Matrix4f a, Matrix4f b)
+	{
+		multiply(a.m, b.m);
+		return this;
+	}
+	/**
+	 * Post-multiplies this matrix by another, as glMultMatrix does
+	 * @return this matrix
+	 */
+	public final Matrix4f mul(Matrix4f other)
+	{   return mul(this, other);
+	}
+	/**
+	 * Post-multiplies this matrix by a translation, as glTranslatef does
+	 * @return this matrix
+	 */
+	public final Matrix4f translate(float x, float y, float z)
+	{
+		for(int row = 0; row < 4; row++)
+		{   m[12 + row] += m[row] * x + m[4 + row] * y + m[8 + row] * z;
+		}
+		return this;
+	}
+	/**
+	 * Post-multiplies this matrix by a scale, as glScalef does
+	 * @return this matrix
+	 */
+	public final Matrix4f scale(float x, float y, float z)
+	{
+		for(int row = 0; row < 4; row++)
+		{
+			m[row] *= x;
+			m[4 + row] *= y;
+			m[8 + row] *= z;
+		}
+		return this;
+	}
+	/**
+	 * Post-multiplies this matrix by a rotation about an axis, as glRotatef does
+	 * @param angle the angle in degrees, anti-clockwise when looking down the axis
+	 * @return this matrix
+	 */
+	public final Matrix4f rotate(float angle, float x, float y, float z)
+	{
+		float length = (float) Math.sqrt(x*x + y*y + z*z);
+		if(length == 0.0f)
+		{   return this;
+		}
+		x /= length;
+		y /= length;
+		z /= length;
+		double radians = Math.toRadians(angle);
+		float c = (float) Math.cos(radians);
+		float s = (float) Math.sin(radians);
+		float t = 1.0f - c;
+
+		// the columns of the rotation matrix
+		float r00 = x*x*t + c,   r10 = y*x*t + z*s, r20 = z*x*t - y*s;
+		float r01 = x*y*t - z*s, r11 = y*y*t + c,   r21 = z*y*t + x*s;
+		float r02 = x*z*t + y*s, r12 = y*z*t - x*s, r22 = z*z*t + c;
+
+		for(int row = 0; row < 4; row++)
+		{
+			float a = m[row], b = m[4 + row], d = m[8 + row];
+			m[row]     = a * r00 + b * r10 + d * r20;
+			m[4 + row] = a * r01 + b * r11 + d * r21;
+			m[8 + row] = a * r02 + b * r12 + d * r22;
+		}
+		return this;
+	}
+
+	/**
+	 * Post-multiplies this matrix by a perspective projection, as gluPerspective does
+	 * @param fovy the vertical field of view in degrees
+	 * @param aspect the width of the view divided by its height
+	 * @param zNear the distance to the near clipping plane, which must be positive
+	 * @param zFar the distance to the far clipping plane
+	 * @return this matrix
+	 */
+	public final Matrix4f perspective(float fovy, float aspect, float zNear, float zFar)
+	{
+		float f = (float) (1.0 / Math.tan(Math.toRadians(fovy) / 2));
+		java.util.Arrays.fill(operand, 0.0f);
+		operand[0] = f / aspect;
+		operand[5] = f;
+		operand[10] = (zFar + zNear) / (zNear - zFar);
+		operand[11] = -1.0f;
+		operand[14] = 2 * zFar * zNear / (zNear - zFar);
+		multiply(m, operand);
+		return this;
+	}
+	/**
+	 * Post-multiplies this matrix by an orthographic projection, as glOrtho does
+	 * @return this matrix
+	 */
+	public final Matrix4f ortho(float left, float right, float bottom, float top, float zNear, float zFar)
+	{
+		java.util.Arrays.fill(operand, 0.0f);
+		operand[0] = 2 / (right - left);
+		operand[5] = 2 / (top - bottom);
+		operand[10] = -2 / (zFar - zNear);
+		operand[12] = -(right + left) / (right - left);
+		operand[13] = -(top + bottom) / (top - bottom);
+		operand[14] = -(zFar + zNear) / (zFar - zNear);
+		operand[15] = 1.0f;
+		multiply(m, operand);
+		return this;
+	}
+	/**
+	 * Post-multiplies this matrix by a viewing transformation, as gluLookAt does
+	 * @return this matrix
+	 */
+	public final Matrix4f lookAt(float eyeX, float eyeY, float eyeZ,
+		float centreX, float centreY, float centreZ, float upX, float upY, float upZ)
+	{
+		// the direction being looked in, and the directions to the right of and up from it
+		Vec3 forward = new Vec3(centreX - eyeX, centreY - eyeY, centreZ - eyeZ).normalise();
+		Vec3 side = new Vec3().cross(forward, new Vec3(upX, upY, upZ)).normalise();
+		Vec3 up = new Vec3().cross(side, forward);
+
+		java.util.Arrays.fill(operand, 0.0f);
+		operand[0] = side.x;
+		operand[4] = side.y;
+		operand[8] = side.z;
+		operand[1] = up.x;
+		operand[5] = up.y;
+		operand[9] = up.z;
+		operand[2] = -forward.x;
+		operand[6] = -forward.y;
+		operand[10] = -forward.z;
+		operand[15] = 1.0f;
+		multiply(m, operand);
+		return translate(-eyeX, -eyeY, -eyeZ);
+	}
+
+	/**
+	 * Transforms a point by this matrix, treating it as having a w of 1
+	 * @param point the point to transform in place
+	 * @return point
+	 */
+	public final Vec3 transformPoint(Vec3 point)
+	{
+		float x = point.x, y = point.y, z = point.z;
+		return point.set(m[0] * x + m[4] * y + m[8] * z + m[12],
+			m[1] * x + m[5] * y + m[9] * z + m[13],
+			m[2] * x + m[6] * y + m[10] * z + m[14]);
+	}
+	/**
+	 * Transforms a direction by this matrix, treating it as having a w of 0 so
+	 * that it is rotated and scaled but not moved
+	 * @param direction the direction to transform in place
+	 * @return direction
+	 */
+	public final Vec3 transformDirection(Vec3 direction)
+	{
+		float x = direction.x, y = direction.y, z = direction.z;
+		return direction.set(m[0] * x + m[4] * y + m[8] * z,
+			m[1] * x + m[5] * y + m[9] * z,
+			m[2] * x + m[6] * y + m[10] * z);
+	}
+	/**
+	 * Copies the translation part of this matrix, which is where it moves the origin to
+	 * @param dest the Vec3 to copy into
+	 * @return dest
+	 */
+	public final Vec3 getTranslation(Vec3 dest)
+	{   return dest.set(m[12], m[13], m[14]);
+	}
+
+	/**
+	 * Writes this matrix into a buffer in column-major order, ready for glLoadMatrix or glMultMatrix
+	 * @param buffer a buffer with room for 16 floats
+	 * @return buffer, flipped ready to be read
+	 */
+	public final java.nio.FloatBuffer store(java.nio.FloatBuffer buffer)
+	{
+		buffer.put(m, 0, 16).flip();
+		return buffer;
+	}
+
+	/**
+	 * Sets this matrix to a * b, where both are in column-major order. It is
+	 * safe for a or b to be this matrix's elements
+	 */
+	private void multiply(float[] a, float[] b)
+	{
+		for(int column = 0; column < 4; column++)
+		{
+			for(int row = 0; row < 4; row++)
+			{
+				temp[column * 4 + row] = a[row] * b[column * 4]
+					+ a[4 + row] * b[column * 4 + 1]
+					+ a[8 + row] * b[column * 4 + 2]
+					+ a[12 + row] * b[column * 4 + 3];
+			}
+		}
+		System.arraycopy(temp, 0, m, 0, 16);
+	}
+
+	/** the elements in column-major order */
+	private final float[] m = new float[16];
+	/** scratch space for multiplication */
+	private final float[] temp = new float[16];
+	/** scratch space for the projection and viewing matrices */
+	private final float[] operand = new float[16];
+}
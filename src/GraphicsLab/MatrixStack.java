@@ -0,0 +1,124 @@
+package GraphicsLab;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * A stack of matrices kept on the CPU, working like OpenGL's own matrix stacks
+ *
+ * <p>The top matrix is changed in place with the same post-multiplying
+ * operations as Matrix4f, push() saves a copy of it and pop() restores the
+ * copy. The matrices are kept once they have been created, so pushing and
+ * popping does not allocate after the stack has reached its deepest point.
+ * load() hands the top matrix to OpenGL with a single glLoadMatrix
+ */
+public class MatrixStack
+{
+	/**
+	 * Constructs a stack holding a single identity matrix
+	 */
+	public MatrixStack()
+	{	matrices[0] = new Matrix4f();
+	}
+
+	/**
+	 * @return the top matrix, which can be changed in place
+	 */
+	public final Matrix4f top()
+	{   return matrices[depth];
+	}
+	/**
+	 * @return the number of matrices below the top one
+	 */
+	public final int depth()
+	{   return depth;
+	}
+	/**
+	 * Pushes a copy of the top matrix onto the stack
+	 * @return the new top matrix
+	 */
+	public final Matrix4f push()
+	{
+		if(depth + 1 == matrices.length)
+		{   matrices = java.util.Arrays.copyOf(matrices, matrices.length * 2);
+		}
+		if(matrices[depth + 1] == null)
+		{   matrices[depth + 1] = new Matrix4f();
+		}
+		depth++;
+		return matrices[depth].set(matrices[depth - 1]);
+	}
+	/**
+	 * Removes the top matrix from the stack
+	 * @return the new top matrix
+	 * @throws IllegalStateException if only one matrix is left
+	 */
+	public final Matrix4f pop()
+	{
+		if(depth == 0)
+		{   throw new IllegalStateException("matrix stack underflow");
+		}
+		return matrices[--depth];
+	}
+
+	/**
+	 * Sets the top matrix to the identity
+	 * @return the top matrix
+	 */
+	public final Matrix4f identity()
+	{   return top().identity();
+	}
+	/**
+	 * Post-multiplies the top matrix by a translation
+	 * @return the top matrix
+	 */
+	public final Matrix4f translate(float x, float y, float z)
+	{   return top().translate(x, y, z);
+	}
+	/**
+	 * Post-multiplies the top matrix by a rotation, in degrees about an axis
+	 * @return the top matrix
+	 */
+	public final Matrix4f rotate(float angle, float x, float y, float z)
+	{   return top().rotate(angle, x, y, z);
+	}
+	/**
+	 * Post-multiplies the top matrix by a scale
+	 * @return the top matrix
+	 */
+	public final Matrix4f scale(float x, float y, float z)
+	{   return top().scale(x, y, z);
+	}
+	/**
+	 * Post-multiplies the top matrix by another matrix
+	 * @return the top matrix
+	 */
+	public final Matrix4f mul(Matrix4f other)
+	{   return top().mul(other);
+	}
+
+	/**
+	 * Replaces one of OpenGL's matrices with the top matrix
+	 * @param mode GL_PROJECTION, GL_MODELVIEW or GL_TEXTURE; this is left as
+	 *             the current matrix mode
+	 */
+	public final void load(int mode)
+	{	load(top(), mode);
+	}
+	/**
+	 * Replaces one of OpenGL's matrices with the given matrix
+	 * @param mode GL_PROJECTION, GL_MODELVIEW or GL_TEXTURE; this is left as
+	 *             the current matrix mode
+	 */
+	public static void load(Matrix4f matrix, int mode)
+	{
+		Batch.flush();
+		BufferStack stack = BufferStack.push();
+		GL11.glMatrixMode(mode);
+		GL11.glLoadMatrix(matrix.store(stack.floats(16)));
+		stack.pop();
+	}
+
+	/** the matrices, from the bottom of the stack up, created as the stack first grows */
+	private Matrix4f[] matrices = new Matrix4f[8];
+	/** the index of the top matrix */
+	private int depth;
+}
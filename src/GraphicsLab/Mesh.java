@@ -0,0 +1,354 @@
+package GraphicsLab;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GLContext;
+
+/**
+ * An indexed triangle mesh whose vertices are held in a VertexArray
+ *
+ * <p>The first time a Mesh is drawn its data is copied into direct buffers,
+ * and into vertex buffer objects if the graphics card supports them, after
+ * which every draw is a single glDrawElements call. The VertexArray and index
+ * array should not be changed after the first draw
+ *
+ * <p>A packed mesh is uploaded in VertexCodec's compact layout of 16 bytes per
+ * vertex instead of 32, at the cost of a small error in its positions,
+ * normals and texture coordinates. GL_NORMALIZE or GL_RESCALE_NORMAL must be
+ * enabled when drawing a packed mesh with lighting
+ *
+ * <p>A mesh loaded from a MeshFile has no VertexArray or index array, and is
+ * uploaded straight from the file's packed data
+ */
+public class Mesh
+{
+	/**
+	 * Constructs a Mesh from vertices and triangle indices
+	 * @param vertices the vertices of the mesh
+	 * @param indices three vertex handles per triangle, in anti-clockwise order
+	 * @param textured whether the texture coordinates of the vertices should be drawn
+	 */
+	public Mesh(VertexArray vertices, int[] indices, boolean textured)
+	{   this(vertices, indices, textured, false);
+	}
+	/**
+	 * Constructs a Mesh from vertices and triangle indices
+	 * @param vertices the vertices of the mesh
+	 * @param indices three vertex handles per triangle, in anti-clockwise order
+	 * @param textured whether the texture coordinates of the vertices should be drawn
+	 * @param packed whether the vertices should be uploaded in VertexCodec's compact layout
+	 */
+	public Mesh(VertexArray vertices, int[] indices, boolean textured, boolean packed)
+	{
+		this.vertices = vertices;
+		this.indices = indices;
+		this.textured = textured;
+		this.packed = packed;
+		vertexCount = vertices.size();
+		indexCount = indices.length;
+	}
+	/**
+	 * Constructs a packed Mesh from data that is already in VertexCodec's
+	 * compact layout, which is uploaded as it is without being copied
+	 * @param packedVertices VertexCodec.STRIDE bytes per vertex, in native byte order
+	 * @param indices three vertex indices per triangle
+	 * @param vertexCount the number of vertices
+	 * @param textured whether the texture coordinates of the vertices should be drawn
+	 * @param packing the transforms that unpack the vertices
+	 */
+	Mesh(java.nio.ByteBuffer packedVertices, java.nio.IntBuffer indices, int vertexCount, boolean textured,
+		VertexCodec.Packing packing)
+	{
+		this.textured = textured;
+		this.packed = true;
+		this.packing = packing;
+		this.vertexCount = vertexCount;
+		indexCount = indices.remaining();
+		sourceVertices = packedVertices;
+		sourceIndices = indices;
+	}
+
+	/**
+	 * @return the vertices of the mesh, or null if it was loaded already packed
+	 */
+	public final VertexArray getVertices()
+	{   return vertices;
+	}
+	/**
+	 * @return three vertex handles per triangle, or null if the mesh was loaded already packed
+	 */
+	public final int[] getIndices()
+	{   return indices;
+	}
+	/**
+	 * @return whether the texture coordinates of the vertices are drawn
+	 */
+	public final boolean isTextured()
+	{   return textured;
+	}
+	/**
+	 * @return the number of triangles in the mesh
+	 */
+	public final int getTriangleCount()
+	{   return indexCount / 3;
+	}
+	/**
+	 * @return whether the vertices are uploaded in VertexCodec's compact layout
+	 */
+	public final boolean isPacked()
+	{   return packed;
+	}
+	/**
+	 * @return the number of bytes of vertex data uploaded, not counting indices
+	 */
+	public final int getVertexBytes()
+	{   return vertexCount * (packed ? VertexCodec.STRIDE : (textured ? 8 : 6) * 4);
+	}
+
+	/**
+	 * Draws the mesh with the current OpenGL state
+	 */
+	public final void draw()
+	{
+		// anything batched before the mesh is drawn first
+		Batch.flush();
+		if(!prepared)
+		{   prepare();
+		}
+
+		GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+		GL11.glEnableClientState(GL11.GL_NORMAL_ARRAY);
+		if(textured)
+		{   GL11.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		}
+
+		if(packed)
+		{   drawPacked();
+		}
+		else if(vertexBuffer != 0)
+		{
+			// draw from the buffer objects, the pointers are offsets into them
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vertexBuffer);
+			GL11.glVertexPointer(3, GL11.GL_FLOAT, 0, 0L);
+			GL11.glNormalPointer(GL11.GL_FLOAT, 0, normalOffset);
+			if(textured)
+			{   GL11.glTexCoordPointer(2, GL11.GL_FLOAT, 0, texCoordOffset);
+			}
+			GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+			GL11.glDrawElements(GL11.GL_TRIANGLES, indexCount, GL11.GL_UNSIGNED_INT, 0L);
+			GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		}
+		else
+		{
+			// draw from the direct buffers held in client memory
+			GL11.glVertexPointer(3, 0, positions);
+			GL11.glNormalPointer(0, normals);
+			if(textured)
+			{   GL11.glTexCoordPointer(2, 0, texCoords);
+			}
+			GL11.glDrawElements(GL11.GL_TRIANGLES, indexData);
+		}
+
+		if(textured)
+		{   GL11.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		}
+		GL11.glDisableClientState(GL11.GL_NORMAL_ARRAY);
+		GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+		Batch.countDraw();
+	}
+
+	/**
+	 * Draws the mesh from its packed vertices, scaling them back to their
+	 * original size with the modelview and texture matrices
+	 */
+	private void drawPacked()
+	{
+		GL11.glPushMatrix();
+		packing.applyPosition();
+		if(textured)
+		{
+			GL11.glMatrixMode(GL11.GL_TEXTURE);
+			GL11.glPushMatrix();
+			packing.applyTexCoord();
+			GL11.glMatrixMode(GL11.GL_MODELVIEW);
+		}
+
+		int stride = VertexCodec.STRIDE;
+		if(vertexBuffer != 0)
+		{
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vertexBuffer);
+			GL11.glVertexPointer(3, GL11.GL_SHORT, stride, 0L);
+			GL11.glNormalPointer(GL11.GL_BYTE, stride, VertexCodec.NORMAL_OFFSET);
+			if(textured)
+			{   GL11.glTexCoordPointer(2, GL11.GL_SHORT, stride, VertexCodec.TEX_COORD_OFFSET);
+			}
+			GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+			GL11.glDrawElements(GL11.GL_TRIANGLES, indexCount, GL11.GL_UNSIGNED_INT, 0L);
+			GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		}
+		else
+		{
+			GL11.glVertexPointer(3, GL11.GL_SHORT, stride, packedData);
+			GL11.glNormalPointer(GL11.GL_BYTE, stride, packedNormals);
+			if(textured)
+			{   GL11.glTexCoordPointer(2, GL11.GL_SHORT, stride, packedTexCoords);
+			}
+			GL11.glDrawElements(GL11.GL_TRIANGLES, indexData);
+		}
+
+		if(textured)
+		{
+			GL11.glMatrixMode(GL11.GL_TEXTURE);
+			GL11.glPopMatrix();
+			GL11.glMatrixMode(GL11.GL_MODELVIEW);
+		}
+		GL11.glPopMatrix();
+	}
+
+	/**
+	 * Deletes any buffer objects belonging to the mesh. The mesh will upload
+	 * itself again if it is drawn afterwards
+	 */
+	public final void release()
+	{
+		if(vertexBuffer != 0)
+		{
+			GL15.glDeleteBuffers(vertexBuffer);
+			GL15.glDeleteBuffers(indexBuffer);
+			vertexBuffer = 0;
+			indexBuffer = 0;
+		}
+		prepared = false;
+	}
+
+	/**
+	 * Copies the mesh into direct buffers, then into buffer objects if they are supported
+	 */
+	private void prepare()
+	{
+		if(packed)
+		{
+			preparePacked();
+			return;
+		}
+		positions = vertices.positionBuffer();
+		normals = vertices.normalBuffer();
+		texCoords = textured ? vertices.texCoordBuffer() : null;
+		indexData = BufferUtils.createIntBuffer(indices.length);
+		indexData.put(indices).flip();
+
+		if(GLContext.getCapabilities().OpenGL15)
+		{
+			// lay the positions, normals and texture coordinates out one after
+			// the other in a single buffer
+			normalOffset = 4L * positions.remaining();
+			texCoordOffset = normalOffset + 4L * normals.remaining();
+			long size = texCoordOffset + (textured ? 4L * texCoords.remaining() : 0L);
+
+			vertexBuffer = GL15.glGenBuffers();
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vertexBuffer);
+			GL15.glBufferData(GL15.GL_ARRAY_BUFFER, size, GL15.GL_STATIC_DRAW);
+			GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0L, positions);
+			GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, normalOffset, normals);
+			if(textured)
+			{   GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, texCoordOffset, texCoords);
+			}
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+
+			indexBuffer = GL15.glGenBuffers();
+			GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+			GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indexData, GL15.GL_STATIC_DRAW);
+			GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+			// the data now lives on the graphics card
+			positions = null;
+			normals = null;
+			texCoords = null;
+			indexData = null;
+		}
+		prepared = true;
+	}
+
+	/**
+	 * Packs the mesh into a direct buffer, unless it was given already packed,
+	 * then copies it into buffer objects if they are supported
+	 */
+	private void preparePacked()
+	{
+		if(sourceVertices != null)
+		{
+			packedData = sourceVertices;
+			indexData = sourceIndices;
+		}
+		else
+		{
+			packedData = VertexCodec.pack(vertices, textured, packing);
+			indexData = BufferUtils.createIntBuffer(indices.length);
+			indexData.put(indices).flip();
+		}
+		packedNormals = view(packedData, VertexCodec.NORMAL_OFFSET);
+		packedTexCoords = view(packedData, VertexCodec.TEX_COORD_OFFSET);
+
+		if(GLContext.getCapabilities().OpenGL15)
+		{
+			vertexBuffer = GL15.glGenBuffers();
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vertexBuffer);
+			GL15.glBufferData(GL15.GL_ARRAY_BUFFER, packedData, GL15.GL_STATIC_DRAW);
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+
+			indexBuffer = GL15.glGenBuffers();
+			GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+			GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indexData, GL15.GL_STATIC_DRAW);
+			GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+			// the data now lives on the graphics card
+			packedData = null;
+			packedNormals = null;
+			packedTexCoords = null;
+			indexData = null;
+		}
+		prepared = true;
+	}
+	/**
+	 * @return a view of buffer that starts the given number of bytes in
+	 */
+	private static java.nio.ByteBuffer view(java.nio.ByteBuffer buffer, int offset)
+	{
+		java.nio.ByteBuffer view = buffer.duplicate();
+		view.position(offset);
+		return view.slice().order(buffer.order());
+	}
+
+	/** the vertices of the mesh */
+	private VertexArray vertices;
+	/** three vertex handles per triangle */
+	private int[] indices;
+	/** whether texture coordinates are drawn */
+	private boolean textured;
+	/** whether the vertices are uploaded in the compact layout */
+	private boolean packed;
+	/** the transforms that unpack the compact layout */
+	private VertexCodec.Packing packing = new VertexCodec.Packing();
+	/** the number of vertices and of indices */
+	private int vertexCount, indexCount;
+	/** the data the mesh was given already packed, or null if it is packed from its VertexArray */
+	private java.nio.ByteBuffer sourceVertices;
+	/** the indices the mesh was given along with its packed data */
+	private java.nio.IntBuffer sourceIndices;
+	/** whether the mesh has been copied into buffers */
+	private boolean prepared;
+	/** client side copies of the data, used when buffer objects are not supported */
+	private java.nio.FloatBuffer positions, normals, texCoords;
+	/** client side copy of the packed vertices, and views of it starting at the first normal and texture coordinates */
+	private java.nio.ByteBuffer packedData, packedNormals, packedTexCoords;
+	/** client side copy of the indices */
+	private java.nio.IntBuffer indexData;
+	/** the buffer object holding the vertex data, or 0 if none */
+	private int vertexBuffer;
+	/** the buffer object holding the indices, or 0 if none */
+	private int indexBuffer;
+	/** where the normals and texture coordinates start in the vertex buffer object */
+	private long normalOffset, texCoordOffset;
+}
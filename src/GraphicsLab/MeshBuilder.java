@@ -0,0 +1,380 @@
+package GraphicsLab;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds an indexed Mesh from triangles given one corner at a time, welding
+ * corners that are identical and reordering the triangles to suit the
+ * graphics card's post-transform vertex cache
+ *
+ * <p>Corners with the same position, normal and texture coordinates become a
+ * single vertex, so a vertex shared by several faces is only transformed
+ * once. The triangles are then reordered with Tom Forsyth's linear-speed
+ * vertex cache optimisation, which greedily picks the next triangle by how
+ * recently its vertices were used and how many triangles still need them.
+ *
+ * <p>How well the cache is used is measured as the average cache miss ratio
+ * (ACMR): the number of vertices transformed per triangle when the indices are
+ * drawn through a first-in first-out cache of ACMR_CACHE_SIZE entries. It is
+ * 3 when nothing is reused and approaches 0.5 for large regular meshes
+ */
+public class MeshBuilder
+{
+	/** the number of entries of the simulated cache used to measure ACMR */
+	public static final int ACMR_CACHE_SIZE = 16;
+	/** the number of entries of the least recently used cache that the optimisation models */
+	public static final int OPTIMISE_CACHE_SIZE = 32;
+
+	/**
+	 * Adds a corner of a triangle. Corners must be added in whole triangles,
+	 * in anti-clockwise order
+	 */
+	public final void vertex(float x, float y, float z, float nx, float ny, float nz, float s, float t)
+	{
+		probe.set(x, y, z, nx, ny, nz, s, t);
+		Integer index = welded.get(probe);
+		if(index == null)
+		{
+			int handle = vertices.add(x, y, z);
+			vertices.setNormal(handle, nx, ny, nz);
+			vertices.setTexCoord(handle, s, t);
+			index = handle;
+			Key key = new Key();
+			key.set(x, y, z, nx, ny, nz, s, t);
+			welded.put(key, index);
+		}
+		if(indexCount == indices.length)
+		{   indices = java.util.Arrays.copyOf(indices, indices.length * 2);
+		}
+		indices[indexCount++] = index;
+	}
+
+	/**
+	 * Adds every triangle of a mesh, moved by a transform. Normals are rotated
+	 * by the transform and renormalised, so it should not scale unevenly
+	 * @param mesh a mesh that still has its VertexArray and indices
+	 * @param transform the transform to apply to the mesh's vertices
+	 */
+	public final void mesh(Mesh mesh, Matrix4f transform)
+	{
+		VertexArray verts = mesh.getVertices();
+		if(verts == null)
+		{   throw new IllegalArgumentException("cannot add a mesh that was loaded already packed");
+		}
+		Vec3 position = new Vec3();
+		Vec3 normal = new Vec3();
+		float[] texCoord = new float[2];
+		for(int index : mesh.getIndices())
+		{
+			transform.transformPoint(position.set(verts.getX(index), verts.getY(index), verts.getZ(index)));
+			transform.transformDirection(verts.getNormal(index, normal)).normalise();
+			verts.getTexCoord(index, texCoord);
+			vertex(position.x, position.y, position.z, normal.x, normal.y, normal.z, texCoord[0], texCoord[1]);
+		}
+	}
+
+	/**
+	 * Reorders the triangles added so far and builds them into a Mesh. The
+	 * builder should not be used afterwards
+	 * @param textured whether the mesh should draw texture coordinates
+	 * @return the new mesh
+	 */
+	public final Mesh build(boolean textured)
+	{   return build(textured, false);
+	}
+	/**
+	 * Reorders the triangles added so far and builds them into a Mesh. The
+	 * builder should not be used afterwards
+	 * @param textured whether the mesh should draw texture coordinates
+	 * @param packed whether the mesh should be uploaded in VertexCodec's compact layout
+	 * @return the new mesh
+	 */
+	public final Mesh build(boolean textured, boolean packed)
+	{
+		int[] unordered = java.util.Arrays.copyOf(indices, indexCount - indexCount % 3);
+		acmrBefore = acmr(unordered, ACMR_CACHE_SIZE);
+		int[] ordered = optimise(unordered, vertices.size());
+		acmrAfter = acmr(ordered, ACMR_CACHE_SIZE);
+		return new Mesh(vertices, ordered, textured, packed);
+	}
+
+	/**
+	 * @return the number of corners added, which is how many vertices would be
+	 *         submitted without welding
+	 */
+	public final int getCornerCount()
+	{   return indexCount;
+	}
+	/**
+	 * @return the number of distinct vertices after welding
+	 */
+	public final int getVertexCount()
+	{   return vertices.size();
+	}
+	/**
+	 * @return the ACMR of the triangles in the order they were added, once built
+	 */
+	public final float getAcmrBefore()
+	{   return acmrBefore;
+	}
+	/**
+	 * @return the ACMR of the triangles after reordering, once built
+	 */
+	public final float getAcmrAfter()
+	{   return acmrAfter;
+	}
+	/**
+	 * @return a one line summary of the welding and reordering, once built
+	 */
+	public final String report()
+	{
+		return String.format("%d triangles, %d corners welded to %d vertices, ACMR %.3f -> %.3f",
+			indexCount / 3, indexCount, vertices.size(), acmrBefore, acmrAfter);
+	}
+
+	/**
+	 * Measures the average cache miss ratio of some triangles
+	 * @param indices three vertex indices per triangle
+	 * @param cacheSize the number of entries of the simulated first-in first-out cache
+	 * @return the number of cache misses per triangle, or 0 if there are no triangles
+	 */
+	public static float acmr(int[] indices, int cacheSize)
+	{
+		if(indices.length < 3)
+		{   return 0.0f;
+		}
+		int[] fifo = new int[cacheSize];
+		java.util.Arrays.fill(fifo, -1);
+		int head = 0;
+		int misses = 0;
+		for(int index : indices)
+		{
+			boolean hit = false;
+			for(int entry : fifo)
+			{
+				if(entry == index)
+				{
+					hit = true;
+					break;
+				}
+			}
+			if(!hit)
+			{
+				fifo[head] = index;
+				head = (head + 1) % cacheSize;
+				misses++;
+			}
+		}
+		return (float) misses / (indices.length / 3);
+	}
+
+	/**
+	 * Reorders triangles for the post-transform vertex cache using Forsyth's algorithm
+	 * @param indices three vertex indices per triangle
+	 * @param vertexCount one more than the largest index
+	 * @return the same triangles in a new order, each with its corners in the same order
+	 */
+	public static int[] optimise(int[] indices, int vertexCount)
+	{
+		int triangleCount = indices.length / 3;
+		int[] result = new int[triangleCount * 3];
+		if(triangleCount == 0)
+		{   return result;
+		}
+
+		// the triangles that use each vertex
+		int[] valence = new int[vertexCount];
+		for(int index : indices)
+		{   valence[index]++;
+		}
+		int[] adjacencyStart = new int[vertexCount + 1];
+		for(int v = 0; v < vertexCount; v++)
+		{   adjacencyStart[v + 1] = adjacencyStart[v] + valence[v];
+		}
+		int[] adjacency = new int[indices.length];
+		int[] filled = new int[vertexCount];
+		for(int i = 0; i < indices.length; i++)
+		{
+			int v = indices[i];
+			adjacency[adjacencyStart[v] + filled[v]++] = i / 3;
+		}
+
+		// per vertex state: triangles still to be drawn, and score
+		int[] remaining = valence.clone();
+		float[] vertexScore = new float[vertexCount];
+		for(int v = 0; v < vertexCount; v++)
+		{   vertexScore[v] = score(-1, remaining[v]);
+		}
+		boolean[] drawn = new boolean[triangleCount];
+		float[] triangleScore = new float[triangleCount];
+		for(int t = 0; t < triangleCount; t++)
+		{
+			triangleScore[t] = vertexScore[indices[t * 3]] + vertexScore[indices[t * 3 + 1]]
+				+ vertexScore[indices[t * 3 + 2]];
+		}
+
+		// the modelled cache, with room for a triangle's worth of vertices being pushed out
+		int[] cache = new int[OPTIMISE_CACHE_SIZE + 3];
+		int cacheCount = 0;
+		int[] newCache = new int[OPTIMISE_CACHE_SIZE + 3];
+
+		int best = -1;
+		float bestScore = -1.0f;
+		for(int t = 0; t < triangleCount; t++)
+		{
+			if(triangleScore[t] > bestScore)
+			{
+				bestScore = triangleScore[t];
+				best = t;
+			}
+		}
+		int written = 0;
+		int scanFrom = 0;
+		while(best >= 0)
+		{
+			// emit the best triangle
+			drawn[best] = true;
+			for(int k = 0; k < 3; k++)
+			{
+				int v = indices[best * 3 + k];
+				result[written++] = v;
+				remaining[v]--;
+			}
+
+			// move its vertices to the front of the cache, keeping the rest in order
+			int newCount = 0;
+			for(int k = 0; k < 3; k++)
+			{   newCache[newCount++] = indices[best * 3 + k];
+			}
+			for(int i = 0; i < cacheCount; i++)
+			{
+				int v = cache[i];
+				if(v != indices[best * 3] && v != indices[best * 3 + 1] && v != indices[best * 3 + 2])
+				{   newCache[newCount++] = v;
+				}
+			}
+			int[] swap = cache;
+			cache = newCache;
+			newCache = swap;
+			cacheCount = newCount;
+
+			// rescore every vertex in the cache, including those just pushed out,
+			// and the triangles that still use them
+			for(int i = 0; i < cacheCount; i++)
+			{
+				int v = cache[i];
+				int position = i < OPTIMISE_CACHE_SIZE ? i : -1;
+				float newScore = score(position, remaining[v]);
+				float delta = newScore - vertexScore[v];
+				vertexScore[v] = newScore;
+				for(int a = adjacencyStart[v]; a < adjacencyStart[v + 1]; a++)
+				{
+					int t = adjacency[a];
+					if(!drawn[t])
+					{   triangleScore[t] += delta;
+					}
+				}
+			}
+			cacheCount = Math.min(cacheCount, OPTIMISE_CACHE_SIZE);
+
+			// the next triangle is the best scoring one touching the cache
+			best = -1;
+			bestScore = -1.0f;
+			for(int i = 0; i < cacheCount; i++)
+			{
+				int v = cache[i];
+				for(int a = adjacencyStart[v]; a < adjacencyStart[v + 1]; a++)
+				{
+					int t = adjacency[a];
+					if(!drawn[t] && triangleScore[t] > bestScore)
+					{
+						bestScore = triangleScore[t];
+						best = t;
+					}
+				}
+			}
+			// if none touch the cache, start again from the next undrawn triangle
+			if(best < 0)
+			{
+				while(scanFrom < triangleCount && drawn[scanFrom])
+				{   scanFrom++;
+				}
+				if(scanFrom < triangleCount)
+				{   best = scanFrom;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Forsyth's vertex score: vertices recently used score highly, with the
+	 * three most recent scored a little lower so that the triangle just drawn
+	 * is not simply drawn again, and vertices with few triangles left score
+	 * highly so that they are finished off and leave the cache
+	 * @param cachePosition the vertex's position in the cache, or -1 if it is not in it
+	 * @param remaining the number of triangles still to be drawn that use the vertex
+	 */
+	private static float score(int cachePosition, int remaining)
+	{
+		if(remaining == 0)
+		{   return -1.0f;
+		}
+		float score = 0.0f;
+		if(cachePosition >= 0)
+		{
+			if(cachePosition < 3)
+			{   score = 0.75f;
+			}
+			else
+			{
+				float scaler = 1.0f - (float) (cachePosition - 3) / (OPTIMISE_CACHE_SIZE - 3);
+				score = (float) Math.pow(scaler, 1.5);
+			}
+		}
+		return score + 2.0f * (float) Math.pow(remaining, -0.5);
+	}
+
+	/**
+	 * The attributes of a corner, used as a key to find identical corners
+	 */
+	private static class Key
+	{
+		void set(float x, float y, float z, float nx, float ny, float nz, float s, float t)
+		{
+			// adding zero turns -0 into 0, which would otherwise compare as different
+			values[0] = x + 0.0f;
+			values[1] = y + 0.0f;
+			values[2] = z + 0.0f;
+			values[3] = nx + 0.0f;
+			values[4] = ny + 0.0f;
+			values[5] = nz + 0.0f;
+			values[6] = s + 0.0f;
+			values[7] = t + 0.0f;
+			hash = java.util.Arrays.hashCode(values);
+		}
+		@Override
+		public int hashCode()
+		{   return hash;
+		}
+		@Override
+		public boolean equals(Object other)
+		{   return other instanceof Key && java.util.Arrays.equals(values, ((Key) other).values);
+		}
+		private final float[] values = new float[8];
+		private int hash;
+	}
+
+	/** the welded vertices */
+	private VertexArray vertices = new VertexArray(64);
+	/** the index of each corner added */
+	private int[] indices = new int[192];
+	/** the number of corners added */
+	private int indexCount;
+	/** the welded vertex of each distinct corner */
+	private Map<Key, Integer> welded = new HashMap<Key, Integer>();
+	/** reused to look corners up without creating a key each time */
+	private Key probe = new Key();
+	/** the ACMR before and after reordering */
+	private float acmrBefore, acmrAfter;
+}
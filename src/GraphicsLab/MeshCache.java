@@ -0,0 +1,257 @@
+package GraphicsLab;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds indexed sphere, cylinder and disk meshes, and keeps them so that
+ * each shape is only ever tessellated once
+ *
+ * <p>The meshes match the shapes drawn by LWJGL's GLU Sphere, Cylinder and
+ * Disk classes with filled, smooth, outward facing settings: the same vertex
+ * positions, normals, texture coordinates and winding. Unlike those classes,
+ * which recompute every sine and cosine and submit every vertex in immediate
+ * mode each time they are drawn, a cached mesh is drawn with a single call.
+ * The meshes are packed, so each vertex takes 16 bytes of video memory.
+ *
+ * <p>lod() picks a number of slices for a shape from how large it appears on
+ * screen, so that distant or small shapes use fewer triangles
+ */
+public class MeshCache
+{
+	/** the numbers of slices that lod() chooses between */
+	public static final int[] LEVELS = { 8, 12, 16, 24, 32, 48 };
+	/** how many pixels around a shape's outline each slice should cover */
+	public static final float PIXELS_PER_SLICE = 6.0f;
+
+	/**
+	 * Chooses a level of detail from a shape's projected size
+	 * @param radius the radius of the shape
+	 * @param distance the distance from the camera to the shape's centre
+	 * @param projectionScale the viewport height in pixels divided by 2*tan(fovY/2)
+	 * @return one of LEVELS
+	 */
+	public static int lod(float radius, float distance, float projectionScale)
+	{
+		// the radius of the shape in pixels, and so its circumference
+		float pixels = radius / Math.max(distance, 1e-3f) * projectionScale;
+		float wanted = (float) (2 * Math.PI * pixels / PIXELS_PER_SLICE);
+		for(int level : LEVELS)
+		{
+			if(level >= wanted)
+			{   return level;
+			}
+		}
+		return LEVELS[LEVELS.length - 1];
+	}
+
+	/**
+	 * @return a textured sphere centred on the origin, with its poles on the z axis,
+	 *         as drawn by GLU's Sphere
+	 */
+	public static Mesh sphere(float radius, int slices, int stacks)
+	{   return sphere(radius, slices, stacks, null);
+	}
+	/**
+	 * @param region where the sphere's texture is in an atlas, or null if it has a texture of its own
+	 * @return a textured sphere centred on the origin, with its poles on the z axis,
+	 *         as drawn by GLU's Sphere, with its texture coordinates moved into the region
+	 */
+	public static Mesh sphere(float radius, int slices, int stacks, TextureAtlas.Region region)
+	{
+		String key = "sphere " + radius + " " + slices + " " + stacks;
+		if(region != null)
+		{
+			// the corners of the region tell it apart from any other
+			key += " in " + region.getS(0.0f) + " " + region.getT(0.0f) + " " + region.getS(1.0f) + " " + region.getT(1.0f);
+		}
+		Mesh mesh = cache.get(key);
+		if(mesh == null)
+		{
+			mesh = buildSphere(radius, slices, stacks, region);
+			cache.put(key, mesh);
+		}
+		return mesh;
+	}
+	/**
+	 * @return a textured cylinder or cone along the z axis from 0 to height,
+	 *         without end caps, as drawn by GLU's Cylinder
+	 */
+	public static Mesh cylinder(float baseRadius, float topRadius, float height, int slices, int stacks)
+	{
+		String key = "cylinder " + baseRadius + " " + topRadius + " " + height + " " + slices + " " + stacks;
+		Mesh mesh = cache.get(key);
+		if(mesh == null)
+		{
+			mesh = buildCylinder(baseRadius, topRadius, height, slices, stacks);
+			cache.put(key, mesh);
+		}
+		return mesh;
+	}
+	/**
+	 * @return a textured disk or ring in the z = 0 plane facing +z, as drawn by GLU's Disk
+	 */
+	public static Mesh disk(float innerRadius, float outerRadius, int slices, int loops)
+	{
+		String key = "disk " + innerRadius + " " + outerRadius + " " + slices + " " + loops;
+		Mesh mesh = cache.get(key);
+		if(mesh == null)
+		{
+			mesh = buildDisk(innerRadius, outerRadius, slices, loops);
+			cache.put(key, mesh);
+		}
+		return mesh;
+	}
+
+	/**
+	 * Releases the buffer objects of every cached mesh and empties the cache
+	 */
+	public static void clear()
+	{
+		for(Mesh mesh : cache.values())
+		{   mesh.release();
+		}
+		cache.clear();
+	}
+
+	/**
+	 * Builds a grid of (rows + 1) x (columns + 1) vertices into triangles. Row
+	 * r and row r + 1 form a strip in the same order as GLU's quad strips
+	 */
+	private static int[] stripIndices(VertexArray verts, int rows, int columns, boolean upward)
+	{
+		IndexList indices = new IndexList(rows * columns * 6);
+		for(int r = 0; r < rows; r++)
+		{
+			for(int c = 0; c < columns; c++)
+			{
+				// a is the vertex GLU submits first in each pair, b the second
+				int a0 = (upward ? r + 1 : r) * (columns + 1) + c;
+				int b0 = (upward ? r : r + 1) * (columns + 1) + c;
+				int a1 = a0 + 1;
+				int b1 = b0 + 1;
+				indices.triangle(verts, a0, b0, b1);
+				indices.triangle(verts, a0, b1, a1);
+			}
+		}
+		return indices.toArray();
+	}
+	/**
+	 * Builds a sphere in the same way as GLU's Sphere
+	 */
+	private static Mesh buildSphere(float radius, int slices, int stacks, TextureAtlas.Region region)
+	{
+		VertexArray verts = new VertexArray((stacks + 1) * (slices + 1));
+		double drho = Math.PI / stacks;
+		double dtheta = 2 * Math.PI / slices;
+		for(int i = 0; i <= stacks; i++)
+		{
+			double rho = i * drho;
+			for(int j = 0; j <= slices; j++)
+			{
+				double theta = j == slices ? 0.0 : j * dtheta;
+				float x = (float) (-Math.sin(theta) * Math.sin(rho));
+				float y = (float) (Math.cos(theta) * Math.sin(rho));
+				float z = (float) Math.cos(rho);
+				int v = verts.add(x * radius, y * radius, z * radius);
+				verts.setNormal(v, x, y, z);
+				float s = (float) j / slices;
+				float t = 1.0f - (float) i / stacks;
+				if(region != null)
+				{   verts.setTexCoord(v, region.getS(s), region.getT(t));
+				}
+				else
+				{   verts.setTexCoord(v, s, t);
+				}
+			}
+		}
+		return new Mesh(verts, stripIndices(verts, stacks, slices, false), true, true);
+	}
+	/**
+	 * Builds a cylinder in the same way as GLU's Cylinder
+	 */
+	private static Mesh buildCylinder(float baseRadius, float topRadius, float height, int slices, int stacks)
+	{
+		VertexArray verts = new VertexArray((stacks + 1) * (slices + 1));
+		double da = 2 * Math.PI / slices;
+		float nz = (baseRadius - topRadius) / height;
+		for(int j = 0; j <= stacks; j++)
+		{
+			float r = baseRadius + j * (topRadius - baseRadius) / stacks;
+			float z = j * height / stacks;
+			for(int i = 0; i <= slices; i++)
+			{
+				double a = i == slices ? 0.0 : i * da;
+				float x = (float) Math.sin(a);
+				float y = (float) Math.cos(a);
+				int v = verts.add(x * r, y * r, z);
+				float length = (float) Math.sqrt(x*x + y*y + nz*nz);
+				verts.setNormal(v, x / length, y / length, nz / length);
+				verts.setTexCoord(v, (float) i / slices, (float) j / stacks);
+			}
+		}
+		return new Mesh(verts, stripIndices(verts, stacks, slices, false), true, true);
+	}
+	/**
+	 * Builds a disk in the same way as GLU's Disk
+	 */
+	private static Mesh buildDisk(float innerRadius, float outerRadius, int slices, int loops)
+	{
+		VertexArray verts = new VertexArray((loops + 1) * (slices + 1));
+		double da = 2 * Math.PI / slices;
+		float dr = (outerRadius - innerRadius) / loops;
+		// GLU divides by the outer diameter, guard against a zero outer radius
+		float dtc = outerRadius != 0.0f ? 2.0f * outerRadius : 1.0f;
+		for(int l = 0; l <= loops; l++)
+		{
+			float r = innerRadius + l * dr;
+			for(int s = 0; s <= slices; s++)
+			{
+				double a = s == slices ? 0.0 : s * da;
+				float sa = (float) Math.sin(a);
+				float ca = (float) Math.cos(a);
+				int v = verts.add(r * sa, r * ca, 0.0f);
+				verts.setNormal(v, 0.0f, 0.0f, 1.0f);
+				verts.setTexCoord(v, 0.5f + sa * r / dtc, 0.5f + ca * r / dtc);
+			}
+		}
+		// GLU submits the outer ring of each loop first
+		return new Mesh(verts, stripIndices(verts, loops, slices, true), true, true);
+	}
+
+	/**
+	 * A growable list of triangle indices which leaves out triangles that have
+	 * collapsed to a line or a point, such as those at the poles of a sphere
+	 */
+	private static class IndexList
+	{
+		IndexList(int capacity)
+		{	indices = new int[capacity];
+		}
+		void triangle(VertexArray verts, int a, int b, int c)
+		{
+			if(same(verts, a, b) || same(verts, b, c) || same(verts, c, a))
+			{   return;
+			}
+			if(count + 3 > indices.length)
+			{   indices = java.util.Arrays.copyOf(indices, indices.length * 2 + 3);
+			}
+			indices[count++] = a;
+			indices[count++] = b;
+			indices[count++] = c;
+		}
+		int[] toArray()
+		{   return java.util.Arrays.copyOf(indices, count);
+		}
+		private static boolean same(VertexArray verts, int a, int b)
+		{
+			return verts.getX(a) == verts.getX(b) && verts.getY(a) == verts.getY(b)
+				&& verts.getZ(a) == verts.getZ(b);
+		}
+		private int[] indices;
+		private int count;
+	}
+
+	/** the meshes built so far, by shape and parameters */
+	private static Map<String, Mesh> cache = new HashMap<String, Mesh>();
+}
@@ -0,0 +1,237 @@
+package GraphicsLab;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads and writes named packed meshes in a versioned binary file
+ *
+ * <p>The file is little endian and laid out as:
+ * <ul>
+ * <li>a header of HEADER_SIZE bytes: the MAGIC number, the VERSION, the
+ *     number of meshes and the number of bytes per vertex
+ * <li>one entry of ENTRY_SIZE bytes per mesh: its name as NAME_SIZE bytes of
+ *     zero padded UTF-8, its flags, its numbers of vertices and indices, where
+ *     its vertices and indices start in the file, and its VertexCodec.Packing
+ * <li>each mesh's vertices in VertexCodec's compact layout, then its indices
+ *     as 32 bit integers, each section starting on a multiple of ALIGNMENT bytes
+ * </ul>
+ *
+ * <p>A file is read by mapping it into memory rather than reading it, and
+ * each mesh is handed views of the mapping, which it uploads to the graphics
+ * card without any intermediate copy. The mapping stays valid until it is
+ * garbage collected, after the meshes have been uploaded and released
+ */
+public class MeshFile
+{
+	/** "GLMF" read as a little endian integer */
+	public static final int MAGIC = 0x464d4c47;
+	/** the version of the layout, increased whenever it changes */
+	public static final int VERSION = 1;
+	/** the sizes of the header, of each entry and of the name in each entry, in bytes */
+	public static final int HEADER_SIZE = 16, ENTRY_SIZE = 96, NAME_SIZE = 32;
+	/** the boundary every vertex and index section starts on, in bytes */
+	public static final int ALIGNMENT = 16;
+	/** the flag set on an entry whose mesh is textured */
+	public static final int TEXTURED = 1;
+
+	/**
+	 * Writes meshes to a file, replacing it if it exists. Each mesh is packed
+	 * from its VertexArray
+	 * @param file the file to write
+	 * @param meshes the meshes to write by name, in the order they should be written
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(File file, Map<String, Mesh> meshes) throws IOException
+	{
+		// pack every mesh first, to know where each section starts
+		int count = meshes.size();
+		String[] names = new String[count];
+		Mesh[] list = new Mesh[count];
+		ByteBuffer[] vertexData = new ByteBuffer[count];
+		VertexCodec.Packing[] packings = new VertexCodec.Packing[count];
+		int[] vertexOffsets = new int[count];
+		int[] indexOffsets = new int[count];
+		int size = align(HEADER_SIZE + ENTRY_SIZE * count);
+		int i = 0;
+		for(Map.Entry<String, Mesh> entry : meshes.entrySet())
+		{
+			names[i] = entry.getKey();
+			list[i] = entry.getValue();
+			if(list[i].getVertices() == null)
+			{   throw new IllegalArgumentException("mesh " + names[i] + " was loaded already packed");
+			}
+			packings[i] = new VertexCodec.Packing();
+			vertexData[i] = VertexCodec.pack(list[i].getVertices(), list[i].isTextured(), packings[i]);
+			vertexOffsets[i] = size;
+			size = align(size + vertexData[i].capacity());
+			indexOffsets[i] = size;
+			size = align(size + 4 * list[i].getIndices().length);
+			i++;
+		}
+
+		ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		out.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(VertexCodec.STRIDE);
+		for(i = 0; i < count; i++)
+		{
+			out.position(HEADER_SIZE + ENTRY_SIZE * i);
+			byte[] name = names[i].getBytes(UTF8);
+			if(name.length > NAME_SIZE)
+			{   throw new IllegalArgumentException("mesh name " + names[i] + " is longer than " + NAME_SIZE + " bytes");
+			}
+			out.put(name).position(out.position() + NAME_SIZE - name.length);
+			out.putInt(list[i].isTextured() ? TEXTURED : 0);
+			out.putInt(list[i].getVertices().size()).putInt(list[i].getIndices().length);
+			out.putInt(vertexOffsets[i]).putInt(indexOffsets[i]);
+			packings[i].store(out);
+
+			// the packed data is in native order, which must be swapped on a big endian machine
+			out.position(vertexOffsets[i]);
+			ByteBuffer vertices = vertexData[i].duplicate().order(vertexData[i].order());
+			vertices.clear();
+			while(vertices.remaining() >= 2)
+			{   out.putShort(vertices.getShort());
+			}
+			out.position(indexOffsets[i]);
+			for(int index : list[i].getIndices())
+			{   out.putInt(index);
+			}
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try
+		{
+			raf.setLength(0);
+			FileChannel channel = raf.getChannel();
+			out.clear();
+			while(out.hasRemaining())
+			{   channel.write(out);
+			}
+		}
+		finally
+		{   raf.close();
+		}
+	}
+
+	/**
+	 * Maps a file of meshes into memory
+	 * @param file the file to map
+	 * @return the meshes in the file
+	 * @throws IOException if the file cannot be read, is not a mesh file, is
+	 *         a different version, cannot be used on this machine, or is
+	 *         corrupt, including having an index of a vertex a mesh does not have
+	 */
+	public static MeshFile map(File file) throws IOException
+	{
+		if(ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN)
+		{   throw new IOException("mesh files can only be mapped on little endian machines");
+		}
+		ByteBuffer data;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
+		{   raf.close();
+		}
+		data.order(ByteOrder.LITTLE_ENDIAN);
+
+		if(data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC)
+		{   throw new IOException(file + " is not a mesh file");
+		}
+		int version = data.getInt(4);
+		if(version != VERSION)
+		{   throw new IOException(file + " is version " + version + ", not " + VERSION);
+		}
+		int count = data.getInt(8);
+		int stride = data.getInt(12);
+		if(stride != VertexCodec.STRIDE || count < 0 || data.limit() < HEADER_SIZE + ENTRY_SIZE * count)
+		{   throw new IOException(file + " is corrupt");
+		}
+
+		MeshFile meshFile = new MeshFile();
+		for(int i = 0; i < count; i++)
+		{
+			data.position(HEADER_SIZE + ENTRY_SIZE * i);
+			byte[] nameBytes = new byte[NAME_SIZE];
+			data.get(nameBytes);
+			int length = 0;
+			while(length < NAME_SIZE && nameBytes[length] != 0)
+			{   length++;
+			}
+			String name = new String(nameBytes, 0, length, UTF8);
+			int flags = data.getInt();
+			int vertexCount = data.getInt();
+			int indexCount = data.getInt();
+			int vertexOffset = data.getInt();
+			int indexOffset = data.getInt();
+			VertexCodec.Packing packing = new VertexCodec.Packing();
+			packing.load(data);
+
+			if(vertexCount < 0 || indexCount < 0 || vertexOffset < 0 || indexOffset < 0
+				|| vertexOffset % ALIGNMENT != 0 || indexOffset % ALIGNMENT != 0
+				|| (long) vertexOffset + (long) vertexCount * stride > data.limit()
+				|| (long) indexOffset + 4L * indexCount > data.limit())
+			{   throw new IOException(file + " is corrupt at mesh " + name);
+			}
+			ByteBuffer vertices = slice(data, vertexOffset, vertexCount * stride);
+			java.nio.IntBuffer indices = slice(data, indexOffset, 4 * indexCount).asIntBuffer();
+			// an index past the vertices would have the graphics card read past them
+			for(int j = 0; j < indexCount; j++)
+			{
+				int index = indices.get(j);
+				if(index < 0 || index >= vertexCount)
+				{   throw new IOException(file + " is corrupt at mesh " + name + ": index " + index + " of "
+						+ vertexCount + " vertices");
+				}
+			}
+			meshFile.meshes.put(name, new Mesh(vertices, indices, vertexCount, (flags & TEXTURED) != 0, packing));
+		}
+		return meshFile;
+	}
+
+	/**
+	 * @return the mesh with the given name, or null if there is none
+	 */
+	public final Mesh get(String name)
+	{   return meshes.get(name);
+	}
+	/**
+	 * @return the names of the meshes in the file, in the order they were written
+	 */
+	public final Set<String> names()
+	{   return Collections.unmodifiableSet(meshes.keySet());
+	}
+
+	/**
+	 * @return size rounded up to a multiple of ALIGNMENT
+	 */
+	private static int align(int size)
+	{   return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+	/**
+	 * @return a view of length bytes of data starting at offset, in the same byte order
+	 */
+	private static ByteBuffer slice(ByteBuffer data, int offset, int length)
+	{
+		ByteBuffer view = data.duplicate();
+		view.limit(offset + length).position(offset);
+		return view.slice().order(data.order());
+	}
+
+	/** the encoding of mesh names */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** the meshes in the file by name, in the order they were written */
+	private Map<String, Mesh> meshes = new LinkedHashMap<String, Mesh>();
+}
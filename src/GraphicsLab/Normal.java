@@ -21,6 +21,13 @@ public class Normal
 		this.z = z;
 		normalise();
 	}
+	/**
+	 * Constructs a Normal object from a Vec3, which is normalised as it is copied
+	 * @param v The Vec3 whose direction is copied
+	 */
+	public Normal(Vec3 v)
+	{	this(v.x, v.y, v.z);
+	}
 	/**
 	 * Constructs a normal vector by taking 3 co-planar points (not co-linear):
 	 * Based on computing two vectors in the plane, then taking the vector cross product
@@ -95,6 +102,15 @@ public class Normal
     {   return z;
     }
     
+	/**
+	 * Copies this normal into an existing Vec3 without allocating
+	 * @param dest the Vec3 to copy into
+	 * @return dest
+	 */
+	public final Vec3 toVec3(Vec3 dest)
+	{   return dest.set(x, y, z);
+	}
+    
 	/**
 	 * Submits this Normal to OpenGL using an immediate mode call
 	 */
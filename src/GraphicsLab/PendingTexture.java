@@ -0,0 +1,113 @@
+package GraphicsLab;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.newdawn.slick.opengl.Texture;
+
+/**
+ * A texture whose image is being decoded in the background by TextureDecoder
+ *
+ * <p>The first call to get waits for decoding to finish if it has not
+ * already, then uploads the pixels and lets go of them. Later calls return
+ * the same texture. get must be called on the thread that owns the OpenGL
+ * context; isDecoded can be polled to upload only once the wait is over
+ */
+public class PendingTexture
+{
+	/**
+	 * @param ref the name the texture is known by
+	 * @param image the image being decoded
+	 */
+	PendingTexture(String ref, Future<DecodedImage> image)
+	{
+		this.ref = ref;
+		this.image = image;
+	}
+
+	/**
+	 * @return the name the texture is known by, usually the path of its image
+	 */
+	public final String getRef()
+	{   return ref;
+	}
+	/**
+	 * @return whether the image has finished decoding, or failed to, so that get will not wait
+	 */
+	public final boolean isDecoded()
+	{   return texture != null || image.isDone();
+	}
+	/**
+	 * @return whether the texture has been uploaded
+	 */
+	public final boolean isUploaded()
+	{   return texture != null;
+	}
+
+	/**
+	 * @return the number of bytes of video memory the texture takes, or 0 if it has not been uploaded
+	 */
+	public final int getBytes()
+	{   return bytes;
+	}
+
+	/**
+	 * Waits for the image to be decoded and uploads it, unless that has already been done
+	 * @return the texture
+	 * @throws IOException if the image could not be decoded, or decoding was interrupted
+	 */
+	public final Texture get() throws IOException
+	{
+		if(texture == null)
+		{
+			TextureUploadEvent event = new TextureUploadEvent();
+			event.begin();
+			DecodedImage decoded = decoded();
+			texture = decoded.upload(ref);
+			bytes = decoded.getUploadedBytes();
+			// the pixels are on the graphics card now
+			image = null;
+			event.end();
+			if(event.shouldCommit())
+			{
+				event.set(ref, decoded.getWidth(), decoded.getHeight(),
+					DecodedImage.formatName(decoded.getUploadedFormat()), bytes);
+				event.commit();
+			}
+		}
+		return texture;
+	}
+
+	/**
+	 * Waits for the image to be decoded, without uploading it
+	 * @return the decoded image
+	 * @throws IOException if the image could not be decoded, or decoding was interrupted
+	 */
+	final DecodedImage decoded() throws IOException
+	{
+		try
+		{   return image.get();
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof IOException)
+			{   throw (IOException) e.getCause();
+			}
+			throw new IOException("could not decode " + ref, e.getCause());
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while decoding " + ref, e);
+		}
+	}
+
+	/** the name the texture is known by */
+	private String ref;
+	/** the image being decoded, or null once it has been uploaded */
+	private Future<DecodedImage> image;
+	/** the uploaded texture, or null if it has not been uploaded */
+	private Texture texture;
+	/** the video memory the uploaded texture takes */
+	private int bytes;
+}
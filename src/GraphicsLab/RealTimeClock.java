@@ -0,0 +1,27 @@
+package GraphicsLab;
+
+/**
+ * A clock that follows System.nanoTime
+ */
+public class RealTimeClock implements Clock
+{
+	public float nextFrame()
+	{
+		long now = System.nanoTime();
+		long elapsed = last == 0 ? 0 : now - last;
+		last = now;
+		total += elapsed;
+		return elapsed / 1e9f;
+	}
+	public double getTime()
+	{   return total / 1e9;
+	}
+	public boolean isRealTime()
+	{   return true;
+	}
+
+	/** when the last frame started, in nanoseconds, or 0 if none has */
+	private long last;
+	/** the nanoseconds that have passed since the first frame */
+	private long total;
+}
@@ -0,0 +1,123 @@
+package GraphicsLab;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * A node in a scene graph, holding a transform relative to its parent
+ *
+ * <p>Each node caches its world transform, which is its parent's world
+ * transform multiplied by its own local transform. The cache is only
+ * recomputed when the node or one of its ancestors has been changed since the
+ * last time it was asked for, so subtrees that never move cost nothing to
+ * keep up to date, and the cached matrices can be reused for anything that
+ * needs to know where a node is, such as culling or picking.
+ *
+ * <p>Drawing a node means calling begin(), which loads the node's world
+ * transform on top of the current modelview matrix, drawing its geometry, then
+ * calling end(). Nodes do not need to be drawn in the order of the hierarchy,
+ * as each one carries its full transform from the root
+ */
+public class SceneNode
+{
+	/**
+	 * Adds a child to this node
+	 * @param child a node with no parent
+	 * @return child
+	 */
+	public final SceneNode addChild(SceneNode child)
+	{
+		if(child.parent != null)
+		{   throw new IllegalArgumentException("node already has a parent");
+		}
+		child.parent = this;
+		children.add(child);
+		child.markDirty();
+		return child;
+	}
+	/**
+	 * @return the parent of this node, or null if it is a root
+	 */
+	public final SceneNode getParent()
+	{   return parent;
+	}
+
+	/**
+	 * Gives access to this node's local transform so that it can be changed,
+	 * marking the node and its descendants as needing their world transforms
+	 * recomputed. Only call this when the transform is actually changing
+	 * @return the local transform
+	 */
+	public final Matrix4f editLocal()
+	{
+		markDirty();
+		return local;
+	}
+	/**
+	 * @return this node's world transform, recomputing it first if needed. The
+	 *         matrix belongs to the node and must not be changed
+	 */
+	public final Matrix4f getWorld()
+	{
+		if(dirty)
+		{
+			if(parent == null)
+			{   world.set(local);
+			}
+			else
+			{   world.mul(parent.getWorld(), local);
+			}
+			dirty = false;
+		}
+		return world;
+	}
+
+	/**
+	 * Saves the current modelview matrix and multiplies it by this node's world
+	 * transform, ready for the node's geometry to be drawn
+	 */
+	public final void begin()
+	{
+		Batch.flush();
+		BufferStack stack = BufferStack.push();
+		GL11.glPushMatrix();
+		GL11.glMultMatrix(getWorld().store(stack.floats(16)));
+		stack.pop();
+	}
+	/**
+	 * Restores the modelview matrix saved by begin()
+	 */
+	public final void end()
+	{
+		Batch.flush();
+		GL11.glPopMatrix();
+	}
+
+	/**
+	 * Marks this node and its descendants as needing their world transforms
+	 * recomputed. A node that is already marked has all of its descendants
+	 * marked too, so the walk stops there
+	 */
+	private void markDirty()
+	{
+		if(dirty)
+		{   return;
+		}
+		dirty = true;
+		for(int i = 0; i < children.size(); i++)
+		{   children.get(i).markDirty();
+		}
+	}
+
+	/** the node this node is relative to, or null */
+	private SceneNode parent;
+	/** the nodes relative to this one */
+	private List<SceneNode> children = new ArrayList<SceneNode>();
+	/** the transform relative to the parent */
+	private Matrix4f local = new Matrix4f();
+	/** the cached transform relative to the root */
+	private Matrix4f world = new Matrix4f();
+	/** whether world needs recomputing */
+	private boolean dirty = true;
+}
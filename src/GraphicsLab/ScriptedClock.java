@@ -0,0 +1,52 @@
+package GraphicsLab;
+
+/**
+ * A clock in which frames take times given in advance, such as times
+ * recorded from a real run, repeating them once they run out. This replays
+ * an uneven run exactly, hitches and all
+ */
+public class ScriptedClock implements Clock
+{
+	/**
+	 * @param steps the number of seconds each frame takes, in turn
+	 */
+	public ScriptedClock(float[] steps)
+	{
+		if(steps.length == 0)
+		{   throw new IllegalArgumentException("a script needs at least one step");
+		}
+		for(float step : steps)
+		{
+			if(!(step >= 0.0f))
+			{   throw new IllegalArgumentException("steps cannot be negative, not " + step);
+			}
+		}
+		this.steps = steps.clone();
+	}
+
+	public float nextFrame()
+	{
+		if(frames++ == 0)
+		{   return 0.0f;
+		}
+		float step = steps[next];
+		next = (next + 1) % steps.length;
+		total += step;
+		return step;
+	}
+	public double getTime()
+	{   return total;
+	}
+	public boolean isRealTime()
+	{   return false;
+	}
+
+	/** the number of seconds each frame takes, in turn */
+	private float[] steps;
+	/** the index of the next step */
+	private int next;
+	/** the number of frames started */
+	private long frames;
+	/** the seconds that have passed since the first frame */
+	private double total;
+}
@@ -0,0 +1,24 @@
+package GraphicsLab;
+
+/**
+ * Something that advances in fixed steps, and can describe what it looks
+ * like in a snapshot for the renderer
+ *
+ * <p>A SimulationRunner may call step and snapshot on a thread of its own,
+ * so they must only touch state that the renderer never does. Snapshots are
+ * handed to the renderer on another thread, so they must be immutable
+ *
+ * @param <S> the type of the snapshots
+ */
+public interface Simulation<S>
+{
+	/**
+	 * Advances by one step
+	 * @param seconds the number of seconds the step takes
+	 */
+	public void step(float seconds);
+	/**
+	 * @return an immutable snapshot of everything the renderer needs to draw the current state
+	 */
+	public S snapshot();
+}
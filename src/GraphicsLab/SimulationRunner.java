@@ -0,0 +1,244 @@
+package GraphicsLab;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Advances a Simulation in fixed steps, either on a thread of its own or on
+ * the caller's, and publishes the last two snapshots for the renderer
+ *
+ * <p>Once started, the thread steps the simulation in real time and sleeps
+ * until the next step is due, so the cost of stepping overlaps drawing and a
+ * slow step does not hold up a frame. After each batch of steps it publishes
+ * the snapshots from before and after the last step, together in one
+ * immutable Snapshots, through an atomic reference; the renderer reads the
+ * latest without ever locking or waiting. Drawing between the two with
+ * getAlpha keeps motion smooth whatever the frame rate, at the cost of
+ * running one step behind.
+ *
+ * <p>If the thread is not started, advance steps the simulation on the
+ * caller's thread instead by however long the caller says a frame takes,
+ * which repeats exactly for clocks that are not real time
+ *
+ * @param <S> the type of the snapshots
+ */
+public class SimulationRunner<S>
+{
+	/**
+	 * @param simulation the simulation, which has not started stepping
+	 * @param step the number of seconds each step takes
+	 * @param maxSteps the most steps to take at once after a stall
+	 */
+	public SimulationRunner(Simulation<S> simulation, float step, int maxSteps)
+	{
+		this.simulation = simulation;
+		timestep = new FixedTimestep(step, maxSteps);
+		S first = simulation.snapshot();
+		latest.set(new Snapshots<S>(first, first, 0.0f, System.nanoTime()));
+	}
+
+	/**
+	 * Starts stepping the simulation in real time on a daemon thread of its
+	 * own. After this the simulation must only be touched through snapshots
+	 */
+	public final synchronized void start()
+	{
+		if(thread != null)
+		{   throw new IllegalStateException("the simulation has already been started");
+		}
+		running = true;
+		thread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{   loop();
+				}
+				catch(Throwable e)
+				{   failure = e;
+				}
+			}
+		}, "simulation");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	/**
+	 * Stops the thread, and waits for it to finish its current step
+	 */
+	public final void stop()
+	{
+		Thread stopping;
+		synchronized(this)
+		{
+			running = false;
+			stopping = thread;
+		}
+		if(stopping != null)
+		{
+			LockSupport.unpark(stopping);
+			try
+			{   stopping.join();
+			}
+			catch(InterruptedException e)
+			{   Thread.currentThread().interrupt();
+			}
+		}
+	}
+	/**
+	 * @return whether the simulation is stepped on a thread of its own
+	 */
+	public final synchronized boolean isThreaded()
+	{   return thread != null;
+	}
+
+	/**
+	 * Steps the simulation on the caller's thread by the number of steps that
+	 * fit in a frame, and publishes the result. Only for a runner that has
+	 * not been started
+	 * @param seconds the number of seconds the frame takes, before the time scale
+	 */
+	public final void advance(float seconds)
+	{
+		if(isThreaded())
+		{   throw new IllegalStateException("the simulation is stepped by its own thread");
+		}
+		run(timestep.advance(seconds * timeScale));
+	}
+
+	/**
+	 * @return the latest snapshots, from before and after the last step
+	 * @throws IllegalStateException if the simulation's thread failed
+	 */
+	public final Snapshots<S> getSnapshots()
+	{
+		if(failure != null)
+		{   throw new IllegalStateException("the simulation failed", failure);
+		}
+		return latest.get();
+	}
+	/**
+	 * @param snapshots snapshots returned by getSnapshots
+	 * @return how far between the two snapshots to draw at the moment, from 0 to 1
+	 */
+	public final float getAlpha(Snapshots<S> snapshots)
+	{
+		if(!isThreaded())
+		{   return snapshots.alpha;
+		}
+		// the time that has passed since they were published counts too
+		float elapsed = (System.nanoTime() - snapshots.nanos) / 1e9f * timeScale;
+		return Math.min(snapshots.alpha + elapsed / timestep.getStep(), 1.0f);
+	}
+
+	/**
+	 * @param timeScale how many seconds of simulation pass per second, such as an animation scale
+	 */
+	public final void setTimeScale(float timeScale)
+	{   this.timeScale = timeScale;
+	}
+	/**
+	 * @return how many seconds of simulation pass per second
+	 */
+	public final float getTimeScale()
+	{   return timeScale;
+	}
+	/**
+	 * @return the number of seconds each step takes
+	 */
+	public final float getStep()
+	{   return timestep.getStep();
+	}
+	/**
+	 * @return the number of steps taken so far
+	 */
+	public final long getTotalSteps()
+	{   return timestep.getTotalSteps();
+	}
+
+	/**
+	 * Steps in real time until stopped
+	 */
+	private void loop()
+	{
+		long last = System.nanoTime();
+		while(running)
+		{
+			long now = System.nanoTime();
+			run(timestep.advance((now - last) / 1e9f * timeScale));
+			last = now;
+			// sleep until the next step is due; a larger time scale makes it due sooner
+			float wait = (1.0f - timestep.getAlpha()) * timestep.getStep() / Math.max(timeScale, 1e-3f);
+			LockSupport.parkNanos((long) (wait * 1e9f));
+		}
+	}
+	/**
+	 * Takes some steps, and publishes the snapshots from either side of the last
+	 */
+	private void run(int steps)
+	{
+		if(steps == 0)
+		{
+			// nothing changed, only the time between the snapshots did
+			Snapshots<S> snapshots = latest.get();
+			latest.set(new Snapshots<S>(snapshots.previous, snapshots.current, timestep.getAlpha(), System.nanoTime()));
+			return;
+		}
+		S previous = latest.get().current;
+		for(int i = 0; i < steps; i++)
+		{
+			if(i == steps - 1 && i > 0)
+			{   previous = simulation.snapshot();
+			}
+			simulation.step(timestep.getStep());
+		}
+		latest.set(new Snapshots<S>(previous, simulation.snapshot(), timestep.getAlpha(), System.nanoTime()));
+	}
+
+	/**
+	 * The snapshots from before and after a step, published together
+	 *
+	 * @param <S> the type of the snapshots
+	 */
+	public static class Snapshots<S>
+	{
+		Snapshots(S previous, S current, float alpha, long nanos)
+		{
+			this.previous = previous;
+			this.current = current;
+			this.alpha = alpha;
+			this.nanos = nanos;
+		}
+		/**
+		 * @return the snapshot from before the last step
+		 */
+		public final S getPrevious()
+		{   return previous;
+		}
+		/**
+		 * @return the snapshot from after the last step
+		 */
+		public final S getCurrent()
+		{   return current;
+		}
+		/** the snapshots from before and after the last step */
+		private final S previous, current;
+		/** how far the time left over after the last step was into the next */
+		private final float alpha;
+		/** when they were published */
+		private final long nanos;
+	}
+
+	/** the simulation */
+	private Simulation<S> simulation;
+	/** turns time into steps */
+	private FixedTimestep timestep;
+	/** the latest snapshots */
+	private AtomicReference<Snapshots<S>> latest = new AtomicReference<Snapshots<S>>();
+	/** the thread stepping the simulation, or null if it has not been started */
+	private Thread thread;
+	/** whether the thread should keep stepping */
+	private volatile boolean running;
+	/** how many seconds of simulation pass per second */
+	private volatile float timeScale = 1.0f;
+	/** what stopped the thread, or null if nothing has */
+	private volatile Throwable failure;
+}
@@ -0,0 +1,153 @@
+package GraphicsLab;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Places rectangles in a page without overlapping, using the bottom left
+ * skyline method
+ *
+ * <p>The skyline is the top edge of everything placed so far, kept as a list
+ * of horizontal segments from left to right. Each rectangle is placed on the
+ * skyline where its top would be lowest, leftmost first, which wastes only
+ * the space hidden under overhangs. Packing is best when the rectangles are
+ * added from tallest to shortest
+ */
+public class SkylinePacker
+{
+	/**
+	 * @param width the width of the page
+	 * @param height the height of the page
+	 */
+	public SkylinePacker(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		segments.add(new int[] { 0, 0, width });
+	}
+
+	/**
+	 * Places a rectangle
+	 * @param rectWidth the width of the rectangle
+	 * @param rectHeight the height of the rectangle
+	 * @return the x and y of the rectangle's bottom left corner, or null if it does not fit
+	 */
+	public final int[] add(int rectWidth, int rectHeight)
+	{
+		int best = -1;
+		int bestTop = Integer.MAX_VALUE;
+		int bestY = 0;
+		for(int i = 0; i < segments.size(); i++)
+		{
+			int y = fit(i, rectWidth, rectHeight);
+			if(y >= 0 && y + rectHeight < bestTop)
+			{
+				best = i;
+				bestTop = y + rectHeight;
+				bestY = y;
+			}
+		}
+		if(best < 0)
+		{   return null;
+		}
+		int x = segments.get(best)[X];
+		raise(best, x, bestY + rectHeight, rectWidth);
+		used += (long) rectWidth * rectHeight;
+		return new int[] { x, bestY };
+	}
+
+	/**
+	 * @return the width of the page
+	 */
+	public final int getWidth()
+	{   return width;
+	}
+	/**
+	 * @return the height of the page
+	 */
+	public final int getHeight()
+	{   return height;
+	}
+	/**
+	 * @return the fraction of the page covered by rectangles
+	 */
+	public final float getOccupancy()
+	{   return (float) used / ((long) width * height);
+	}
+
+	/**
+	 * Finds how low a rectangle can sit if its left edge is at the start of a segment
+	 * @return the y of its bottom, or -1 if it does not fit there
+	 */
+	private int fit(int first, int rectWidth, int rectHeight)
+	{
+		int x = segments.get(first)[X];
+		if(x + rectWidth > width)
+		{   return -1;
+		}
+		// the rectangle rests on the highest segment beneath it
+		int y = 0;
+		int remaining = rectWidth;
+		for(int i = first; remaining > 0; i++)
+		{
+			int[] segment = segments.get(i);
+			y = Math.max(y, segment[Y]);
+			if(y + rectHeight > height)
+			{   return -1;
+			}
+			remaining -= segment[WIDTH];
+		}
+		return y;
+	}
+	/**
+	 * Raises the skyline under a rectangle that has just been placed
+	 * @param first the segment the rectangle's left edge is at the start of
+	 */
+	private void raise(int first, int x, int top, int rectWidth)
+	{
+		segments.add(first, new int[] { x, top, rectWidth });
+		// shrink or remove the segments the rectangle now covers
+		int end = x + rectWidth;
+		int i = first + 1;
+		while(i < segments.size())
+		{
+			int[] segment = segments.get(i);
+			if(segment[X] >= end)
+			{   break;
+			}
+			int right = segment[X] + segment[WIDTH];
+			if(right <= end)
+			{   segments.remove(i);
+			}
+			else
+			{
+				segment[WIDTH] = right - end;
+				segment[X] = end;
+				break;
+			}
+		}
+		// merge neighbours at the same height
+		for(i = 0; i + 1 < segments.size(); )
+		{
+			int[] left = segments.get(i);
+			int[] right = segments.get(i + 1);
+			if(left[Y] == right[Y])
+			{
+				left[WIDTH] += right[WIDTH];
+				segments.remove(i + 1);
+			}
+			else
+			{   i++;
+			}
+		}
+	}
+
+	/** the indices into a segment of its left edge, its height and its width */
+	private static final int X = 0, Y = 1, WIDTH = 2;
+
+	/** the size of the page */
+	private int width, height;
+	/** the skyline, from left to right */
+	private List<int[]> segments = new ArrayList<int[]>();
+	/** the area covered by rectangles */
+	private long used;
+}
@@ -0,0 +1,385 @@
+package GraphicsLab;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.newdawn.slick.opengl.Texture;
+
+/**
+ * Packs several small images into one texture, so that everything drawn
+ * with them can be drawn with a single texture bound
+ *
+ * <p>Images are added, then build packs them with a SkylinePacker into the
+ * smallest power of two page that holds them, and uploads the page with its
+ * mipmaps. Each image gets a Region, which maps the texture coordinates
+ * meant for the image on its own to where the image is in the page.
+ *
+ * <p>Only a few mipmap levels are made, and every image is placed on a grid
+ * of 2^levels pixels, so that no pixel of any mipmap made holds more than one
+ * image. Images whose sizes are powers of two therefore pack edge to edge,
+ * with nothing between them; an image that does not fill its grid cells has
+ * the rest of them filled by repeating its edges. The regions' texture
+ * coordinates are kept half a pixel of the smallest mipmap inside each image,
+ * so that neither filtering nor mipmapping reads a neighbouring image, at
+ * the cost of 2^(levels-1) pixels around the edge of the full size image.
+ * Like clamping, this stops texture coordinates from repeating across the
+ * edges of an image
+ */
+public class TextureAtlas
+{
+	/** the default number of mipmaps made below the full size page */
+	public static final int DEFAULT_LEVELS = 2;
+
+	/**
+	 * @param maxSize the largest width or height the page may have, a power of two
+	 * @param maxLevels the most mipmaps to make below the full size page. Fewer
+	 *            are made if an image would be less than two pixels across in them
+	 */
+	public TextureAtlas(int maxSize, int maxLevels)
+	{
+		if(maxLevels < 0)
+		{   throw new IllegalArgumentException("the number of mipmaps cannot be negative, not " + maxLevels);
+		}
+		this.maxSize = maxSize;
+		this.maxLevels = maxLevels;
+	}
+
+	/**
+	 * Adds an image, which is packed when the atlas is built
+	 * @param ref the name the image is known by
+	 * @param image the image
+	 * @return the region the image will take, which is placed by build
+	 */
+	public final Region add(String ref, DecodedImage image)
+	{
+		if(texture != null)
+		{   throw new IllegalStateException("the atlas has already been built");
+		}
+		Region region = new Region(image);
+		regions.put(ref, region);
+		return region;
+	}
+	/**
+	 * Waits for a texture to be decoded and adds its image. The texture
+	 * itself is never uploaded
+	 * @param texture a texture that has not been uploaded
+	 * @return the region the image will take, which is placed by build
+	 * @throws IOException if the image could not be decoded
+	 */
+	public final Region add(PendingTexture texture) throws IOException
+	{   return add(texture.getRef(), texture.decoded());
+	}
+
+	/**
+	 * Packs the images into a page, and uploads it with its mipmaps. Must be
+	 * called on the thread that owns the OpenGL context
+	 * @param ref the name the page's texture is known by
+	 * @return the page's texture, which is left bound
+	 * @throws IllegalStateException if no images have been added, or they do not
+	 *             fit in a page of the largest size
+	 */
+	public final Texture build(String ref)
+	{
+		if(regions.isEmpty())
+		{   throw new IllegalStateException("no images have been added to the atlas");
+		}
+		pack();
+		texture = upload(ref, compose());
+		// the images are in the page now
+		for(Region region : regions.values())
+		{   region.image = null;
+		}
+		return texture;
+	}
+
+	/**
+	 * @return the region of an image, or null if it was not added
+	 */
+	public final Region getRegion(String ref)
+	{   return regions.get(ref);
+	}
+	/**
+	 * @return the page's texture, or null if the atlas has not been built
+	 */
+	public final Texture getTexture()
+	{   return texture;
+	}
+	/**
+	 * @return the number of bytes of video memory the page and its mipmaps take, or 0 if it has not been built
+	 */
+	public final int getUploadedBytes()
+	{   return uploadedBytes;
+	}
+
+	/**
+	 * @return the number of mipmaps below the full size page, or 0 if it has not been built
+	 */
+	public final int getLevels()
+	{   return levels;
+	}
+
+	/**
+	 * Places every region in the smallest page it fits, trying square pages
+	 * and pages twice as wide as they are high in order of area
+	 */
+	private void pack()
+	{
+		// every image must still be two pixels across in the smallest
+		// mipmap, so the half pixel kept inside it leaves some of it
+		levels = maxLevels;
+		for(Region region : regions.values())
+		{
+			int smallest = Math.min(region.width, region.height);
+			while(levels > 0 && smallest >> levels < 2)
+			{   levels--;
+			}
+		}
+		grid = 1 << levels;
+		List<Region> sorted = new ArrayList<Region>(regions.values());
+		// the tallest first, which keeps the skyline flat
+		Collections.sort(sorted, new Comparator<Region>()
+		{
+			public int compare(Region a, Region b)
+			{   return b.cellHeight() - a.cellHeight();
+			}
+		});
+		long area = 0;
+		for(Region region : sorted)
+		{   area += (long) region.cellWidth() * region.cellHeight();
+		}
+		for(int width = 1, height = 1; width <= maxSize && height <= maxSize; )
+		{
+			if((long) width * height >= area && place(sorted, width, height))
+			{   return;
+			}
+			if(width == height)
+			{   width *= 2;
+			}
+			else
+			{   height *= 2;
+			}
+		}
+		throw new IllegalStateException("the images do not fit in a " + maxSize + "x" + maxSize + " page");
+	}
+	/**
+	 * Tries to place every region in a page of one size
+	 * @return whether they all fit
+	 */
+	private boolean place(List<Region> sorted, int width, int height)
+	{
+		SkylinePacker packer = new SkylinePacker(width, height);
+		for(Region region : sorted)
+		{
+			int[] position = packer.add(region.cellWidth(), region.cellHeight());
+			if(position == null)
+			{   return false;
+			}
+			region.x = position[0];
+			region.y = position[1];
+		}
+		for(Region region : sorted)
+		{
+			region.pageWidth = width;
+			region.pageHeight = height;
+		}
+		return true;
+	}
+	/**
+	 * Copies every image into a page, and repeats its edges into the rest of its grid cells
+	 */
+	private DecodedImage compose()
+	{
+		int width = 1, height = 1;
+		boolean alpha = false;
+		for(Region region : regions.values())
+		{
+			width = region.pageWidth;
+			height = region.pageHeight;
+			alpha |= region.image.hasAlpha();
+		}
+		int bpp = DecodedImage.BYTES_PER_PIXEL;
+		ByteBuffer pixels = BufferUtils.createByteBuffer(width * height * bpp);
+		for(Region region : regions.values())
+		{
+			ByteBuffer source = region.image.getPixels();
+			int sourceStride = region.image.getTextureWidth() * bpp;
+			for(int row = 0; row < region.cellHeight(); row++)
+			{
+				int sourceRow = Math.min(row, region.height - 1);
+				int rowStart = ((region.y + row) * width + region.x) * bpp;
+				for(int column = 0; column < region.cellWidth(); column++)
+				{
+					int sourceColumn = Math.min(column, region.width - 1);
+					int from = sourceRow * sourceStride + sourceColumn * bpp;
+					int to = rowStart + column * bpp;
+					for(int i = 0; i < bpp; i++)
+					{   pixels.put(to + i, source.get(from + i));
+					}
+				}
+			}
+		}
+		return new DecodedImage(pixels, width, height, width, height, alpha);
+	}
+	/**
+	 * Uploads the page and its mipmaps, each made by averaging squares of
+	 * four pixels of the one before
+	 */
+	private Texture upload(String ref, DecodedImage page)
+	{
+		TextureUploadEvent event = new TextureUploadEvent();
+		event.begin();
+		int id = GL11.glGenTextures();
+		GLState.bindTexture(id);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER,
+			levels > 0 ? GL11.GL_LINEAR_MIPMAP_LINEAR : GL11.GL_LINEAR);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+		int format = page.hasAlpha() ? GL11.GL_RGBA8 : GL11.GL_RGB;
+		ByteBuffer pixels = page.getPixels();
+		int width = page.getTextureWidth();
+		int height = page.getTextureHeight();
+		int level = 0;
+		for(; ; level++)
+		{
+			GL11.glTexImage2D(GL11.GL_TEXTURE_2D, level, format, width, height, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE,
+				pixels);
+			uploadedBytes += width * height * DecodedImage.BYTES_PER_PIXEL;
+			if(level == levels || width == 1 || height == 1)
+			{   break;
+			}
+			pixels = halve(pixels, width, height);
+			width /= 2;
+			height /= 2;
+		}
+		// the smaller mipmaps would blend images together, so are never made
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL12.GL_TEXTURE_MAX_LEVEL, level);
+		event.end();
+		if(event.shouldCommit())
+		{
+			event.set(ref, page.getWidth(), page.getHeight(), DecodedImage.formatName(DecodedImage.RGBA), uploadedBytes);
+			event.commit();
+		}
+		return page.texture(ref, id);
+	}
+	/**
+	 * @return RGBA pixels half the width and height, each the average of four
+	 */
+	private static ByteBuffer halve(ByteBuffer pixels, int width, int height)
+	{
+		int bpp = DecodedImage.BYTES_PER_PIXEL;
+		int halfWidth = width / 2;
+		int halfHeight = height / 2;
+		ByteBuffer half = BufferUtils.createByteBuffer(halfWidth * halfHeight * bpp);
+		for(int y = 0; y < halfHeight; y++)
+		{
+			for(int x = 0; x < halfWidth; x++)
+			{
+				int a = (2 * y * width + 2 * x) * bpp;
+				int b = a + width * bpp;
+				for(int i = 0; i < bpp; i++)
+				{
+					int sum = (pixels.get(a + i) & 0xff) + (pixels.get(a + bpp + i) & 0xff)
+						+ (pixels.get(b + i) & 0xff) + (pixels.get(b + bpp + i) & 0xff);
+					half.put((byte) ((sum + 2) / 4));
+				}
+			}
+		}
+		half.flip();
+		return half;
+	}
+
+	/**
+	 * Where an image is in the page
+	 */
+	public class Region
+	{
+		/**
+		 * @param image the image to be placed
+		 */
+		Region(DecodedImage image)
+		{
+			this.image = image;
+			width = image.getWidth();
+			height = image.getHeight();
+		}
+
+		/**
+		 * @param s a texture coordinate across the image on its own, from 0 to 1
+		 * @return the texture coordinate across the page, kept half a pixel of
+		 *         the smallest mipmap inside the image
+		 */
+		public final float getS(float s)
+		{   return (x + inset() + s * (width - 2 * inset())) / pageWidth;
+		}
+		/**
+		 * @param t a texture coordinate up the image on its own, from 0 to 1
+		 * @return the texture coordinate up the page, kept half a pixel of
+		 *         the smallest mipmap inside the image
+		 */
+		public final float getT(float t)
+		{   return (y + inset() + t * (height - 2 * inset())) / pageHeight;
+		}
+		/**
+		 * @return the x, y, width and height of the image in the page, in pixels
+		 */
+		public final int[] getBounds()
+		{   return new int[] { x, y, width, height };
+		}
+
+		/**
+		 * @return the width the image takes, rounded up to the grid
+		 */
+		private int cellWidth()
+		{   return round(width);
+		}
+		/**
+		 * @return the height the image takes, rounded up to the grid
+		 */
+		private int cellHeight()
+		{   return round(height);
+		}
+		/**
+		 * @return n rounded up to a multiple of the grid
+		 */
+		private int round(int n)
+		{   return (n + grid - 1) / grid * grid;
+		}
+		/**
+		 * @return half a pixel of the smallest mipmap, in pixels of the full size page
+		 */
+		private float inset()
+		{   return 0.5f * grid;
+		}
+
+		/** the image, or null once it is in the page */
+		private DecodedImage image;
+		/** the bottom left corner of the image in the page */
+		private int x, y;
+		/** the size of the image */
+		private int width, height;
+		/** the size of the page */
+		private int pageWidth = 1, pageHeight = 1;
+	}
+
+	/** the largest width or height the page may have */
+	private int maxSize;
+	/** the most mipmaps to make below the full size page */
+	private int maxLevels;
+	/** the number of mipmaps below the full size page, once it has been built */
+	private int levels;
+	/** the size of the grid images are placed on, 2^levels pixels */
+	private int grid = 1;
+	/** the regions by the name of their image, in the order they were added */
+	private Map<String, Region> regions = new LinkedHashMap<String, Region>();
+	/** the page's texture, or null if the atlas has not been built */
+	private Texture texture;
+	/** the number of bytes of video memory the page and its mipmaps take */
+	private int uploadedBytes;
+}
@@ -0,0 +1,333 @@
+package GraphicsLab;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps decoded images in a directory on disk, so that later runs can map
+ * them into memory instead of decoding them again
+ *
+ * <p>Each entry is named after the SHA-1 hash of the encoded image's bytes,
+ * so an image is only found if its source is unchanged. An entry is little
+ * endian and laid out as a header of HEADER_SIZE bytes, followed by the
+ * padded pixels exactly as DecodedImage holds them, either RGBA or compressed
+ * by BlockCompressor. The header holds the MAGIC number, the VERSION, the
+ * image's sizes, flags and format, and the hashes of the source's bytes and
+ * of its name. When a source changes, the entries made
+ * from its earlier contents are found by the hash of its name and deleted.
+ *
+ * <p>A hit maps the entry and hands the mapping straight to DecodedImage, so
+ * the only work is reading and hashing the source, and the pixels are paged
+ * in from disk as they are uploaded. Compressed entries are also where the
+ * slow work of compressing is kept, so each image is only compressed once.
+ * A cache can be used from any thread
+ */
+public class TextureCache
+{
+	/** "GLTC" read as a little endian integer */
+	public static final int MAGIC = 0x43544c47;
+	/** the version of the layout, increased whenever it changes */
+	public static final int VERSION = 2;
+	/** the size of the header before the pixels, in bytes */
+	public static final int HEADER_SIZE = 128;
+	/** the file name extension of an entry */
+	public static final String EXTENSION = ".rgba";
+
+	/**
+	 * @param directory the directory to keep entries in, created when the first entry is written
+	 */
+	public TextureCache(File directory)
+	{   this.directory = directory;
+	}
+
+	/**
+	 * Entries are trusted as they are found, and anyone can work out their
+	 * names, so the default directory is in the user's own home directory
+	 * rather than the temporary directory every user shares
+	 * @return the directory named by the graphicslab.textureCache system
+	 *         property, or .cache/graphicslab-texture-cache in the user's home directory
+	 */
+	public static File defaultDirectory()
+	{
+		String property = System.getProperty("graphicslab.textureCache");
+		if(property != null)
+		{   return new File(property);
+		}
+		return new File(new File(System.getProperty("user.home"), ".cache"), "graphicslab-texture-cache");
+	}
+
+	/**
+	 * Finds an image in the cache, or decodes it and adds it if it is not there
+	 * @param ref the name of the image, used to delete entries made from earlier versions of it
+	 * @param source the encoded image
+	 * @param flipped whether the image should be flipped so that a t of 0 is at its bottom
+	 * @param compressed whether the image should be compressed by BlockCompressor
+	 * @return the decoded image, whose pixels are mapped from the cache if it was found
+	 * @throws IOException if the image cannot be decoded. Failing to read or
+	 *         write an entry is not an error, the image is decoded instead
+	 */
+	public final DecodedImage load(String ref, byte[] source, boolean flipped, boolean compressed) throws IOException
+	{
+		byte[] contentHash = sha1(source);
+		File entry = new File(directory, hex(contentHash) + (flipped ? "-flipped" : "") + (compressed ? "-bc" : "")
+			+ EXTENSION);
+		if(entry.isFile())
+		{
+			try
+			{
+				DecodedImage image = map(entry, contentHash);
+				if(image != null)
+				{
+					hits.incrementAndGet();
+					return image;
+				}
+			}
+			catch(IOException e)
+			{   System.err.println("Could not read texture cache entry " + entry + ": " + e.getMessage());
+			}
+		}
+
+		misses.incrementAndGet();
+		DecodedImage image = DecodedImage.decode(new ByteArrayInputStream(source), flipped);
+		if(compressed)
+		{   image = BlockCompressor.compress(image);
+		}
+		try
+		{
+			byte[] refHash = sha1(ref.getBytes(UTF8));
+			write(entry, image, contentHash, refHash, flipped);
+			deleteStale(entry, refHash, flipped, compressed);
+		}
+		catch(IOException e)
+		{   System.err.println("Could not write texture cache entry " + entry + ": " + e.getMessage());
+		}
+		return image;
+	}
+
+	/**
+	 * @return the directory entries are kept in
+	 */
+	public final File getDirectory()
+	{   return directory;
+	}
+	/**
+	 * @return the number of images found in the cache so far
+	 */
+	public final int getHits()
+	{   return hits.get();
+	}
+	/**
+	 * @return the number of images that had to be decoded so far
+	 */
+	public final int getMisses()
+	{   return misses.get();
+	}
+
+	/**
+	 * Maps an entry and checks its header
+	 * @param contentHash the hash the entry should have been made from
+	 * @return the image, or null if the entry is from another version or does not match
+	 */
+	private static DecodedImage map(File entry, byte[] contentHash) throws IOException
+	{
+		ByteBuffer data;
+		RandomAccessFile raf = new RandomAccessFile(entry, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
+		{   raf.close();
+		}
+		data.order(ByteOrder.LITTLE_ENDIAN);
+		Header header = Header.read(data);
+		if(header == null || !Arrays.equals(header.contentHash, contentHash))
+		{   return null;
+		}
+		if(header.format < DecodedImage.RGBA || header.format > DecodedImage.BC3)
+		{   return null;
+		}
+		long size = DecodedImage.dataSize(header.format, header.textureWidth, header.textureHeight);
+		if(HEADER_SIZE + size != data.limit())
+		{   return null;
+		}
+		data.position(HEADER_SIZE);
+		ByteBuffer pixels = data.slice();
+		return new DecodedImage(pixels, header.width, header.height, header.textureWidth, header.textureHeight,
+			header.alpha, header.format);
+	}
+
+	/**
+	 * Writes an entry to a temporary file, then renames it into place so
+	 * that a half written entry is never found
+	 */
+	private void write(File entry, DecodedImage image, byte[] contentHash, byte[] refHash, boolean flipped)
+		throws IOException
+	{
+		if(!directory.isDirectory() && !directory.mkdirs())
+		{   throw new IOException("cannot create " + directory);
+		}
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION);
+		header.putInt(image.getWidth()).putInt(image.getHeight());
+		header.putInt(image.getTextureWidth()).putInt(image.getTextureHeight());
+		header.putInt((image.hasAlpha() ? ALPHA : 0) | (flipped ? FLIPPED : 0));
+		header.putInt(image.getFormat());
+		header.put(contentHash).put(refHash);
+		header.clear();
+
+		File temporary = File.createTempFile("entry", ".tmp", directory);
+		RandomAccessFile raf = new RandomAccessFile(temporary, "rw");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			ByteBuffer pixels = image.getPixels().duplicate();
+			pixels.clear();
+			while(header.hasRemaining())
+			{   channel.write(header);
+			}
+			while(pixels.hasRemaining())
+			{   channel.write(pixels);
+			}
+		}
+		finally
+		{   raf.close();
+		}
+		// renaming over an existing file fails on some systems
+		entry.delete();
+		if(!temporary.renameTo(entry))
+		{
+			temporary.delete();
+			throw new IOException("cannot rename " + temporary + " to " + entry);
+		}
+	}
+
+	/**
+	 * Deletes the entries made from other contents of the same source as an entry
+	 * @param keep the entry that was just written
+	 * @param refHash the hash of the source's name
+	 * @param flipped whether the entry was flipped, as the other way up is not stale
+	 * @param compressed whether the entry was compressed, as the other format is not stale either
+	 */
+	private void deleteStale(File keep, byte[] refHash, boolean flipped, boolean compressed)
+	{
+		File[] entries = directory.listFiles(new FileFilter()
+		{
+			public boolean accept(File file)
+			{   return file.getName().endsWith(EXTENSION);
+			}
+		});
+		if(entries == null)
+		{   return;
+		}
+		ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		for(File entry : entries)
+		{
+			if(entry.equals(keep))
+			{   continue;
+			}
+			try
+			{
+				RandomAccessFile raf = new RandomAccessFile(entry, "r");
+				try
+				{
+					data.clear();
+					raf.getChannel().read(data, 0);
+				}
+				finally
+				{   raf.close();
+				}
+				data.flip();
+				Header header = Header.read(data);
+				// an entry from another version of the cache can never be used again either
+				if(header == null || (Arrays.equals(header.refHash, refHash) && header.flipped == flipped
+					&& (header.format != DecodedImage.RGBA) == compressed))
+				{   entry.delete();
+				}
+			}
+			catch(IOException e)
+			{   // another thread may have deleted it, or it is still mapped
+			}
+		}
+	}
+
+	/**
+	 * @return the SHA-1 hash of some bytes
+	 */
+	private static byte[] sha1(byte[] bytes)
+	{
+		try
+		{   return MessageDigest.getInstance("SHA-1").digest(bytes);
+		}
+		catch(NoSuchAlgorithmException e)
+		{   throw new IllegalStateException("every Java platform must support SHA-1", e);
+		}
+	}
+	/**
+	 * @return bytes as lower case hexadecimal
+	 */
+	private static String hex(byte[] bytes)
+	{
+		StringBuilder builder = new StringBuilder(bytes.length * 2);
+		for(byte b : bytes)
+		{   builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * The header of an entry
+	 */
+	private static class Header
+	{
+		/**
+		 * @param data a little endian buffer starting at the header
+		 * @return the header, or null if it is too short, not an entry or another version
+		 */
+		static Header read(ByteBuffer data)
+		{
+			if(data.remaining() < HEADER_SIZE || data.getInt() != MAGIC || data.getInt() != VERSION)
+			{   return null;
+			}
+			Header header = new Header();
+			header.width = data.getInt();
+			header.height = data.getInt();
+			header.textureWidth = data.getInt();
+			header.textureHeight = data.getInt();
+			int flags = data.getInt();
+			header.alpha = (flags & ALPHA) != 0;
+			header.flipped = (flags & FLIPPED) != 0;
+			header.format = data.getInt();
+			data.get(header.contentHash);
+			data.get(header.refHash);
+			return header;
+		}
+		private int width, height, textureWidth, textureHeight, format;
+		private boolean alpha, flipped;
+		private byte[] contentHash = new byte[HASH_SIZE];
+		private byte[] refHash = new byte[HASH_SIZE];
+	}
+
+	/** the flags of an entry whose image has an alpha channel, and which was flipped */
+	private static final int ALPHA = 1, FLIPPED = 2;
+	/** the number of bytes in a SHA-1 hash */
+	private static final int HASH_SIZE = 20;
+	/** the encoding of source names */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** the directory entries are kept in */
+	private File directory;
+	/** the numbers of images found and not found */
+	private AtomicInteger hits = new AtomicInteger(), misses = new AtomicInteger();
+}
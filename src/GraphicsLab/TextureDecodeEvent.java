@@ -0,0 +1,51 @@
+package GraphicsLab;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for each image TextureDecoder decodes, or
+ * finds in the TextureCache, on its worker threads
+ */
+@Name("GraphicsLab.TextureDecode")
+@Label("Texture Decode")
+@Category({ "GraphicsLab", "Textures" })
+@Description("An image decoded, and maybe compressed, or found in the texture cache")
+@StackTrace(false)
+class TextureDecodeEvent extends Event
+{
+	/**
+	 * Fills in what the event has to say about an image, if it is to be committed
+	 * @param ref the path of the image
+	 * @param sourceBytes the size of the encoded image
+	 * @param image the decoded image
+	 */
+	final void set(String ref, int sourceBytes, DecodedImage image)
+	{
+		this.ref = ref;
+		this.sourceBytes = sourceBytes;
+		width = image.getWidth();
+		height = image.getHeight();
+		format = DecodedImage.formatName(image.getFormat());
+		decodedBytes = image.getPixels().capacity();
+	}
+
+	@Label("Path")
+	String ref;
+	@Label("Width")
+	int width;
+	@Label("Height")
+	int height;
+	@Label("Format")
+	String format;
+	@Label("Source Size")
+	@DataAmount
+	long sourceBytes;
+	@Label("Decoded Size")
+	@DataAmount
+	long decodedBytes;
+}
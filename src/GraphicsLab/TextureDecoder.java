@@ -0,0 +1,147 @@
+package GraphicsLab;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+
+import org.newdawn.slick.util.ResourceLoader;
+
+/**
+ * Decodes texture images on a pool of worker threads, one per processor
+ *
+ * <p>Decoding PNG and JPEG images is almost all of the time taken to load a
+ * texture, and needs no OpenGL context, so each image is decoded into a
+ * direct buffer in the background while the OpenGL thread carries on. The
+ * PendingTexture returned for each image uploads it on the OpenGL thread
+ * once it is needed. Images are found with Slick's ResourceLoader, in the
+ * same way as Slick's TextureLoader. The worker threads are daemons, so they
+ * do not keep the program running.
+ *
+ * <p>Decoded images are kept in a TextureCache, in its default directory
+ * unless another cache is set, so that later runs skip decoding images that
+ * have not changed. Images can also be compressed by BlockCompressor on the
+ * worker threads, which the cache keeps too
+ */
+public class TextureDecoder
+{
+	/**
+	 * Starts decoding an image in the background
+	 * @param ref the path of the image, found with ResourceLoader
+	 * @param flipped whether to flip the image so that a t of 0 is at its bottom
+	 * @return the texture, which can be uploaded once the image is decoded
+	 */
+	public static PendingTexture decode(String ref, boolean flipped)
+	{   return decode(ref, flipped, false);
+	}
+	/**
+	 * Starts decoding an image in the background, and maybe compressing it
+	 * @param ref the path of the image, found with ResourceLoader
+	 * @param flipped whether to flip the image so that a t of 0 is at its bottom
+	 * @param compressed whether to compress the image into BC1 or BC3, which
+	 *        is uploaded compressed if OpenGL supports it
+	 * @return the texture, which can be uploaded once the image is decoded
+	 */
+	public static PendingTexture decode(final String ref, final boolean flipped, final boolean compressed)
+	{
+		return new PendingTexture(ref, pool().submit(new Callable<DecodedImage>()
+		{
+			public DecodedImage call() throws IOException
+			{
+				TextureDecodeEvent event = new TextureDecodeEvent();
+				event.begin();
+				InputStream in = ResourceLoader.getResourceAsStream(ref);
+				if(in == null)
+				{   throw new IOException("cannot find " + ref);
+				}
+				byte[] source;
+				try
+				{   source = readFully(in);
+				}
+				finally
+				{   in.close();
+				}
+				TextureCache cache = getCache();
+				DecodedImage image;
+				if(cache == null)
+				{
+					image = DecodedImage.decode(new ByteArrayInputStream(source), flipped);
+					if(compressed)
+					{   image = BlockCompressor.compress(image);
+					}
+				}
+				else
+				{   image = cache.load(ref, source, flipped, compressed);
+				}
+				event.end();
+				if(event.shouldCommit())
+				{
+					event.set(ref, source.length, image);
+					event.commit();
+				}
+				return image;
+			}
+		}));
+	}
+
+	/**
+	 * Sets the cache that decoded images are kept in
+	 * @param cache the cache, or null to always decode images
+	 */
+	public static synchronized void setCache(TextureCache cache)
+	{   TextureDecoder.cache = cache;
+	}
+	/**
+	 * @return the cache that decoded images are kept in, or null if there is none
+	 */
+	public static synchronized TextureCache getCache()
+	{   return cache;
+	}
+
+	/**
+	 * @return everything left in a stream
+	 */
+	private static byte[] readFully(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 8192));
+		byte[] buffer = new byte[8192];
+		int read;
+		while((read = in.read(buffer)) != -1)
+		{   out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+	/**
+	 * @return the worker pool, created the first time it is needed
+	 */
+	private static synchronized ExecutorService pool()
+	{
+		if(pool == null)
+		{
+			// decode straight from memory rather than through temporary files
+			ImageIO.setUseCache(false);
+			pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory()
+			{
+				public Thread newThread(Runnable task)
+				{
+					Thread thread = new Thread(task, "texture decoder " + ++threads);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return pool;
+	}
+
+	/** the cache decoded images are kept in, or null if there is none */
+	private static TextureCache cache = new TextureCache(TextureCache.defaultDirectory());
+	/** the worker pool, or null if it has not been created */
+	private static ExecutorService pool;
+	/** the number of worker threads created, used to name them */
+	private static int threads;
+}
@@ -0,0 +1,262 @@
+package GraphicsLab;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.newdawn.slick.opengl.Texture;
+
+/**
+ * Keeps textures on the graphics card only while they are wanted, within a
+ * budget of video memory
+ *
+ * <p>Textures are loaded the first time they are asked for, or earlier if
+ * they are prefetched: prefetching starts decoding in the background with
+ * TextureDecoder, and update uploads at most one decoded texture per frame so
+ * that no single frame pays for several uploads. Whenever the uploaded
+ * textures take more than the budget, the least recently used are deleted
+ * until they fit again. A texture used this frame or the last is never
+ * deleted, so the budget can be overrun for a while if too many textures are
+ * in use at once. A deleted texture is loaded again if it is asked for, which
+ * is cheap when the TextureCache has kept its decoded image.
+ *
+ * <p>Textures are deleted through GLState, so they must not be released by
+ * anything else. All methods must be called on the thread that owns the
+ * OpenGL context
+ */
+public class TextureResidency
+{
+	/**
+	 * @param budgetBytes the number of bytes of video memory the textures may take
+	 * @param flipped whether to flip images so that a t of 0 is at their bottom
+	 */
+	public TextureResidency(long budgetBytes, boolean flipped)
+	{   this(budgetBytes, flipped, false);
+	}
+	/**
+	 * @param budgetBytes the number of bytes of video memory the textures may take
+	 * @param flipped whether to flip images so that a t of 0 is at their bottom
+	 * @param compressed whether to compress images with BlockCompressor
+	 */
+	public TextureResidency(long budgetBytes, boolean flipped, boolean compressed)
+	{
+		this.budgetBytes = budgetBytes;
+		this.flipped = flipped;
+		this.compressed = compressed;
+	}
+
+	/**
+	 * Starts decoding a texture in the background, unless it is already
+	 * loaded or being loaded. It is uploaded by a later update once decoded
+	 * @param ref the path of the image
+	 */
+	public final void prefetch(String ref)
+	{
+		if(!entries.containsKey(ref))
+		{   entries.put(ref, new Entry(TextureDecoder.decode(ref, flipped, compressed)));
+		}
+	}
+	/**
+	 * Gets a texture, loading it first if it is not on the graphics card,
+	 * and marks it as used this frame
+	 * @param ref the path of the image
+	 * @return the texture
+	 * @throws IOException if the image could not be decoded
+	 */
+	public final Texture get(String ref) throws IOException
+	{
+		prefetch(ref);
+		Entry entry = entries.get(ref);
+		upload(ref, entry);
+		entry.lastUsed = frame;
+		evict();
+		return entry.pending.get();
+	}
+	/**
+	 * Marks a texture as used this frame, without loading it
+	 * @param ref the path of the image
+	 * @return the texture, or null if it is not on the graphics card
+	 */
+	public final Texture touch(String ref)
+	{
+		Entry entry = entries.get(ref);
+		if(entry == null || !entry.pending.isUploaded())
+		{   return null;
+		}
+		entry.lastUsed = frame;
+		try
+		{   return entry.pending.get();
+		}
+		catch(IOException e)
+		{   throw new IllegalStateException("an uploaded texture cannot fail", e);
+		}
+	}
+	/**
+	 * @return whether a texture is on the graphics card
+	 */
+	public final boolean isResident(String ref)
+	{
+		Entry entry = entries.get(ref);
+		return entry != null && entry.pending.isUploaded();
+	}
+
+	/**
+	 * Starts a new frame: uploads one prefetched texture if any have finished
+	 * decoding, then deletes textures until the rest fit in the budget. Call
+	 * once per frame, before the frame's textures are asked for
+	 */
+	public final void update()
+	{
+		frame++;
+		String decoded = null;
+		for(Map.Entry<String, Entry> entry : entries.entrySet())
+		{
+			PendingTexture pending = entry.getValue().pending;
+			if(!pending.isUploaded() && pending.isDecoded())
+			{
+				decoded = entry.getKey();
+				break;
+			}
+		}
+		if(decoded != null)
+		{
+			// getting it makes it the most recently used, as it is about to be wanted
+			Entry entry = entries.get(decoded);
+			try
+			{
+				upload(decoded, entry);
+				entry.lastUsed = frame;
+			}
+			catch(IOException e)
+			{   System.err.println("Could not prefetch " + decoded + ": " + e.getMessage());
+			}
+		}
+		evict();
+	}
+
+	/**
+	 * Deletes every texture
+	 */
+	public final void clear()
+	{
+		for(Entry entry : entries.values())
+		{   delete(entry);
+		}
+		entries.clear();
+	}
+
+	/**
+	 * @return the number of bytes of video memory the uploaded textures take
+	 */
+	public final long getResidentBytes()
+	{   return residentBytes;
+	}
+	/**
+	 * @return the number of bytes of video memory the textures may take
+	 */
+	public final long getBudgetBytes()
+	{   return budgetBytes;
+	}
+	/**
+	 * @param budgetBytes the number of bytes of video memory the textures may take, from the next update
+	 */
+	public final void setBudgetBytes(long budgetBytes)
+	{   this.budgetBytes = budgetBytes;
+	}
+	/**
+	 * @return the number of textures uploaded so far
+	 */
+	public final int getUploads()
+	{   return uploads;
+	}
+	/**
+	 * @return the number of textures deleted to stay within the budget so far
+	 */
+	public final int getEvictions()
+	{   return evictions;
+	}
+
+	/**
+	 * Uploads a texture unless it is already uploaded. If it cannot be
+	 * decoded it is forgotten, so that asking for it again tries again
+	 */
+	private void upload(String ref, Entry entry) throws IOException
+	{
+		if(entry.pending.isUploaded())
+		{   return;
+		}
+		try
+		{   entry.pending.get();
+		}
+		catch(IOException e)
+		{
+			entries.remove(ref);
+			throw e;
+		}
+		residentBytes += entry.pending.getBytes();
+		uploads++;
+	}
+	/**
+	 * Deletes the least recently used textures until the rest fit in the
+	 * budget, or only textures used this frame or the last are left
+	 */
+	private void evict()
+	{
+		Iterator<Entry> iterator = entries.values().iterator();
+		while(residentBytes > budgetBytes && iterator.hasNext())
+		{
+			Entry entry = iterator.next();
+			if(entry.pending.isUploaded() && entry.lastUsed < frame - 1)
+			{
+				delete(entry);
+				iterator.remove();
+				evictions++;
+			}
+		}
+	}
+	/**
+	 * Deletes a texture from the graphics card if it was uploaded
+	 */
+	private void delete(Entry entry)
+	{
+		if(entry.pending.isUploaded())
+		{
+			try
+			{   GLState.deleteTexture(entry.pending.get().getTextureID());
+			}
+			catch(IOException e)
+			{   throw new IllegalStateException("an uploaded texture cannot fail", e);
+			}
+			residentBytes -= entry.pending.getBytes();
+		}
+	}
+
+	/**
+	 * A texture that is loaded or being loaded
+	 */
+	private static class Entry
+	{
+		Entry(PendingTexture pending)
+		{   this.pending = pending;
+		}
+		/** the texture */
+		private PendingTexture pending;
+		/** the frame the texture was last used in */
+		private long lastUsed = -2;
+	}
+
+	/** the textures by path, from least to most recently used */
+	private Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	/** the number of bytes of video memory the textures may take */
+	private long budgetBytes;
+	/** whether images are flipped so that a t of 0 is at their bottom */
+	private boolean flipped;
+	/** whether images are compressed */
+	private boolean compressed;
+	/** the number of bytes of video memory the uploaded textures take */
+	private long residentBytes;
+	/** the number of the current frame */
+	private long frame;
+	/** the numbers of textures uploaded and deleted */
+	private int uploads, evictions;
+}
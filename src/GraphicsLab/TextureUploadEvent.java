@@ -0,0 +1,48 @@
+package GraphicsLab;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for each texture uploaded to the graphics
+ * card, which happens on the thread that owns the OpenGL context and so
+ * holds up a frame
+ */
+@Name("GraphicsLab.TextureUpload")
+@Label("Texture Upload")
+@Category({ "GraphicsLab", "Textures" })
+@Description("A texture uploaded to the graphics card, including any wait for it to be decoded")
+public class TextureUploadEvent extends Event
+{
+	/**
+	 * Fills in what the event has to say about a texture, if it is to be committed
+	 * @param ref the name the texture is known by
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @param format the name of the format the texture is uploaded in
+	 * @param bytes the number of bytes of video memory the texture takes
+	 */
+	public final void set(String ref, int width, int height, String format, long bytes)
+	{
+		this.ref = ref;
+		this.width = width;
+		this.height = height;
+		this.format = format;
+		this.bytes = bytes;
+	}
+
+	@Label("Name")
+	String ref;
+	@Label("Width")
+	int width;
+	@Label("Height")
+	int height;
+	@Label("Format")
+	String format;
+	@Label("Video Memory")
+	@DataAmount
+	long bytes;
+}
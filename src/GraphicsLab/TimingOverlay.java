@@ -0,0 +1,199 @@
+package GraphicsLab;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Draws the FrameTimings over the scene as text, one line per span with its
+ * median, 99th and 99.9th percentile and longest durations in milliseconds
+ *
+ * <p>The text is drawn with glBitmap from a small built in font, so it needs
+ * no textures and leaves no state behind. It is rebuilt from the spans twice
+ * a second, into a buffer that is reused, so drawing it allocates nothing.
+ * Letters are drawn in upper case, and characters the font does not have
+ * are drawn as question marks
+ */
+public class TimingOverlay
+{
+	public TimingOverlay()
+	{
+		for(int i = 0; i < glyphIndex.length; i++)
+		{   glyphIndex[i] = -1;
+		}
+		glyphs = new ByteBuffer[FONT_CHARS.length()];
+		for(int i = 0; i < glyphs.length; i++)
+		{
+			glyphIndex[FONT_CHARS.charAt(i)] = i;
+			glyphs[i] = glyph(i);
+		}
+	}
+
+	/**
+	 * Draws the overlay in the top left corner of the display. Must be
+	 * called on the thread that owns the OpenGL context, with nothing left
+	 * in the Batch
+	 * @param width the width of the display, in pixels
+	 * @param height the height of the display, in pixels
+	 */
+	public final void draw(int width, int height)
+	{
+		long now = System.nanoTime();
+		if(text.length() == 0 || now - lastBuilt >= REBUILD_INTERVAL)
+		{
+			build();
+			lastBuilt = now;
+		}
+
+		GL11.glPushAttrib(GL11.GL_ENABLE_BIT | GL11.GL_CURRENT_BIT | GL11.GL_TRANSFORM_BIT);
+		GL11.glDisable(GL11.GL_LIGHTING);
+		GL11.glDisable(GL11.GL_TEXTURE_2D);
+		GL11.glDisable(GL11.GL_DEPTH_TEST);
+		GL11.glDisable(GL11.GL_BLEND);
+		GL11.glMatrixMode(GL11.GL_PROJECTION);
+		GL11.glPushMatrix();
+		GL11.glLoadIdentity();
+		GL11.glOrtho(0.0, width, 0.0, height, -1.0, 1.0);
+		GL11.glMatrixMode(GL11.GL_MODELVIEW);
+		GL11.glPushMatrix();
+		GL11.glLoadIdentity();
+		GL11.glColor3f(1.0f, 1.0f, 0.25f);
+
+		float y = height - MARGIN - GLYPH_HEIGHT;
+		GL11.glRasterPos2f(MARGIN, y);
+		for(int i = 0; i < text.length(); i++)
+		{
+			char c = text.charAt(i);
+			if(c == '\n')
+			{
+				y -= LINE_HEIGHT;
+				GL11.glRasterPos2f(MARGIN, y);
+			}
+			else
+			{
+				c = Character.toUpperCase(c);
+				int index = c < glyphIndex.length ? glyphIndex[c] : -1;
+				GL11.glBitmap(GLYPH_WIDTH, GLYPH_HEIGHT, 0.0f, 0.0f, ADVANCE, 0.0f,
+					glyphs[index < 0 ? glyphIndex['?'] : index]);
+			}
+		}
+
+		GL11.glPopMatrix();
+		GL11.glMatrixMode(GL11.GL_PROJECTION);
+		GL11.glPopMatrix();
+		GL11.glPopAttrib();
+	}
+
+	/**
+	 * Writes a line of text for every span
+	 */
+	private void build()
+	{
+		text.setLength(0);
+		text.append("span                 p50     p99   p99.9     max  (ms)\n");
+		List<TimingSpan> spans = FrameTimings.getSpans();
+		for(int i = 0; i < spans.size(); i++)
+		{
+			TimingSpan span = spans.get(i);
+			LatencyHistogram histogram = span.getHistogram();
+			int start = text.length();
+			text.append(span.getName());
+			text.setLength(Math.min(text.length(), start + NAME_COLUMNS));
+			while(text.length() < start + NAME_COLUMNS)
+			{   text.append(' ');
+			}
+			appendMillis(histogram.getValueAtPercentile(50.0));
+			appendMillis(histogram.getValueAtPercentile(99.0));
+			appendMillis(histogram.getValueAtPercentile(99.9));
+			appendMillis(histogram.getMax());
+			text.append('\n');
+		}
+	}
+	/**
+	 * Appends a duration in milliseconds to three decimal places, right aligned in a column
+	 */
+	private void appendMillis(long nanos)
+	{
+		long micros = Math.min(nanos / 1000, 9999999);
+		long millis = micros / 1000;
+		int digits = millis >= 1000 ? 4 : millis >= 100 ? 3 : millis >= 10 ? 2 : 1;
+		for(int i = digits + 4; i < NUMBER_COLUMNS; i++)
+		{   text.append(' ');
+		}
+		text.append(millis).append('.');
+		long fraction = micros % 1000;
+		if(fraction < 100)
+		{   text.append('0');
+		}
+		if(fraction < 10)
+		{   text.append('0');
+		}
+		text.append(fraction);
+	}
+
+	/**
+	 * Makes the bitmap of a character of the font, doubled in size
+	 * @param index the position of the character in FONT_CHARS
+	 * @return the rows of the bitmap, bottom first, each padded to ROW_BYTES
+	 */
+	private static ByteBuffer glyph(int index)
+	{
+		ByteBuffer bitmap = BufferUtils.createByteBuffer(GLYPH_HEIGHT * ROW_BYTES);
+		for(int row = FONT_HEIGHT - 1; row >= 0; row--)
+		{
+			int bits = Character.digit(FONT.charAt(index * FONT_HEIGHT + row), 32);
+			// double every pixel across, most significant bit on the left
+			int doubled = 0;
+			for(int column = 0; column < FONT_WIDTH; column++)
+			{
+				if((bits & (1 << (FONT_WIDTH - 1 - column))) != 0)
+				{   doubled |= 3 << (30 - 2 * column);
+				}
+			}
+			// and every row up
+			for(int copy = 0; copy < 2; copy++)
+			{   bitmap.putInt(doubled);
+			}
+		}
+		bitmap.flip();
+		return bitmap;
+	}
+
+	/** the characters of the font, in the order of their bitmaps */
+	private static final String FONT_CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ.:%/-_()=?";
+	/**
+	 * the bitmaps of the font, seven rows from the top for each character,
+	 * each row a base 32 digit whose five bits are its pixels from the left
+	 */
+	private static final String FONT =
+		"ehjlphe" + "4c4444e" + "eh1248v" + "v2421he" + "26aiv22" + "vgu11he" + "68guhhe" + "v124888" +
+		"ehhehhe" + "ehhf12c" + "ehhvhhh" + "uhhuhhu" + "ehggghe" + "sihhhis" + "vgguggv" + "vgguggg" +
+		"ehgnhhf" + "hhhvhhh" + "e44444e" + "72222ic" + "hikokih" + "ggggggv" + "hrllhhh" + "hhpljhh" +
+		"ehhhhhe" + "uhhuggg" + "ehhhlid" + "uhhukih" + "fgge11u" + "v444444" + "hhhhhhe" + "hhhhha4" +
+		"hhhllla" + "hha4ahh" + "hhha444" + "v1248gv" + "00000cc" + "0cc0cc0" + "op248j3" + "01248g0" +
+		"000v000" + "000000v" + "2488842" + "8422248" + "00v0v00" + "eh12404";
+	/** the size of a character of the font, in pixels */
+	private static final int FONT_WIDTH = 5, FONT_HEIGHT = 7;
+	/** the size of a character as drawn, in pixels */
+	private static final int GLYPH_WIDTH = 2 * FONT_WIDTH, GLYPH_HEIGHT = 2 * FONT_HEIGHT;
+	/** the number of bytes in a row of a bitmap, which suits any unpack alignment up to 4 */
+	private static final int ROW_BYTES = 4;
+	/** the distance from one character to the next and one line to the next, in pixels */
+	private static final int ADVANCE = GLYPH_WIDTH + 2, LINE_HEIGHT = GLYPH_HEIGHT + 4;
+	/** the distance from the text to the edges of the display, in pixels */
+	private static final int MARGIN = 8;
+	/** the number of characters the name of a span and each duration take */
+	private static final int NAME_COLUMNS = 16, NUMBER_COLUMNS = 8;
+	/** how often the text is rebuilt, in nanoseconds */
+	private static final long REBUILD_INTERVAL = 500000000L;
+
+	/** the position of each ASCII character in FONT_CHARS, or -1 if it is not in the font */
+	private int[] glyphIndex = new int[128];
+	/** the bitmap of each character of the font */
+	private ByteBuffer[] glyphs;
+	/** the text, rebuilt twice a second */
+	private StringBuilder text = new StringBuilder(1024);
+	/** when the text was last rebuilt, by System.nanoTime */
+	private long lastBuilt;
+}
@@ -0,0 +1,81 @@
+package GraphicsLab;
+
+/**
+ * A part of the work done each frame, such as a phase of the application
+ * loop, whose durations are recorded in a LatencyHistogram
+ *
+ * <p>A span is timed by keeping the result of begin and passing it to end,
+ * which takes no lock and allocates nothing, so a span may be timed on any
+ * thread and every frame. Spans are made and looked up by FrameTimings
+ */
+public class TimingSpan implements TimingSpanMBean
+{
+	/**
+	 * @param name the name of the span
+	 */
+	TimingSpan(String name)
+	{   this.name = name;
+	}
+
+	/**
+	 * @return the time the span begins, to be passed to end
+	 */
+	public final long begin()
+	{   return System.nanoTime();
+	}
+	/**
+	 * Records the span as lasting from when it began until now
+	 * @param start the time returned by begin
+	 * @return the duration recorded, in nanoseconds
+	 */
+	public final long end(long start)
+	{
+		long nanos = System.nanoTime() - start;
+		histogram.record(nanos);
+		return nanos;
+	}
+	/**
+	 * Records a duration of the span timed some other way
+	 * @param nanos the duration, in nanoseconds
+	 */
+	public final void record(long nanos)
+	{   histogram.record(nanos);
+	}
+
+	/**
+	 * @return the durations recorded
+	 */
+	public final LatencyHistogram getHistogram()
+	{   return histogram;
+	}
+
+	public final String getName()
+	{   return name;
+	}
+	public final long getCount()
+	{   return histogram.getCount();
+	}
+	public final double getMeanMicros()
+	{   return histogram.getMean() / 1000.0;
+	}
+	public final double getP50Micros()
+	{   return histogram.getValueAtPercentile(50.0) / 1000.0;
+	}
+	public final double getP99Micros()
+	{   return histogram.getValueAtPercentile(99.0) / 1000.0;
+	}
+	public final double getP999Micros()
+	{   return histogram.getValueAtPercentile(99.9) / 1000.0;
+	}
+	public final double getMaxMicros()
+	{   return histogram.getMax() / 1000.0;
+	}
+	public final void reset()
+	{   histogram.reset();
+	}
+
+	/** the name of the span */
+	private String name;
+	/** the durations recorded */
+	private LatencyHistogram histogram = new LatencyHistogram();
+}
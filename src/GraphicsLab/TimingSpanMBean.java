@@ -0,0 +1,40 @@
+package GraphicsLab;
+
+/**
+ * What JMX shows of a TimingSpan, with durations in microseconds
+ */
+public interface TimingSpanMBean
+{
+	/**
+	 * @return the name of the span
+	 */
+	public String getName();
+	/**
+	 * @return the number of times the span has been timed
+	 */
+	public long getCount();
+	/**
+	 * @return the mean duration of the span
+	 */
+	public double getMeanMicros();
+	/**
+	 * @return the median duration of the span
+	 */
+	public double getP50Micros();
+	/**
+	 * @return the duration the span is no longer than 99% of the time
+	 */
+	public double getP99Micros();
+	/**
+	 * @return the duration the span is no longer than 99.9% of the time
+	 */
+	public double getP999Micros();
+	/**
+	 * @return the longest duration of the span
+	 */
+	public double getMaxMicros();
+	/**
+	 * Forgets every duration recorded
+	 */
+	public void reset();
+}
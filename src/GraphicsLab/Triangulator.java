@@ -0,0 +1,250 @@
+package GraphicsLab;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Splits planar polygons, convex or concave, into triangles by ear clipping
+ *
+ * <p>The polygon is projected onto whichever of the xy, yz or zx planes it
+ * faces most directly, and triangles are cut off one vertex at a time from
+ * corners that are convex and have no other vertex inside them. The triangles
+ * keep the polygon's winding, so they face the same way as the polygon.
+ *
+ * <p>The results are given as indices into the polygon's own list of
+ * vertices, so that per corner data such as texture coordinates can be looked
+ * up alongside them. A Triangulator caches the result for each sequence of
+ * handles it is given, separately for each VertexArray since the same handles
+ * mean different vertices in different arrays, so each polygon is only ever
+ * clipped once; as with face normals, the vertices must not be moved afterwards
+ */
+public class Triangulator
+{
+	/**
+	 * Triangulates a polygon made up of vertices in a VertexArray, reusing the
+	 * result if the same handles in the same array have been triangulated before
+	 * @param verts the array the vertices are stored in
+	 * @param handles the polygon's vertex handles in order around it
+	 * @param count the number of handles to use
+	 * @return three indices into handles per triangle. The array belongs to the
+	 *         cache and must not be changed
+	 */
+	public final int[] triangles(VertexArray verts, int[] handles, int count)
+	{
+		Map<Key, int[]> cache = caches.get(verts);
+		if(cache == null)
+		{
+			cache = new HashMap<Key, int[]>();
+			caches.put(verts, cache);
+		}
+		probe.set(handles, count);
+		int[] triangles = cache.get(probe);
+		if(triangles == null)
+		{
+			float[] positions = new float[count * 3];
+			for(int i = 0; i < count; i++)
+			{
+				positions[i * 3] = verts.getX(handles[i]);
+				positions[i * 3 + 1] = verts.getY(handles[i]);
+				positions[i * 3 + 2] = verts.getZ(handles[i]);
+			}
+			triangles = new int[(count - 2) * 3];
+			triangles = java.util.Arrays.copyOf(triangles, triangulate(positions, count, triangles));
+			Key key = new Key();
+			key.set(java.util.Arrays.copyOf(handles, count), count);
+			cache.put(key, triangles);
+		}
+		return triangles;
+	}
+	/**
+	 * @return the number of polygons in the cache, across every array
+	 */
+	public final int size()
+	{
+		int size = 0;
+		for(Map<Key, int[]> cache : caches.values())
+		{   size += cache.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Triangulates a planar polygon by ear clipping
+	 * @param positions the x, y and z of each vertex in order around the polygon
+	 * @param count the number of vertices, at least 3
+	 * @param out receives three indices into the vertices per triangle, and
+	 *            must have room for (count - 2) * 3 of them
+	 * @return the number of indices written, which is less than (count - 2) * 3
+	 *         only if some vertices were repeated or in a line
+	 */
+	public static int triangulate(float[] positions, int count, int[] out)
+	{
+		if(count < 3)
+		{   throw new IllegalArgumentException("a polygon needs at least 3 vertices, not " + count);
+		}
+
+		// find the polygon's normal with Newell's method, then drop its
+		// largest component to project the polygon onto a plane it faces
+		float nx = 0.0f, ny = 0.0f, nz = 0.0f;
+		for(int i = 0; i < count; i++)
+		{
+			int j = (i + 1) % count;
+			float ax = positions[i * 3], ay = positions[i * 3 + 1], az = positions[i * 3 + 2];
+			float bx = positions[j * 3], by = positions[j * 3 + 1], bz = positions[j * 3 + 2];
+			nx += (ay - by) * (az + bz);
+			ny += (az - bz) * (ax + bx);
+			nz += (ax - bx) * (ay + by);
+		}
+		int u, v;
+		float sign;
+		if(Math.abs(nx) >= Math.abs(ny) && Math.abs(nx) >= Math.abs(nz))
+		{   u = 1; v = 2; sign = nx;
+		}
+		else if(Math.abs(ny) >= Math.abs(nz))
+		{   u = 2; v = 0; sign = ny;
+		}
+		else
+		{   u = 0; v = 1; sign = nz;
+		}
+		// flip the projection if the polygon faces away from it, so that
+		// convex corners always turn anti-clockwise
+		float flip = sign < 0.0f ? -1.0f : 1.0f;
+		float[] px = new float[count];
+		float[] py = new float[count];
+		for(int i = 0; i < count; i++)
+		{
+			px[i] = positions[i * 3 + u];
+			py[i] = positions[i * 3 + v] * flip;
+		}
+
+		// the vertices that have not been clipped yet, as a linked ring
+		int[] next = new int[count];
+		int[] prev = new int[count];
+		for(int i = 0; i < count; i++)
+		{
+			next[i] = (i + 1) % count;
+			prev[i] = (i + count - 1) % count;
+		}
+
+		int written = 0;
+		int remaining = count;
+		int current = 0;
+		// how many corners in a row have been tried without finding an ear
+		int misses = 0;
+		while(remaining > 3)
+		{
+			int a = prev[current], b = current, c = next[current];
+			boolean ear = isEar(px, py, next, a, b, c);
+			if(ear || misses > remaining)
+			{
+				// a corner with no area adds nothing, so it is dropped without a triangle.
+				// If no ear can be found the polygon is not simple, so clip anyway to finish
+				if(cross(px, py, a, b, c) != 0.0f)
+				{
+					out[written++] = a;
+					out[written++] = b;
+					out[written++] = c;
+				}
+				next[a] = c;
+				prev[c] = a;
+				remaining--;
+				misses = 0;
+				current = c;
+			}
+			else
+			{
+				current = c;
+				misses++;
+			}
+		}
+		int a = prev[current], b = current, c = next[current];
+		if(cross(px, py, a, b, c) != 0.0f)
+		{
+			out[written++] = a;
+			out[written++] = b;
+			out[written++] = c;
+		}
+		return written;
+	}
+
+	/**
+	 * @return whether the corner at b is convex and has no other remaining vertex inside it
+	 */
+	private static boolean isEar(float[] px, float[] py, int[] next, int a, int b, int c)
+	{
+		if(cross(px, py, a, b, c) <= 0.0f)
+		{   return false;
+		}
+		for(int p = next[c]; p != a; p = next[p])
+		{
+			// vertices sharing a position with the corner do not block it
+			if(same(px, py, p, a) || same(px, py, p, b) || same(px, py, p, c))
+			{   continue;
+			}
+			if(cross(px, py, a, b, p) >= 0.0f && cross(px, py, b, c, p) >= 0.0f
+				&& cross(px, py, c, a, p) >= 0.0f)
+			{   return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * @return twice the signed area of the projected triangle abc, positive if it turns anti-clockwise
+	 */
+	private static float cross(float[] px, float[] py, int a, int b, int c)
+	{   return (px[b] - px[a]) * (py[c] - py[a]) - (py[b] - py[a]) * (px[c] - px[a]);
+	}
+	/**
+	 * @return whether two projected vertices are in the same place
+	 */
+	private static boolean same(float[] px, float[] py, int a, int b)
+	{   return px[a] == px[b] && py[a] == py[b];
+	}
+
+	/**
+	 * A sequence of vertex handles used as a key into the cache
+	 */
+	private static class Key
+	{
+		void set(int[] handles, int count)
+		{
+			this.handles = handles;
+			this.count = count;
+			int h = count;
+			for(int i = 0; i < count; i++)
+			{   h = h * 31 + handles[i];
+			}
+			hash = h;
+		}
+		@Override
+		public int hashCode()
+		{   return hash;
+		}
+		@Override
+		public boolean equals(Object other)
+		{
+			if(!(other instanceof Key))
+			{   return false;
+			}
+			Key key = (Key) other;
+			if(key.count != count || key.hash != hash)
+			{   return false;
+			}
+			for(int i = 0; i < count; i++)
+			{
+				if(key.handles[i] != handles[i])
+				{   return false;
+				}
+			}
+			return true;
+		}
+		private int[] handles;
+		private int count;
+		private int hash;
+	}
+
+	/** the triangles of each polygon seen so far, by the array its vertices are in and then its handles */
+	private Map<VertexArray, Map<Key, int[]>> caches = new IdentityHashMap<VertexArray, Map<Key, int[]>>();
+	/** reused to look polygons up without creating a key each time */
+	private Key probe = new Key();
+}
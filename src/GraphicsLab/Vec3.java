@@ -0,0 +1,245 @@
+package GraphicsLab;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * A mutable 3D vector for doing geometry maths without creating garbage
+ *
+ * <p>Unlike Vector, Normal and Vertex, a Vec3 is meant to be created once and
+ * reused: every operation works in place on this object and returns it, so
+ * calls can be chained. Static versions of the common operations are also
+ * provided which work on offsets into float arrays, such as the arrays held by
+ * a VertexArray, so that packed data never has to be copied into objects
+ */
+public class Vec3
+{
+	/**
+	 * Constructs a zero length Vec3
+	 */
+	public Vec3()
+	{
+	}
+	/**
+	 * Constructs a Vec3 from its x, y and z components
+	 * @param x The Vec3's x component
+	 * @param y The Vec3's y component
+	 * @param z The Vec3's z component
+	 */
+	public Vec3(float x, float y, float z)
+	{	set(x, y, z);
+	}
+
+	/**
+	 * Sets all three components
+	 * @return this Vec3
+	 */
+	public final Vec3 set(float x, float y, float z)
+	{
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		return this;
+	}
+	/**
+	 * Copies another Vec3
+	 * @return this Vec3
+	 */
+	public final Vec3 set(Vec3 v)
+	{   return set(v.x, v.y, v.z);
+	}
+	/**
+	 * Copies a Vertex
+	 * @return this Vec3
+	 */
+	public final Vec3 set(Vertex v)
+	{   return set(v.getX(), v.getY(), v.getZ());
+	}
+	/**
+	 * Copies a Vector
+	 * @return this Vec3
+	 */
+	public final Vec3 set(Vector v)
+	{   return set(v.getX(), v.getY(), v.getZ());
+	}
+	/**
+	 * Copies a Normal
+	 * @return this Vec3
+	 */
+	public final Vec3 set(Normal n)
+	{   return set(n.getX(), n.getY(), n.getZ());
+	}
+	/**
+	 * Reads three consecutive floats from an array
+	 * @return this Vec3
+	 */
+	public final Vec3 load(float[] array, int offset)
+	{   return set(array[offset], array[offset + 1], array[offset + 2]);
+	}
+	/**
+	 * Writes the components to three consecutive floats of an array
+	 */
+	public final void store(float[] array, int offset)
+	{
+		array[offset] = x;
+		array[offset + 1] = y;
+		array[offset + 2] = z;
+	}
+
+	/**
+	 * Adds another Vec3 to this one
+	 * @return this Vec3
+	 */
+	public final Vec3 add(Vec3 v)
+	{   return set(x + v.x, y + v.y, z + v.z);
+	}
+	/**
+	 * Subtracts another Vec3 from this one
+	 * @return this Vec3
+	 */
+	public final Vec3 sub(Vec3 v)
+	{   return set(x - v.x, y - v.y, z - v.z);
+	}
+	/**
+	 * Sets this Vec3 to a - b
+	 * @return this Vec3
+	 */
+	public final Vec3 sub(Vec3 a, Vec3 b)
+	{   return set(a.x - b.x, a.y - b.y, a.z - b.z);
+	}
+	/**
+	 * Multiplies every component by a scalar
+	 * @return this Vec3
+	 */
+	public final Vec3 scale(float s)
+	{   return set(x * s, y * s, z * s);
+	}
+	/**
+	 * @return the dot product of this Vec3 and another
+	 */
+	public final float dot(Vec3 v)
+	{   return x * v.x + y * v.y + z * v.z;
+	}
+	/**
+	 * Sets this Vec3 to the cross product a x b. It is safe for a or b to be this Vec3
+	 * @return this Vec3
+	 */
+	public final Vec3 cross(Vec3 a, Vec3 b)
+	{   return set(a.y * b.z - a.z * b.y, a.z * b.x - a.x * b.z, a.x * b.y - a.y * b.x);
+	}
+	/**
+	 * @return the length of this Vec3
+	 */
+	public final float length()
+	{   return (float) Math.sqrt(x*x + y*y + z*z);
+	}
+	/**
+	 * Normalises this Vec3 so that it is of unit length, using float arithmetic only.
+	 * A zero length Vec3 is left unchanged
+	 * @return this Vec3
+	 */
+	public final Vec3 normalise()
+	{
+		float lengthSq = x*x + y*y + z*z;
+		if(lengthSq > 0.0f)
+		{   scale(1.0f / (float) Math.sqrt(lengthSq));
+		}
+		return this;
+	}
+	/**
+	 * Sets this Vec3 to the linear interpolation between a and b
+	 * @param t 0 gives a, 1 gives b
+	 * @return this Vec3
+	 */
+	public final Vec3 lerp(Vec3 a, Vec3 b, float t)
+	{   return set(a.x + (b.x - a.x) * t, a.y + (b.y - a.y) * t, a.z + (b.z - a.z) * t);
+	}
+	/**
+	 * Sets this Vec3 to the unit normal of a planar face using Newell's method,
+	 * matching the Normal constructors. The vertices must be passed in
+	 * anti-clockwise order
+	 * @param v4 The fourth vertex, or null if the face is a triangle
+	 * @return this Vec3
+	 */
+	public final Vec3 newell(Vertex v1, Vertex v2, Vertex v3, Vertex v4)
+	{
+		set(0.0f, 0.0f, 0.0f);
+		Vertex last = v4 == null ? v3 : v4;
+		newellEdge(v1, v2);
+		newellEdge(v2, v3);
+		if(v4 != null)
+		{   newellEdge(v3, v4);
+		}
+		newellEdge(last, v1);
+		return normalise();
+	}
+
+	/**
+	 * Submits this Vec3 to OpenGL as a normal using an immediate mode call
+	 */
+	public final void submitNormal()
+	{	GL11.glNormal3f(x, y, z);
+	}
+	/**
+	 * Submits this Vec3 to OpenGL as a vertex using an immediate mode call
+	 */
+	public final void submitVertex()
+	{	GL11.glVertex3f(x, y, z);
+	}
+
+	/**
+	 * Sets out[io..io+2] to a[ia..ia+2] - b[ib..ib+2]
+	 */
+	public static void sub(float[] a, int ia, float[] b, int ib, float[] out, int io)
+	{
+		out[io] = a[ia] - b[ib];
+		out[io + 1] = a[ia + 1] - b[ib + 1];
+		out[io + 2] = a[ia + 2] - b[ib + 2];
+	}
+	/**
+	 * @return the dot product of a[ia..ia+2] and b[ib..ib+2]
+	 */
+	public static float dot(float[] a, int ia, float[] b, int ib)
+	{   return a[ia] * b[ib] + a[ia + 1] * b[ib + 1] + a[ia + 2] * b[ib + 2];
+	}
+	/**
+	 * Sets out[io..io+2] to the cross product of a[ia..ia+2] and b[ib..ib+2].
+	 * The output must not overlap either input
+	 */
+	public static void cross(float[] a, int ia, float[] b, int ib, float[] out, int io)
+	{
+		out[io] = a[ia + 1] * b[ib + 2] - a[ia + 2] * b[ib + 1];
+		out[io + 1] = a[ia + 2] * b[ib] - a[ia] * b[ib + 2];
+		out[io + 2] = a[ia] * b[ib + 1] - a[ia + 1] * b[ib];
+	}
+	/**
+	 * Normalises a[ia..ia+2] in place using float arithmetic only. A zero length
+	 * vector is left unchanged
+	 */
+	public static void normalise(float[] a, int ia)
+	{
+		float lengthSq = dot(a, ia, a, ia);
+		if(lengthSq > 0.0f)
+		{
+			float inverse = 1.0f / (float) Math.sqrt(lengthSq);
+			a[ia] *= inverse;
+			a[ia + 1] *= inverse;
+			a[ia + 2] *= inverse;
+		}
+	}
+
+	/**
+	 * Adds one edge's contribution to a Newell normal
+	 */
+	private void newellEdge(Vertex a, Vertex b)
+	{
+		x += (a.getY() - b.getY()) * (a.getZ() + b.getZ());
+		y += (a.getZ() - b.getZ()) * (a.getX() + b.getX());
+		z += (a.getX() - b.getX()) * (a.getY() + b.getY());
+	}
+
+	/** the x component of this vector */
+	public float x;
+	/** the y component of this vector */
+	public float y;
+	/** the z component of this vector */
+	public float z;
+}
@@ -30,6 +30,16 @@ public class Vector
         this.y = vertex.getY();
         this.z = vertex.getZ();
     }
+    /**
+     * Constructs a Vector object from a Vec3
+     * @param v the Vec3 whose components are copied
+     */
+    public Vector(Vec3 v)
+    {
+        this.x = v.x;
+        this.y = v.y;
+        this.z = v.z;
+    }
     
     /**
      * @return the x value of the vector 
@@ -50,6 +60,15 @@ public class Vector
     {   return z;
     }
     
+    /**
+     * Copies this vector into an existing Vec3 without allocating
+     * @param dest the Vec3 to copy into
+     * @return dest
+     */
+    public final Vec3 toVec3(Vec3 dest)
+    {   return dest.set(x, y, z);
+    }
+    
     /**
      * Normalises this vector, so that the vector is of unit length
      */
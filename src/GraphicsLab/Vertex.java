@@ -20,6 +20,13 @@ public class Vertex
 		this.y = y;
 		this.z = z;
 	}
+	/**
+	 * Constructs a Vertex object from a Vec3
+	 * @param v The Vec3 whose components are copied
+	 */
+	public Vertex(Vec3 v)
+	{	this(v.x, v.y, v.z);
+	}
     /**
      * @return the x value of the vertex 
      */
@@ -51,6 +58,14 @@ public class Vertex
 	public final Vector toVector()
 	{   return new Vector(this);
 	}
+	/**
+	 * Copies this vertex into an existing Vec3 without allocating
+	 * @param dest the Vec3 to copy into
+	 * @return dest
+	 */
+	public final Vec3 toVec3(Vec3 dest)
+	{   return dest.set(x, y, z);
+	}
 
 	/** the x component of this vertex */
 	private float x;
@@ -0,0 +1,341 @@
+package GraphicsLab;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Stores the positions, normals and texture coordinates of many vertices in
+ * contiguous float arrays, rather than as one object per vertex
+ *
+ * <p>Each vertex is referred to by the integer handle returned when it is
+ * added, which is simply its index into the arrays. Keeping the components
+ * side by side makes iterating over a mesh cache friendly, and the arrays can
+ * be copied straight into direct buffers for uploading to the graphics card
+ */
+public class VertexArray
+{
+	/**
+	 * Constructs an empty VertexArray with room for a default number of vertices
+	 */
+	public VertexArray()
+	{	this(16);
+	}
+	/**
+	 * Constructs an empty VertexArray
+	 * @param capacity The number of vertices to make room for up front
+	 */
+	public VertexArray(int capacity)
+	{
+		capacity = Math.max(capacity, 1);
+		positions = new float[capacity * 3];
+		normals = new float[capacity * 3];
+		texCoords = new float[capacity * 2];
+	}
+
+	/**
+	 * Adds a vertex to the end of the array
+	 * @param x The vertex's x component
+	 * @param y The vertex's y component
+	 * @param z The vertex's z component
+	 * @return the handle of the new vertex
+	 */
+	public final int add(float x, float y, float z)
+	{
+		if(count * 3 == positions.length)
+		{   grow(count * 2);
+		}
+		positions[count * 3] = x;
+		positions[count * 3 + 1] = y;
+		positions[count * 3 + 2] = z;
+		return count++;
+	}
+	/**
+	 * Adds a copy of a Vertex object to the end of the array
+	 * @param vertex The vertex to copy
+	 * @return the handle of the new vertex
+	 */
+	public final int add(Vertex vertex)
+	{   return add(vertex.getX(), vertex.getY(), vertex.getZ());
+	}
+
+	/**
+	 * Sets the normal stored against a vertex
+	 * @param handle The vertex's handle
+	 * @param x The normal's x component
+	 * @param y The normal's y component
+	 * @param z The normal's z component
+	 */
+	public final void setNormal(int handle, float x, float y, float z)
+	{
+		normals[handle * 3] = x;
+		normals[handle * 3 + 1] = y;
+		normals[handle * 3 + 2] = z;
+	}
+	/**
+	 * Sets the texture coordinates stored against a vertex
+	 * @param handle The vertex's handle
+	 * @param s The horizontal texture coordinate
+	 * @param t The vertical texture coordinate
+	 */
+	public final void setTexCoord(int handle, float s, float t)
+	{
+		texCoords[handle * 2] = s;
+		texCoords[handle * 2 + 1] = t;
+	}
+
+	/**
+	 * @return the number of vertices in the array
+	 */
+	public final int size()
+	{   return count;
+	}
+	/**
+	 * @return the x value of the given vertex
+	 */
+	public final float getX(int handle)
+	{   return positions[handle * 3];
+	}
+	/**
+	 * @return the y value of the given vertex
+	 */
+	public final float getY(int handle)
+	{   return positions[handle * 3 + 1];
+	}
+	/**
+	 * @return the z value of the given vertex
+	 */
+	public final float getZ(int handle)
+	{   return positions[handle * 3 + 2];
+	}
+	/**
+	 * @return the given vertex as a Vector object
+	 */
+	public final Vector toVector(int handle)
+	{   return new Vector(getX(handle), getY(handle), getZ(handle));
+	}
+
+	/**
+	 * Copies the normal stored against the given vertex
+	 * @param dest The Vec3 to copy into
+	 * @return dest
+	 */
+	public final Vec3 getNormal(int handle, Vec3 dest)
+	{   return dest.set(normals[handle * 3], normals[handle * 3 + 1], normals[handle * 3 + 2]);
+	}
+	/**
+	 * Copies the texture coordinates stored against the given vertex
+	 * @param dest An array with room for the s and t coordinates
+	 * @return dest
+	 */
+	public final float[] getTexCoord(int handle, float[] dest)
+	{
+		dest[0] = texCoords[handle * 2];
+		dest[1] = texCoords[handle * 2 + 1];
+		return dest;
+	}
+
+	/**
+	 * Submits the position of the given vertex to OpenGL using an immediate mode call
+	 */
+	public final void submit(int handle)
+	{	GL11.glVertex3f(positions[handle * 3], positions[handle * 3 + 1], positions[handle * 3 + 2]);
+	}
+	/**
+	 * Submits the normal stored against the given vertex to OpenGL using an immediate mode call
+	 */
+	public final void submitNormal(int handle)
+	{	GL11.glNormal3f(normals[handle * 3], normals[handle * 3 + 1], normals[handle * 3 + 2]);
+	}
+	/**
+	 * Submits the texture coordinates stored against the given vertex to OpenGL using an immediate mode call
+	 */
+	public final void submitTexCoord(int handle)
+	{	GL11.glTexCoord2f(texCoords[handle * 2], texCoords[handle * 2 + 1]);
+	}
+
+	/**
+	 * Finds the normal of the face made up of the given vertices, computing it
+	 * the first time the face is seen and reusing it from then on. The face is
+	 * identified by its vertex handles, so the vertices must not be moved once
+	 * a face using them has been looked up
+	 * @param v1
+	 * @param v2
+	 * @param v3
+	 * @param v4 The fourth vertex, or -1 if the face is a triangle
+	 * @return a handle to the face's cached normal
+	 */
+	public final int faceNormal(int v1, int v2, int v3, int v4)
+	{
+		if(faceCount * 2 >= faceTable.length)
+		{   growFaces();
+		}
+		int mask = faceTable.length - 1;
+		int slot = hashFace(v1, v2, v3, v4) & mask;
+		// linear probe until the face or an empty slot is found
+		while(faceTable[slot] != 0)
+		{
+			int face = faceTable[slot] - 1;
+			if(faceVerts[face * 4] == v1 && faceVerts[face * 4 + 1] == v2
+				&& faceVerts[face * 4 + 2] == v3 && faceVerts[face * 4 + 3] == v4)
+			{   return face;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		// the face has not been seen before, so work out its normal now
+		int face = faceCount++;
+		faceVerts[face * 4] = v1;
+		faceVerts[face * 4 + 1] = v2;
+		faceVerts[face * 4 + 2] = v3;
+		faceVerts[face * 4 + 3] = v4;
+		computeFaceNormal(face);
+		faceTable[slot] = face + 1;
+		return face;
+	}
+	/**
+	 * Submits a cached face normal to OpenGL using an immediate mode call
+	 * @param face The handle returned by faceNormal
+	 */
+	public final void submitFaceNormal(int face)
+	{	GL11.glNormal3f(faceNormals[face * 3], faceNormals[face * 3 + 1], faceNormals[face * 3 + 2]);
+	}
+	/**
+	 * Copies a cached face normal
+	 * @param face The handle returned by faceNormal
+	 * @param dest The Vec3 to copy into
+	 * @return dest
+	 */
+	public final Vec3 getFaceNormal(int face, Vec3 dest)
+	{   return dest.set(faceNormals[face * 3], faceNormals[face * 3 + 1], faceNormals[face * 3 + 2]);
+	}
+
+	/**
+	 * Computes the normals of many faces made up of vertices in this array in
+	 * one go, without going through the face cache. This is intended for
+	 * rebuilding large generated meshes
+	 * @param batch the reusable scratch space to compute with
+	 * @param indices the vertex handles of each face in turn
+	 * @param verticesPerFace 3 for triangles or 4 for planar quads
+	 * @param faceCount the number of faces
+	 * @param out receives the normal x, y and z of each face in turn
+	 */
+	public final void computeFaceNormals(FaceNormals batch, int[] indices, int verticesPerFace, int faceCount, float[] out)
+	{	batch.compute(positions, indices, verticesPerFace, faceCount, out);
+	}
+
+	/**
+	 * @return a new direct buffer holding the x, y and z of every vertex in turn, ready for uploading
+	 */
+	public final java.nio.FloatBuffer positionBuffer()
+	{   return toBuffer(positions, count * 3);
+	}
+	/**
+	 * @return a new direct buffer holding the normal of every vertex in turn, ready for uploading
+	 */
+	public final java.nio.FloatBuffer normalBuffer()
+	{   return toBuffer(normals, count * 3);
+	}
+	/**
+	 * @return a new direct buffer holding the texture coordinates of every vertex in turn, ready for uploading
+	 */
+	public final java.nio.FloatBuffer texCoordBuffer()
+	{   return toBuffer(texCoords, count * 2);
+	}
+
+	/**
+	 * @return the number of bytes taken up by the vertex data, including any unused capacity
+	 */
+	public final long sizeInBytes()
+	{   return 4L * (positions.length + normals.length + texCoords.length
+			+ faceTable.length + faceVerts.length + faceNormals.length);
+	}
+
+	/**
+	 * Computes the normal of a face using Newell's method, which is the same
+	 * calculation as the Normal constructors but reads straight from the arrays
+	 */
+	private void computeFaceNormal(int face)
+	{
+		int sides = faceVerts[face * 4 + 3] < 0 ? 3 : 4;
+		float x = 0.0f, y = 0.0f, z = 0.0f;
+		for(int i = 0; i < sides; i++)
+		{
+			int a = faceVerts[face * 4 + i] * 3;
+			int b = faceVerts[face * 4 + (i + 1) % sides] * 3;
+			x += (positions[a + 1] - positions[b + 1]) * (positions[a + 2] + positions[b + 2]);
+			y += (positions[a + 2] - positions[b + 2]) * (positions[a] + positions[b]);
+			z += (positions[a] - positions[b]) * (positions[a + 1] + positions[b + 1]);
+		}
+		faceNormals[face * 3] = x;
+		faceNormals[face * 3 + 1] = y;
+		faceNormals[face * 3 + 2] = z;
+		Vec3.normalise(faceNormals, face * 3);
+	}
+	/**
+	 * Doubles the size of the face cache and re-inserts every cached face
+	 */
+	private void growFaces()
+	{
+		int capacity = faceTable.length;
+		faceVerts = java.util.Arrays.copyOf(faceVerts, capacity * 4);
+		faceNormals = java.util.Arrays.copyOf(faceNormals, capacity * 3);
+		faceTable = new int[capacity * 2];
+		int mask = faceTable.length - 1;
+		for(int face = 0; face < faceCount; face++)
+		{
+			int slot = hashFace(faceVerts[face * 4], faceVerts[face * 4 + 1],
+				faceVerts[face * 4 + 2], faceVerts[face * 4 + 3]) & mask;
+			while(faceTable[slot] != 0)
+			{   slot = (slot + 1) & mask;
+			}
+			faceTable[slot] = face + 1;
+		}
+	}
+	/**
+	 * @return a well mixed hash of a face's vertex handles
+	 */
+	private static int hashFace(int v1, int v2, int v3, int v4)
+	{
+		int h = v1;
+		h = h * 31 + v2;
+		h = h * 31 + v3;
+		h = h * 31 + v4;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Copies the first part of an array into a new direct buffer
+	 */
+	private static java.nio.FloatBuffer toBuffer(float[] array, int length)
+	{
+		java.nio.FloatBuffer buffer = BufferUtils.createFloatBuffer(Math.max(length, 1));
+		buffer.put(array, 0, length).flip();
+		return buffer;
+	}
+	/**
+	 * Enlarges the arrays so that they can hold at least the given number of vertices
+	 */
+	private void grow(int capacity)
+	{
+		positions = java.util.Arrays.copyOf(positions, capacity * 3);
+		normals = java.util.Arrays.copyOf(normals, capacity * 3);
+		texCoords = java.util.Arrays.copyOf(texCoords, capacity * 2);
+	}
+
+	/** the x, y and z of each vertex in turn */
+	private float[] positions;
+	/** the normal x, y and z of each vertex in turn */
+	private float[] normals;
+	/** the s and t texture coordinates of each vertex in turn */
+	private float[] texCoords;
+	/** the number of vertices in use */
+	private int count;
+
+	/** open addressing table of face handles plus one, zero marks an empty slot */
+	private int[] faceTable = new int[32];
+	/** the four vertex handles of each cached face in turn */
+	private int[] faceVerts = new int[64];
+	/** the normal x, y and z of each cached face in turn */
+	private float[] faceNormals = new float[48];
+	/** the number of cached faces */
+	private int faceCount;
+}
@@ -0,0 +1,269 @@
+package GraphicsLab;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Encodes and decodes vertex attributes in fewer bits, and packs a
+ * VertexArray into a compact interleaved layout
+ *
+ * <p>A packed vertex takes 16 bytes instead of 32:
+ * <ul>
+ * <li>the position as three signed 16 bit integers, plus two bytes of padding,
+ *     scaled to the mesh's bounding box
+ * <li>the normal as three signed 8 bit integers, plus one byte of padding
+ * <li>the texture coordinates as two signed 16 bit integers, scaled to the
+ *     mesh's range of texture coordinates
+ * </ul>
+ * The fixed function pipeline reads signed bytes as normals between -1 and 1
+ * by itself, but reads 16 bit positions and texture coordinates as whole
+ * numbers, so they are scaled back by the modelview and texture matrices
+ * given by Packing. The scale applied to positions is the same on every axis,
+ * so that normals keep their direction; GL_NORMALIZE or GL_RESCALE_NORMAL
+ * must be enabled for their length to be corrected.
+ *
+ * <p>The fixed function pipeline cannot unpack octahedral normals, which fit
+ * a unit vector into two 16 bit numbers far more accurately than three bytes,
+ * so they are provided here as encoding utilities only, for storage or for
+ * use by shaders.
+ *
+ * <p>With a half extent of h, a decoded position is within about h / 65534 of the
+ * original on each axis, a decoded snorm8 normal is within 1 / 254 on each
+ * component before renormalising, and a decoded octahedral normal is within
+ * about 0.0001 radians of the original
+ */
+public class VertexCodec
+{
+	/** the number of bytes per packed vertex */
+	public static final int STRIDE = 16;
+	/** where the normal and texture coordinates start within a packed vertex */
+	public static final int NORMAL_OFFSET = 8, TEX_COORD_OFFSET = 12;
+
+	/**
+	 * @param value a value between -1 and 1, clamped if outside
+	 * @return the value as a signed 16 bit normalised integer
+	 */
+	public static short encodeSnorm16(float value)
+	{   return (short) Math.round(clamp(value) * 32767.0f);
+	}
+	/**
+	 * @return the value of a signed 16 bit normalised integer, between -1 and 1
+	 */
+	public static float decodeSnorm16(short value)
+	{   return Math.max(value / 32767.0f, -1.0f);
+	}
+	/**
+	 * @param value a value between -1 and 1, clamped if outside
+	 * @return the value as a signed 8 bit normalised integer
+	 */
+	public static byte encodeSnorm8(float value)
+	{   return (byte) Math.round(clamp(value) * 127.0f);
+	}
+	/**
+	 * @return the value of a signed 8 bit normalised integer, between -1 and 1
+	 */
+	public static float decodeSnorm8(byte value)
+	{   return Math.max(value / 127.0f, -1.0f);
+	}
+
+	/**
+	 * Encodes a unit vector by projecting it onto an octahedron and unfolding
+	 * the octahedron into a square
+	 * @return two signed 16 bit normalised integers, x in the low 16 bits and y in the high
+	 */
+	public static int encodeOctahedral(float x, float y, float z)
+	{
+		float sum = Math.abs(x) + Math.abs(y) + Math.abs(z);
+		if(sum == 0.0f)
+		{   return 0;
+		}
+		float u = x / sum;
+		float v = y / sum;
+		if(z < 0.0f)
+		{
+			// fold the lower half of the octahedron over the upper half
+			float foldedU = (1.0f - Math.abs(v)) * signNotZero(u);
+			float foldedV = (1.0f - Math.abs(u)) * signNotZero(v);
+			u = foldedU;
+			v = foldedV;
+		}
+		return (encodeSnorm16(u) & 0xffff) | (encodeSnorm16(v) << 16);
+	}
+	/**
+	 * Decodes a unit vector encoded by encodeOctahedral
+	 * @param dest the Vec3 to decode into
+	 * @return dest, normalised
+	 */
+	public static Vec3 decodeOctahedral(int packed, Vec3 dest)
+	{
+		float u = decodeSnorm16((short) packed);
+		float v = decodeSnorm16((short) (packed >> 16));
+		float z = 1.0f - Math.abs(u) - Math.abs(v);
+		if(z < 0.0f)
+		{
+			float unfoldedU = (1.0f - Math.abs(v)) * signNotZero(u);
+			float unfoldedV = (1.0f - Math.abs(u)) * signNotZero(v);
+			u = unfoldedU;
+			v = unfoldedV;
+		}
+		return dest.set(u, v, z).normalise();
+	}
+
+	/**
+	 * Packs the vertices of a VertexArray into the compact layout
+	 * @param verts the vertices to pack
+	 * @param textured whether to pack texture coordinates, which are left as zero otherwise
+	 * @param packing receives the transforms that unpack the positions and texture coordinates
+	 * @return a new direct buffer of STRIDE bytes per vertex, ready for uploading
+	 */
+	public static ByteBuffer pack(VertexArray verts, boolean textured, Packing packing)
+	{
+		int count = verts.size();
+		packing.fit(verts, textured);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(count * STRIDE).order(ByteOrder.nativeOrder());
+		Vec3 normal = new Vec3();
+		float[] texCoord = new float[2];
+		for(int v = 0; v < count; v++)
+		{
+			int base = v * STRIDE;
+			buffer.putShort(base, encodeSnorm16((verts.getX(v) - packing.centreX) / packing.halfExtent));
+			buffer.putShort(base + 2, encodeSnorm16((verts.getY(v) - packing.centreY) / packing.halfExtent));
+			buffer.putShort(base + 4, encodeSnorm16((verts.getZ(v) - packing.centreZ) / packing.halfExtent));
+			verts.getNormal(v, normal);
+			buffer.put(base + NORMAL_OFFSET, encodeSnorm8(normal.x));
+			buffer.put(base + NORMAL_OFFSET + 1, encodeSnorm8(normal.y));
+			buffer.put(base + NORMAL_OFFSET + 2, encodeSnorm8(normal.z));
+			if(textured)
+			{
+				verts.getTexCoord(v, texCoord);
+				buffer.putShort(base + TEX_COORD_OFFSET, encodeSnorm16((texCoord[0] - packing.centreS) / packing.halfS));
+				buffer.putShort(base + TEX_COORD_OFFSET + 2, encodeSnorm16((texCoord[1] - packing.centreT) / packing.halfT));
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * The transforms that turn packed positions and texture coordinates back
+	 * into their original values
+	 */
+	public static class Packing
+	{
+		/**
+		 * Multiplies the modelview matrix by the transform that unpacks positions
+		 */
+		public final void applyPosition()
+		{
+			GL11.glTranslatef(centreX, centreY, centreZ);
+			float scale = halfExtent / 32767.0f;
+			GL11.glScalef(scale, scale, scale);
+		}
+		/**
+		 * Multiplies the texture matrix by the transform that unpacks texture
+		 * coordinates. The texture matrix must be the current matrix
+		 */
+		public final void applyTexCoord()
+		{
+			GL11.glTranslatef(centreS, centreT, 0.0f);
+			GL11.glScalef(halfS / 32767.0f, halfT / 32767.0f, 1.0f);
+		}
+		/**
+		 * @return the largest error in any decoded position component, give or take float rounding
+		 */
+		public final float getPositionError()
+		{   return halfExtent / 65534.0f;
+		}
+
+		/**
+		 * Writes the transforms into a buffer as eight floats, at its position
+		 */
+		final void store(ByteBuffer buffer)
+		{
+			buffer.putFloat(centreX).putFloat(centreY).putFloat(centreZ).putFloat(halfExtent);
+			buffer.putFloat(centreS).putFloat(centreT).putFloat(halfS).putFloat(halfT);
+		}
+		/**
+		 * Reads transforms written by store from a buffer, at its position
+		 */
+		final void load(ByteBuffer buffer)
+		{
+			centreX = buffer.getFloat();
+			centreY = buffer.getFloat();
+			centreZ = buffer.getFloat();
+			halfExtent = buffer.getFloat();
+			centreS = buffer.getFloat();
+			centreT = buffer.getFloat();
+			halfS = buffer.getFloat();
+			halfT = buffer.getFloat();
+		}
+
+		/**
+		 * Finds the bounding box of the positions, and the range of the texture coordinates
+		 */
+		private void fit(VertexArray verts, boolean textured)
+		{
+			float[] min = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+			float[] max = { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+			float[] texCoord = new float[2];
+			for(int v = 0; v < verts.size(); v++)
+			{
+				float[] values = { verts.getX(v), verts.getY(v), verts.getZ(v), 0.0f, 0.0f };
+				if(textured)
+				{
+					verts.getTexCoord(v, texCoord);
+					values[3] = texCoord[0];
+					values[4] = texCoord[1];
+				}
+				for(int i = 0; i < 5; i++)
+				{
+					min[i] = Math.min(min[i], values[i]);
+					max[i] = Math.max(max[i], values[i]);
+				}
+			}
+			if(verts.size() == 0)
+			{
+				java.util.Arrays.fill(min, 0.0f);
+				java.util.Arrays.fill(max, 0.0f);
+			}
+			centreX = (min[0] + max[0]) / 2;
+			centreY = (min[1] + max[1]) / 2;
+			centreZ = (min[2] + max[2]) / 2;
+			// the same scale on every axis, so that normals are not bent
+			halfExtent = nonZero(Math.max(max[0] - min[0], Math.max(max[1] - min[1], max[2] - min[2])) / 2);
+			centreS = (min[3] + max[3]) / 2;
+			centreT = (min[4] + max[4]) / 2;
+			halfS = nonZero((max[3] - min[3]) / 2);
+			halfT = nonZero((max[4] - min[4]) / 2);
+		}
+		/**
+		 * @return the half extent, or 1 if it is zero so that dividing by it is safe
+		 */
+		private static float nonZero(float half)
+		{   return half > 0.0f ? half : 1.0f;
+		}
+
+		/** the centre of the bounding box */
+		private float centreX, centreY, centreZ;
+		/** half the length of the bounding box's longest side */
+		private float halfExtent = 1.0f;
+		/** the centre of the range of texture coordinates */
+		private float centreS, centreT;
+		/** half the range of each texture coordinate */
+		private float halfS = 1.0f, halfT = 1.0f;
+	}
+
+	/**
+	 * @return 1 if value is 0 or more, -1 if it is less; unlike Math.signum
+	 *         never 0, so folding an axis of the octahedron keeps it on an edge
+	 */
+	private static float signNotZero(float value)
+	{   return value >= 0.0f ? 1.0f : -1.0f;
+	}
+	/**
+	 * @return value clamped between -1 and 1
+	 */
+	private static float clamp(float value)
+	{   return Math.max(-1.0f, Math.min(1.0f, value));
+	}
+}
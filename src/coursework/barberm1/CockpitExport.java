@@ -0,0 +1,28 @@
+package coursework.barberm1;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import GraphicsLab.Mesh;
+import GraphicsLab.MeshFile;
+
+/**
+ * Bakes the cockpit's meshes and writes them to a mesh file, which the
+ * cockpit maps at startup instead of baking them. Needs no OpenGL context.
+ */
+public class CockpitExport {
+	/**
+	 * @param args
+	 *            optionally the file to write, which by default is the mesh
+	 *            file next to the cockpit's source
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		File file = new File(args.length > 0 ? args[0] : "src/" + Util.pckgDir + "/" + CockpitGeometry.MESH_FILE);
+		Map<String, Mesh> meshes = new CockpitGeometry().bake();
+		MeshFile.write(file, meshes);
+		System.out.println("Wrote " + meshes.size() + " meshes to " + file + " (" + file.length() + " bytes)");
+	}
+}
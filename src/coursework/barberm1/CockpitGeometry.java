@@ -0,0 +1,498 @@
+package coursework.barberm1;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import GraphicsLab.Batch;
+import GraphicsLab.Matrix4f;
+import GraphicsLab.Mesh;
+import GraphicsLab.MeshBuilder;
+import GraphicsLab.MeshCache;
+import GraphicsLab.VertexArray;
+
+/**
+ * Describes the shape of the cockpit, and bakes each part of it that has its
+ * own material into a packed mesh. The baked meshes can be exported to a mesh
+ * file with CockpitExport, which the cockpit loads instead of baking them
+ * when it exists.
+ */
+public class CockpitGeometry {
+	// the name of the mesh file, next to this class
+	public static final String MESH_FILE = "cockpit.mesh";
+	// the names of the baked meshes, in the order they are baked
+	public static final String FRAME = "frame";
+	public static final String FLOOR = "floor";
+	public static final String CONTROL_BOARD = "control board";
+	public static final String LEVER_BASE = "lever base";
+	public static final String HOLOGRAM_BASE = "hologram base";
+	public static final String LEVER = "lever";
+	public static final String[] NAMES = { FRAME, FLOOR, CONTROL_BOARD, LEVER_BASE, HOLOGRAM_BASE, LEVER };
+
+	/* declare chasis variables */
+	// nb: the variables the cockpit uses to place the lever, hologram and
+	// light are package visible
+	// the y displacement of the whole cockpit
+	float displaceY = -12f;
+	// front properties
+	float frontDist = -56f;
+	private float frontWidth = 0.5f;
+	private float frontWidth2 = 2 * frontWidth;
+	float frontHeight = 12f;
+	// side bars properties
+	private float bottomY = 0.0f;
+	private float bottomXMod = 1.5f;
+	// middle bars properties
+	private float middleY = 16.0f;
+	private float middleXMod = 1.25f;
+	private float middleZMod = 0.75f;
+	// top bars describing
+	private float topY = 0.0f;
+	private float topXMod = 1.5f;
+	// floor properties
+	private float floorY = -24f;
+	private float floorHeight = 6.0f;
+	private float floorZMod = 0.5f;
+	// bar that bridges top bar properties
+	float middleFrontY = 20f;
+	private float middleFrontHeight = 6f;
+	private float middleFrontZMod = 0.75f;
+	// control board properties
+	private float controlMod = 0.75f;
+	// lever base properties
+	private float leverBaseHeight = 4.0f;
+	private float leverBaseWidth = 2.0f;
+	private float leverBaseDepth = 0.5f;
+	private float leverBaseInwardMod = 0.75f;
+	private float leverBaseMod = 0.85f;
+	// lever pivot properties
+	float leverY = -frontWidth + displaceY;
+	float leverZMid = frontDist * leverBaseMod;
+	// hologram base properties
+	private float hologramBaseHeight = 0.5f;
+	private float hologramBaseRadius = 1.0f;
+	private float hologramBaseRadiusTop = leverBaseInwardMod * hologramBaseRadius;
+	float hologramBaseX = -5 * frontHeight / 8;
+	float hologramBaseY = displaceY + frontWidth - hologramBaseHeight;
+	float hologramBaseZ = controlMod * frontDist - 6.0f;
+	float hologramElevation = 1.5f;
+
+	// vertexes are defined at bottom of file, and are stored as handles into
+	// this array, which is package visible so the outlines can be checked
+	VertexArray verts = new VertexArray(64);
+
+	/**
+	 * Bake every part of the cockpit into a packed mesh, with shared vertexes
+	 * welded together and the triangles reordered to reuse transformed
+	 * vertexes. The lever is baked relative to its pivot, and everything else
+	 * relative to the cockpit.
+	 * 
+	 * @return the meshes by name, in the order of NAMES
+	 */
+	public Map<String, Mesh> bake() {
+		Map<String, Mesh> meshes = new LinkedHashMap<String, Mesh>();
+		MeshBuilder builder = startBake();
+		buildFrame();
+		meshes.put(FRAME, finishBake(builder, FRAME));
+		builder = startBake();
+		buildFloor();
+		meshes.put(FLOOR, finishBake(builder, FLOOR));
+		builder = startBake();
+		buildControlBoard();
+		meshes.put(CONTROL_BOARD, finishBake(builder, CONTROL_BOARD));
+		builder = startBake();
+		buildLeverBase();
+		meshes.put(LEVER_BASE, finishBake(builder, LEVER_BASE));
+		builder = startBake();
+		buildHologramBase(builder);
+		meshes.put(HOLOGRAM_BASE, finishBake(builder, HOLOGRAM_BASE));
+		builder = startBake();
+		buildLever();
+		meshes.put(LEVER, finishBake(builder, LEVER));
+		return meshes;
+	}
+
+	/**
+	 * Start sending the triangles drawn through Util to a new mesh builder.
+	 * 
+	 * @return the mesh builder
+	 */
+	private MeshBuilder startBake() {
+		MeshBuilder builder = new MeshBuilder();
+		Batch.capture(builder);
+		return builder;
+	}
+
+	/**
+	 * Stop sending triangles to a mesh builder and build its mesh, reporting
+	 * how much welding and reordering saved.
+	 * 
+	 * @param builder
+	 *            the mesh builder triangles were sent to
+	 * @param name
+	 *            the name of the part being baked
+	 * @return the baked mesh
+	 */
+	private Mesh finishBake(MeshBuilder builder, String name) {
+		Batch.endCapture();
+		Mesh mesh = builder.build(false, true);
+		System.out.println("Baked cockpit " + name + ": " + builder.report() + ", "
+				+ mesh.getVertexBytes() + " bytes of vertices");
+		return mesh;
+	}
+
+	/**
+	 * Build the geometry of the cockpit's frame.
+	 */
+	private void buildFrame() {
+		// draw front
+		Util.drawRect(verts, v4, v3, v2, v1);
+		Util.drawRect(verts, v3d, v2d, v2, v3);
+
+		// draw bottom left
+		Util.drawRect(verts, v6, v1, v2, v5);
+		Util.drawRect(verts, v5d, v5, v2, v2d);
+		// draw bottom right
+		Util.drawRect(verts, v8, v7, v3, v4);
+		Util.drawRect(verts, v7d, v3d, v3, v7);
+
+		// draw middle left
+		Util.drawRect(verts, v11, v2, v9, v10);
+		Util.drawRect(verts, v10d, v10, v9, v9d);
+		// draw middle right
+		Util.drawRect(verts, v14, v13, v12, v3);
+		Util.drawRect(verts, v13d, v12d, v12, v13);
+
+		// draw middle-top left
+		Util.drawRect(verts, v16, v11, v10, v15);
+		// draw middle-top right
+		Util.drawRect(verts, v18, v17, v13, v14);
+
+		// draw top left side
+		Util.drawRect(verts, v20, v19, v16, v15);
+		Util.drawRect(verts, v20d, v20, v15, v15d);
+		// draw top right side
+		Util.drawRect(verts, v22, v17, v18, v21);
+		Util.drawRect(verts, v22d, v17d, v17, v22);
+
+		// draw middle front
+		Util.drawRect(verts, v28, v27, v26, v25);
+		Util.drawRect(verts, v27d, v26d, v26, v27);
+		// draw middle front left
+		Util.drawRect(verts, v26, v15, v10, v25);
+		Util.drawRect(verts, v26d, v15d, v15, v26);
+		// draw middle front right
+		Util.drawRect(verts, v28, v13, v17, v27);
+		Util.drawRect(verts, v27d, v27, v17, v17d);
+	}
+
+	/**
+	 * Build the geometry of the cockpit's floor.
+	 */
+	private void buildFloor() {
+		// draw floor front
+		Util.drawRect(verts, v24, v4, v1, v23);
+		// draw floor left
+		Util.drawTri(verts, v23, v1, v6);
+		// draw floor right
+		Util.drawTri(verts, v24, v8, v4);
+	}
+
+	/**
+	 * Build the geometry of the control board.
+	 */
+	private void buildControlBoard() {
+		// draw top
+		Util.drawRect(verts, v31, v4, v1, v29);
+		// draw front
+		Util.drawRect(verts, v32, v31, v29, v30);
+	}
+
+	/**
+	 * Build the geometry of the base of the lever.
+	 */
+	private void buildLeverBase() {
+		// draw bottom
+		Util.drawRect(verts, v36, v35, v34, v33);
+		// draw top
+		Util.drawRect(verts, v40, v39, v38, v37);
+		// draw front
+		Util.drawRect(verts, v40, v37, v33, v36);
+		// draw left
+		Util.drawRect(verts, v38, v34, v33, v37);
+		// draw right
+		Util.drawRect(verts, v40, v36, v35, v39);
+	}
+
+	/**
+	 * Build the geometry of the lever, relative to its pivot.
+	 */
+	private void buildLever() {
+		// draw sides
+		// bottom left
+		Util.drawRect(verts, vb3d, vb1d, vb1, vb3);
+		// top left
+		Util.drawRect(verts, vb6d, vb5d, vb5, vb6);
+		// bottom right
+		Util.drawRect(verts, vb4d, vb4, vb2, vb2d);
+		// top right
+		Util.drawRect(verts, vb8d, vb7d, vb7, vb8);
+
+		// draw middle bottom sides
+		// left
+		Util.drawRect(verts, vb5d, vb3d, vb3, vb5);
+		// right
+		Util.drawRect(verts, vb8d, vb8, vb4, vb4d);
+
+		// draw front, which is concave so is split into triangles properly
+		Util.drawPolygon(verts, leverFront);
+
+		// draw top side
+		Util.drawRect(verts, vb7d, vb6d, vb6, vb7);
+	}
+
+	/**
+	 * Build the geometry of the hologram's base, a cylinder capped with a
+	 * disc, moved into place.
+	 * 
+	 * @param builder
+	 *            the mesh builder to add the base to
+	 */
+	private void buildHologramBase(MeshBuilder builder) {
+		Matrix4f transform = new Matrix4f().translate(hologramBaseX, hologramBaseY, hologramBaseZ).rotate(90.0f,
+				1.0f, 0.0f, 0.0f);
+		// draw cylinder
+		builder.mesh(MeshCache.cylinder(hologramBaseRadiusTop, hologramBaseRadius, hologramBaseHeight, 24, 24),
+				transform);
+		// draw disc
+		builder.mesh(MeshCache.disk(hologramBaseRadiusTop, 0.0f, 24, 24), transform);
+	}
+
+	/* declare vertexes of cockpit */
+	// nb: letter 'd' stands for an "in-depth" version of the vertex with the
+	// same number, used to make everything look 3D
+
+	/* front bar vertexes */
+	// bottom left
+	private int v1 = verts.add(-frontHeight, -frontWidth + displaceY, frontDist);
+	// top left
+	private int v2 = verts.add(-frontHeight, frontWidth + displaceY, frontDist);
+	// top right
+	private int v3 = verts.add(frontHeight, frontWidth + displaceY, frontDist);
+	// bottom right
+	private int v4 = verts.add(frontHeight, -frontWidth + displaceY, frontDist);
+
+	private int v2d = verts.add(-frontHeight - frontWidth, frontWidth + displaceY, frontDist - frontWidth2);
+	private int v3d = verts.add(frontHeight + frontWidth, frontWidth + displaceY, frontDist - frontWidth2);
+
+	/* side bars vertexes */
+	// calculate total x displacement of side bars
+	private float bottomTotalX = bottomXMod * frontHeight;
+	// calculate total y displacement of side bars
+	private float bottomTotalY = displaceY - bottomY;
+
+	// top left
+	private int v5 = verts.add(-bottomTotalX, frontWidth + bottomTotalY, 0);
+	// bottom left
+	private int v6 = verts.add(-bottomTotalX, -frontWidth + bottomTotalY, 0);
+
+	private int v5d = verts.add(-bottomTotalX - frontWidth2, frontWidth + bottomTotalY, 0);
+
+	// top right
+	private int v7 = verts.add(bottomTotalX, frontWidth + bottomTotalY, 0);
+	// bottom right
+	private int v8 = verts.add(bottomTotalX, -frontWidth + bottomTotalY, 0);
+
+	private int v7d = verts.add(bottomTotalX + frontWidth2, frontWidth + bottomTotalY, 0);
+
+	/* middle bars vertexes */
+	// calculate total x displacement of middle bars
+	private float middleTotalX = middleXMod * frontHeight;
+	// calculate total y displacement of middle bars
+	private float middleTotalY = frontWidth + displaceY + middleY;
+
+	// calculate total z displacement of middle bars
+	private float middleTotalZ = middleZMod * frontDist;
+
+	// bottom left inward
+	private int v9 = verts.add(-frontHeight + frontWidth2, frontWidth + displaceY, frontDist);
+	// top left inward
+	private int v10 = verts.add(-middleTotalX + frontWidth2, middleTotalY, middleTotalZ);
+	// top left outward
+	private int v11 = verts.add(-middleTotalX, middleTotalY, middleTotalZ);
+
+	private int v9d = verts.add(-frontHeight + frontWidth2, frontWidth + displaceY, frontDist - frontWidth2);
+	private int v10d = verts.add(-middleTotalX + frontWidth2, frontWidth + middleTotalY,
+			middleTotalZ - frontWidth2);
+
+	// bottom right inward
+	private int v12 = verts.add(frontHeight - frontWidth2, frontWidth + displaceY, frontDist);
+	// top right inward
+	private int v13 = verts.add(middleTotalX - frontWidth2, middleTotalY, middleTotalZ);
+	// top right outward
+	private int v14 = verts.add(middleTotalX, middleTotalY, middleTotalZ);
+
+	private int v12d = verts.add(frontHeight - frontWidth2, frontWidth + displaceY, frontDist - frontWidth2);
+	private int v13d = verts.add(middleTotalX - frontWidth2, frontWidth + displaceY + middleY + frontWidth,
+			middleTotalZ - frontWidth2);
+
+	/* middle-top bars vertexes */
+	// calculate total y displacement of middle bars
+	private float middleTopTotalY = middleTotalY + frontWidth2;
+
+	// left inward
+	private int v15 = verts.add(-middleTotalX, middleTopTotalY, middleTotalZ);
+	// left outward
+	private int v16 = verts.add(-middleTotalX - frontWidth2, middleTopTotalY, middleTotalZ);
+
+	private int v15d = verts.add(-middleTotalX, middleTopTotalY + frontWidth, middleTotalZ - frontWidth);
+
+	// right inward
+	private int v17 = verts.add(middleTotalX, middleTopTotalY, middleTotalZ);
+	// right outward
+	private int v18 = verts.add(middleTotalX + frontWidth2, middleTopTotalY, middleTotalZ);
+
+	private int v17d = verts.add(middleTotalX, middleTopTotalY + frontWidth, middleTotalZ - frontWidth);
+
+	/* top bar vertexes */
+	// calculate total x displacement of top bars
+	private float topTotalX = topXMod * frontHeight;
+	// calculate total y displacement of top bars
+	private float topTotalY = middleTopTotalY + topY + frontWidth2;
+
+	// bottom left
+	private int v19 = verts.add(-topTotalX, topTotalY, 0);
+	// top left
+	private int v20 = verts.add(-topTotalX + frontWidth2, topTotalY, 0);
+
+	private int v20d = verts.add(-topTotalX + frontWidth2, topTotalY + frontWidth2, 0);
+
+	// bottom right
+	private int v21 = verts.add(topTotalX, topTotalY, 0);
+	// top right
+	private int v22 = verts.add(topTotalX - frontWidth2, topTotalY, 0);
+
+	private int v22d = verts.add(topTotalX - frontWidth2, topTotalY + frontWidth2, 0);
+
+	/* floor vertexes */
+	// calculate total y displacement of floor
+	private float floorTotalY = -frontWidth + displaceY + floorY;
+	// calculate total z displacement of floor
+	private float floorTotalZ = floorZMod * frontDist;
+
+	// left
+	private int v23 = verts.add(-floorHeight, floorTotalY, floorTotalZ);
+	// right
+	private int v24 = verts.add(floorHeight, floorTotalY, floorTotalZ);
+
+	/* middle-front bar vertexes */
+	// calculate total y displacement of the middle-front bar
+	private float middleFrontTotalY = displaceY + middleFrontY;
+	// calculate total z displacement of the middle-front bar
+	private float middleFrontTotalZ = middleFrontZMod * frontDist;
+
+	// bottom left
+	private int v25 = verts.add(-middleFrontHeight, middleFrontTotalY - frontWidth, middleFrontTotalZ);
+	// top left
+	private int v26 = verts.add(-middleFrontHeight, middleFrontTotalY + frontWidth, middleFrontTotalZ + frontWidth);
+	// top right
+	private int v27 = verts.add(middleFrontHeight, middleFrontTotalY + frontWidth, middleFrontTotalZ + frontWidth);
+	// bottom right
+	private int v28 = verts.add(middleFrontHeight, middleFrontTotalY - frontWidth, middleFrontTotalZ);
+
+	private int v26d = verts.add(-middleFrontHeight, middleFrontTotalY + frontWidth2,
+			middleFrontTotalZ + frontWidth);
+	private int v27d = verts.add(middleFrontHeight, middleFrontTotalY + frontWidth2,
+			middleFrontTotalZ + frontWidth);
+
+	/* control board vertexes */
+	// calculate total x displacement of control board
+	private float controlTotalX = bottomXMod * frontHeight * controlMod;
+	// calculate total y displacement of the control board
+	private float controlTotalY = -frontWidth + displaceY - bottomY * controlMod;
+	// calculate total z displacement of control board
+	private float controlTotalZ = controlMod * frontDist;
+
+	// top left
+	private int v29 = verts.add(-controlTotalX, controlTotalY, controlTotalZ);
+	// bottom left
+	private int v30 = verts.add(-controlTotalX, controlTotalY - frontWidth2 * 2, controlTotalZ);
+
+	// top right
+	private int v31 = verts.add(controlTotalX, controlTotalY, frontDist * controlMod);
+	// bottom right
+	private int v32 = verts.add(controlTotalX, controlTotalY - frontWidth2 * 2, controlTotalZ);
+
+	/* lever base bottom vertexes */
+	// calculate total y displacement of the control board
+	private float leverBaseTotalY = -frontWidth + displaceY - bottomY * leverBaseMod;
+	// calculate total z displacement of control board
+	private float leverBaseTotalZ = leverBaseMod * frontDist;
+
+	// bottom left
+	private int v33 = verts.add(-leverBaseWidth, leverBaseTotalY, leverBaseTotalZ + leverBaseHeight);
+	// top left
+	private int v34 = verts.add(-leverBaseWidth, leverBaseTotalY, leverBaseTotalZ - leverBaseHeight);
+	// top right
+	private int v35 = verts.add(leverBaseWidth, leverBaseTotalY, leverBaseTotalZ - leverBaseHeight);
+	// bottom right
+	private int v36 = verts.add(leverBaseWidth, leverBaseTotalY, leverBaseTotalZ + leverBaseHeight);
+
+	/* lever base top vertexes */
+	// calculate total x displacement for top of lever base
+	private float leverBaseTopTotalX = leverBaseWidth * leverBaseInwardMod;
+	// calculate total y displacement of the control board
+	private float leverBaseTopTotalY = leverBaseTotalY + leverBaseDepth;
+
+	// bottom left
+	private int v37 = verts.add(-leverBaseTopTotalX, leverBaseTopTotalY, leverBaseTotalZ + leverBaseHeight);
+	// top left
+	private int v38 = verts.add(-leverBaseTopTotalX, leverBaseTopTotalY, leverBaseTotalZ - leverBaseHeight);
+	// top right
+	private int v39 = verts.add(leverBaseTopTotalX, leverBaseTopTotalY, leverBaseTotalZ - leverBaseHeight);
+	// bottom right
+	private int v40 = verts.add(leverBaseTopTotalX, leverBaseTopTotalY, leverBaseTotalZ + leverBaseHeight);
+
+	/* lever vertexes */
+	// nb: these are relative to the lever's pivot, the lever is transformed
+	// into place when drawn
+	// calculate lever dimensions
+	private float leverHeight = 0.1f * leverBaseHeight;
+	private float leverDepth = 8 * leverHeight;
+	private float leverExtendX = 2 * leverHeight;
+
+	// bottom vertexes
+	// left
+	private int vb1 = verts.add(-leverHeight, 0, leverHeight);
+	// right
+	private int vb2 = verts.add(leverHeight, 0, leverHeight);
+
+	private int vb1d = verts.add(-leverHeight, 0, -leverHeight);
+	private int vb2d = verts.add(leverHeight, 0, -leverHeight);
+
+	// middle vertexes
+	// left
+	private int vb3 = verts.add(-leverHeight, leverDepth, leverHeight);
+	// right
+	private int vb4 = verts.add(leverHeight, leverDepth, leverHeight);
+
+	private int vb3d = verts.add(-leverHeight, leverDepth, -leverHeight);
+	private int vb4d = verts.add(leverHeight, leverDepth, -leverHeight);
+
+	// top vertexes
+	// bottom left
+	private int vb5 = verts.add(-leverHeight - leverExtendX, leverDepth, leverHeight);
+	// top left
+	private int vb6 = verts.add(-leverHeight - leverExtendX, leverDepth + leverHeight * 2, leverHeight);
+	// top right
+	private int vb7 = verts.add(leverHeight + leverExtendX, leverDepth + leverHeight * 2, leverHeight);
+	// bottom right
+	private int vb8 = verts.add(leverHeight + leverExtendX, leverDepth, leverHeight);
+
+	private int vb5d = verts.add(-leverHeight - leverExtendX, leverDepth, leverHeight - leverHeight * 2);
+	private int vb6d = verts.add(-leverHeight - leverExtendX, leverDepth + leverHeight, leverHeight - leverHeight * 2);
+	private int vb7d = verts.add(leverHeight + leverExtendX, leverDepth + leverHeight, leverHeight - leverHeight * 2);
+	private int vb8d = verts.add(leverHeight + leverExtendX, leverDepth, leverHeight - leverHeight * 2);
+
+	// outline of the lever's front face, a T shape, package visible like verts
+	int[] leverFront = { vb4, vb8, vb7, vb6, vb5, vb3, vb1, vb2 };
+}
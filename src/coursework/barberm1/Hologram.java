@@ -3,22 +3,44 @@ package coursework.barberm1;
 import java.io.IOException;
 
 import org.lwjgl.opengl.GL11;
-import org.lwjgl.util.glu.Cylinder;
-import org.lwjgl.util.glu.GLU;
-import org.lwjgl.util.glu.Sphere;
 import org.newdawn.slick.opengl.Texture;
 
 import GraphicsLab.Colour;
+import GraphicsLab.FrameTimings;
+import GraphicsLab.GLState;
+import GraphicsLab.Mesh;
+import GraphicsLab.MeshCache;
+import GraphicsLab.PendingTexture;
+import GraphicsLab.SceneNode;
+import GraphicsLab.TextureAtlas;
+import GraphicsLab.TimingSpan;
+import GraphicsLab.Vec3;
 
 public class Hologram {
 	/* path values to access textures */
 	private String textureDir = "textures";
 	private String path = Util.pckgDir + "/" + textureDir + "/";
 
+	/* declare scene graph nodes */
+	// the cone, and the point the Earth and Moon are drawn around
+	private SceneNode coneNode = new SceneNode();
+	private SceneNode earthNode = new SceneNode();
+	// the spinning Earth, and the Moon orbiting it
+	private SceneNode earthSpinNode = new SceneNode();
+	private SceneNode moonNode = new SceneNode();
+
+	/* declare level of detail variables */
+	// scratch vector used to find how far each node is from the camera
+	private Vec3 position = new Vec3();
+	// viewport height divided by 2*tan(fovY/2), used to find on screen sizes
+	private float projectionScale = 1.0f;
+
 	/* declare Earth and position variables */
 	private float earthRotatePeriod = 30.0f;
-	private Texture earthTex;
-	private Sphere earth;
+	private float earthRadius = 1.0f;
+	private PendingTexture earthTexPending;
+	private TextureAtlas.Region earthRegion;
+	private Mesh earth;
 
 	/* declare Moon and animation variables */
 	private float moonRotatePeriod = 10.0f;
@@ -27,11 +49,22 @@ public class Hologram {
 	private float moonOrbitDist = 2.0f;
 	private float moonOrbitAmp = 0.125f;
 	private float moonOrbitY;
-	private Texture moonTex;
-	private Sphere moon;
+	private float moonRadius = 0.25f;
+	private PendingTexture moonTexPending;
+	private TextureAtlas.Region moonRegion;
+	private Mesh moon;
+
+	/* declare texture atlas */
+	// the Earth and Moon textures share one page, so both are drawn with it
+	// bound once
+	private TextureAtlas atlas = new TextureAtlas(1024, TextureAtlas.DEFAULT_LEVELS);
+	private Texture atlasTex;
 
 	/* declare light cone */
-	private Cylinder cone;
+	private float coneBaseRadius = -1.0f;
+	private float coneTopRadius = -0.5f;
+	private float coneHeight = 0.875f;
+	private Mesh cone;
 
 	/* declare flicker animation variables */
 	private boolean flicker = false;
@@ -47,45 +80,58 @@ public class Hologram {
 	/* declare tick */
 	private float tick = 0.0f;
 
+	/* declare render state, which is only touched on the render thread */
+	// whether the hologram is hidden by a flicker in the snapshot being drawn
+	private boolean shownFlicker = false;
+	// the time drawing the hologram takes
+	private TimingSpan renderSpan = FrameTimings.span("Hologram.render");
+
 	/**
-	 * Initialize the Earth, Moon and light cone of the hologram.
+	 * Start decoding the textures of the Earth and Moon in the background,
+	 * which are uploaded the first time they are drawn, and build the
+	 * hologram's scene
+	 * graph nodes. The meshes of the Earth, Moon and light cone are picked
+	 * from the mesh cache each frame depending on how big they appear on
+	 * screen.
+	 * 
+	 * @param parent
+	 *            the node the hologram is positioned by
 	 */
-	public Hologram() {
-		// load textures for earth and moon
-		try {
-			earthTex = Util.loadTexture(path + "earth.png", "PNG");
-			moonTex = Util.loadTexture(path + "moon.png", "PNG");
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-
-		// create earth and enable texture to rotate with it
-		earth = new Sphere();
-		earth.setDrawStyle(GLU.GLU_FILL);
-		earth.setTextureFlag(true);
-		earth.setNormals(GLU.GLU_SMOOTH);
-
-		// create moon and enable texture to rotate with it
-		moon = new Sphere();
-		moon.setDrawStyle(GLU.GLU_FILL);
-		moon.setTextureFlag(true);
-		moon.setNormals(GLU.GLU_SMOOTH);
+	public Hologram(SceneNode parent) {
+		// start decoding textures for earth and moon
+		earthTexPending = Util.decodeTexture(path + "earth.png");
+		moonTexPending = Util.decodeTexture(path + "moon.png");
+
+		// the cone points down from the hologram to its base, and never moves
+		parent.addChild(coneNode);
+		coneNode.editLocal().translate(0.0f, -0.875f, 0.0f).rotate(90.0f, 1.0f, 0.0f, 0.0f);
+		// the Earth sits at the centre of the hologram with the Moon orbiting
+		// it, both spin about their poles which point up the y axis
+		parent.addChild(earthNode);
+		earthNode.addChild(earthSpinNode);
+		earthNode.addChild(moonNode);
+		Snapshot first = snapshot();
+		apply(first, first, 0.0f);
+	}
 
-		// create light cone
-		cone = new Cylinder();
+	/**
+	 * @param projectionScale
+	 *            the viewport height in pixels divided by 2*tan(fovY/2)
+	 */
+	public void setProjectionScale(float projectionScale) {
+		this.projectionScale = projectionScale;
 	}
 
 	/**
 	 * @param start
 	 *            whether to start animation again
-	 * @param dT
-	 *            time since last render update
-	 * @param animationScale
-	 *            the animation scale of the program
+	 * @param seconds
+	 *            the number of seconds since the last update, already scaled
+	 *            by the animation scale
 	 */
-	public void updateScene(boolean start, long dT, float animationScale) {
+	public void updateScene(boolean start, float seconds) {
 		// find amount to update tick values by
-		float updateAmount = (float) ((dT * Math.pow(10, -9)) * animationScale);
+		float updateAmount = seconds;
 		// update tick values
 		tick += updateAmount;
 		flickerTick += updateAmount;
@@ -139,26 +185,129 @@ public class Hologram {
 		moonOrbitY = (float) Math.sin((double) ((tick / moonOrbitDips) / moonOrbitPeriod) * Util.rad) * moonOrbitAmp;
 	}
 
+	/**
+	 * @return whether the hologram is shown steadily, rather than flickering
+	 *         or hidden waiting to flicker
+	 */
+	public boolean isSteady() {
+		return !flicker && !flickerAnim;
+	}
+
+	/**
+	 * @return an immutable snapshot of the hologram's animation, which the
+	 *         render thread draws from
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(tick, moonOrbitY, flicker);
+	}
+
+	/**
+	 * Move the Earth and Moon nodes to a point between two snapshots of the
+	 * animation, and show or hide the hologram to match. Called on the render
+	 * thread.
+	 * 
+	 * @param previous
+	 *            the earlier snapshot
+	 * @param current
+	 *            the later snapshot
+	 * @param t
+	 *            how far from previous to current, from 0 to 1
+	 */
+	public void apply(Snapshot previous, Snapshot current, float t) {
+		// flickers can't be blended, so show whichever snapshot is nearer
+		shownFlicker = t < 0.5f ? previous.flicker : current.flicker;
+		updateNodes(Util.lerp(previous.tick, current.tick, t), Util.lerp(previous.moonOrbitY, current.moonOrbitY, t));
+	}
+
 	public void renderScene() {
+		long start = renderSpan.begin();
+
 		// only render hologram if not on flicker
-		if (!flicker) {
+		if (!shownFlicker) {
+			// build the atlas of the earth and moon textures if this is the
+			// first time they are drawn, then pick the level of detail of
+			// each mesh
+			uploadTextures();
+			selectMeshes();
+
+			// disable lighting calculations so that they don't affect the
+			// appearance of the hologram, and enable blending with the blend
+			// function set to interpolate its transparency to the whole scene.
+			// This is done once for every part of the hologram
+			GLState.disable(GL11.GL_LIGHTING);
+			GLState.enable(GL11.GL_BLEND);
+			GLState.blendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+
 			// draw light cone
-			GL11.glPushMatrix();
-			GL11.glTranslatef(0.0f, -0.875f, 0.0f);
+			coneNode.begin();
 			drawCone();
-			GL11.glPopMatrix();
+			coneNode.end();
+
+			// bind the atlas that holds both the earth and moon textures, if
+			// either could be loaded
+			if (atlasTex != null) {
+				GLState.bindTexture(atlasTex.getTextureID());
+			}
 
-			// draw moon
-			GL11.glPushMatrix();
-			GL11.glRotatef(360.0f * (tick / moonOrbitPeriod), 0.0f, 1.0f, 0.0f);
-			GL11.glTranslatef(moonOrbitDist, moonOrbitY, 0.0f);
+			// draw moon, textured only if its texture is in the atlas
+			setTextured(moonRegion != null);
+			moonNode.begin();
 			drawMoon();
-			GL11.glPopMatrix();
+			moonNode.end();
 
-			// draw earth
-			GL11.glPushMatrix();
+			// draw earth, textured only if its texture is in the atlas
+			setTextured(earthRegion != null);
+			earthSpinNode.begin();
 			drawEarth();
-			GL11.glPopMatrix();
+			earthSpinNode.end();
+
+			// disable texturing and blending, and re-enable lighting
+			GLState.disable(GL11.GL_TEXTURE_2D);
+			GLState.disable(GL11.GL_BLEND);
+			GLState.enable(GL11.GL_LIGHTING);
+		}
+
+		renderSpan.end(start);
+	}
+
+	/**
+	 * Pack the textures of the Earth and Moon into the atlas and upload it,
+	 * waiting for them to finish decoding if they have not already. A texture
+	 * that cannot be decoded is left out, and its sphere is drawn untextured;
+	 * if neither can, no atlas is built. Does nothing after the first call.
+	 */
+	private void uploadTextures() {
+		if (earthTexPending == null) {
+			return;
+		}
+		try {
+			earthRegion = atlas.add(earthTexPending);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		try {
+			moonRegion = atlas.add(moonTexPending);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if (earthRegion != null || moonRegion != null) {
+			atlasTex = atlas.build(path + "hologram atlas");
+		}
+		earthTexPending = null;
+		moonTexPending = null;
+	}
+
+	/**
+	 * Turn texturing on or off for the next sphere.
+	 * 
+	 * @param textured
+	 *            whether the sphere's texture is in the atlas
+	 */
+	private void setTextured(boolean textured) {
+		if (textured) {
+			GLState.enable(GL11.GL_TEXTURE_2D);
+		} else {
+			GLState.disable(GL11.GL_TEXTURE_2D);
 		}
 	}
 
@@ -166,90 +315,79 @@ public class Hologram {
 	 * Draw the Earth.
 	 */
 	private void drawEarth() {
-		// find value of rotation
-		float rotate = 360.0f * (tick / earthRotatePeriod);
-
-		// disable lighting calculations so that they don't affect
-		// the appearance of the plane
-		GL11.glPushAttrib(GL11.GL_LIGHTING_BIT);
-		GL11.glDisable(GL11.GL_LIGHTING);
-
-		// enable texturing and bind an appropriate texture
-		GL11.glEnable(GL11.GL_TEXTURE_2D);
-		GL11.glBindTexture(GL11.GL_TEXTURE_2D, earthTex.getTextureID());
-
-		// enable blending and set blend function to interpolate the plane's
-		// transparency to the whole scene
-		GL11.glEnable(GL11.GL_BLEND);
-		GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
-
-		// transform and draw the earth
-		GL11.glRotatef(270.0f, 1.0f, 0.0f, 0.0f);
-		GL11.glRotatef(rotate, 0.0f, 0.0f, 1.0f);
-		earth.draw(1.0f, 24, 24);
-
-		// disables textures and blending, and reset any local lighting changes
-		GL11.glDisable(GL11.GL_TEXTURE_2D);
-		GL11.glDisable(GL11.GL_BLEND);
-		GL11.glPopAttrib();
+		// the caller has already bound the atlas, and set up texturing and
+		// blending
+		earth.draw();
 	}
 
 	/**
 	 * Draw the Moon.
 	 */
 	private void drawMoon() {
-		// find value of rotation
-		float rotate = 360.0f * (tick / moonRotatePeriod);
-
-		// disable lighting calculations so that they don't affect
-		// the appearance of the plane
-		GL11.glPushAttrib(GL11.GL_LIGHTING_BIT);
-		GL11.glDisable(GL11.GL_LIGHTING);
-
-		// enable texturing and bind an appropriate texture
-		GL11.glEnable(GL11.GL_TEXTURE_2D);
-		GL11.glBindTexture(GL11.GL_TEXTURE_2D, moonTex.getTextureID());
-
-		// enable blending and set blend function to interpolate the plane's
-		// transparency to the whole scene
-		GL11.glEnable(GL11.GL_BLEND);
-		GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
-
-		// transform and draw the earth
-		GL11.glRotatef(270.0f, 1.0f, 0.0f, 0.0f);
-		GL11.glRotatef(rotate, 0.0f, 0.0f, 1.0f);
-		earth.draw(0.25f, 24, 24);
-
-		// disables textures and blending, and reset any local lighting changes
-		GL11.glDisable(GL11.GL_TEXTURE_2D);
-		GL11.glDisable(GL11.GL_BLEND);
-		GL11.glPopAttrib();
+		// the caller has already bound the atlas, and set up texturing and
+		// blending
+		moon.draw();
 	}
 
 	/**
 	 * Draw the light cone.
 	 */
 	private void drawCone() {
-		GL11.glPushAttrib(GL11.GL_LIGHTING_BIT);
-		GL11.glDisable(GL11.GL_LIGHTING);
-		// change geometry colour to translucent blue
+		// change geometry colour to translucent blue, the caller has already
+		// set up blending
 		GL11.glColor4f(0.0f, 0.75f, 1.0f, 0.125f);
 
-		// enable blending and set blend function to interpolate the plane's
-		// transparency to the whole scene
-		GL11.glEnable(GL11.GL_BLEND);
-		GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
-
-		GL11.glRotatef(90.0f, 1.0f, 0.0f, 0.0f);
-		//cone.draw(1.0f, 0.5f, 0.875f, 24, 24);
-		cone.draw(-1.0f, -0.5f, 0.875f, 24, 24);
+		cone.draw();
 
 		// reset colour changes
 		Colour.WHITE.submit();
+	}
+
+	/**
+	 * Set the local transforms of the Earth and Moon nodes from a tick.
+	 * 
+	 * @param tick
+	 *            the tick to show
+	 * @param moonOrbitY
+	 *            the y position of the moon at that tick
+	 */
+	private void updateNodes(float tick, float moonOrbitY) {
+		// spin the earth about its pole
+		earthSpinNode.editLocal().identity().rotate(270.0f, 1.0f, 0.0f, 0.0f)
+				.rotate(360.0f * (tick / earthRotatePeriod), 0.0f, 0.0f, 1.0f);
+		// orbit the moon around the earth, bobbing up and down, and spin it
+		// about its pole
+		moonNode.editLocal().identity().rotate(360.0f * (tick / moonOrbitPeriod), 0.0f, 1.0f, 0.0f)
+				.translate(moonOrbitDist, moonOrbitY, 0.0f).rotate(270.0f, 1.0f, 0.0f, 0.0f)
+				.rotate(360.0f * (tick / moonRotatePeriod), 0.0f, 0.0f, 1.0f);
+	}
+
+	/**
+	 * Pick the Earth, Moon and light cone meshes with a level of detail suited
+	 * to their size on screen. The camera sits at the root of the scene graph,
+	 * so each node's distance from it is the length of its world translation.
+	 */
+	private void selectMeshes() {
+		int earthSlices = MeshCache.lod(earthRadius, distance(earthSpinNode), projectionScale);
+		int moonSlices = MeshCache.lod(moonRadius, distance(moonNode), projectionScale);
+		int coneSlices = MeshCache.lod(Math.abs(coneBaseRadius), distance(coneNode), projectionScale);
+
+		// the spheres' texture coordinates are moved into the atlas, so each
+		// finds its own texture in it; a sphere whose texture could not be
+		// loaded has no region and is drawn untextured
+		earth = MeshCache.sphere(earthRadius, earthSlices, earthSlices, earthRegion);
+		moon = MeshCache.sphere(moonRadius, moonSlices, moonSlices, moonRegion);
+		// the cone is unlit and a single colour, so stacks add nothing to it
+		cone = MeshCache.cylinder(coneBaseRadius, coneTopRadius, coneHeight, coneSlices, 1);
+	}
 
-		// disable blending and reset any local lighting changes
-		GL11.glDisable(GL11.GL_BLEND);
-		GL11.glPopAttrib();
+	/**
+	 * @param node
+	 *            a scene graph node
+	 * @return the distance of the node's origin from the camera
+	 */
+	private float distance(SceneNode node) {
+		return node.getWorld().getTranslation(position).length();
 	}
 
 	/**
@@ -266,4 +404,22 @@ public class Hologram {
 		counter = 0;
 	}
 
+	/**
+	 * An immutable snapshot of the hologram's animation, handed from the
+	 * simulation thread to the render thread.
+	 */
+	public static class Snapshot {
+		// the tick, which sets the spin of the Earth and the orbit of the Moon
+		private final float tick;
+		// the y position of the moon
+		private final float moonOrbitY;
+		// whether the hologram is hidden by a flicker
+		private final boolean flicker;
+
+		private Snapshot(float tick, float moonOrbitY, boolean flicker) {
+			this.tick = tick;
+			this.moonOrbitY = moonOrbitY;
+			this.flicker = flicker;
+		}
+	}
 }
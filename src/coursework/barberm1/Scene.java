@@ -31,17 +31,25 @@
  */
 package coursework.barberm1;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
+import org.lwjgl.input.Keyboard;
 import org.lwjgl.opengl.GL11;
-import org.lwjgl.util.glu.GLU;
 import org.newdawn.slick.opengl.Texture;
 
 import GraphicsLab.Colour;
-import GraphicsLab.FloatBuffer;
+import GraphicsLab.FrameTimings;
+import GraphicsLab.GLState;
 import GraphicsLab.GraphicsLab;
-import GraphicsLab.Vertex;
+import GraphicsLab.SceneNode;
+import GraphicsLab.Simulation;
+import GraphicsLab.SimulationRunner;
+import GraphicsLab.TextureResidency;
+import GraphicsLab.TimingSpan;
+import GraphicsLab.VertexArray;
 
 /**
  * My projects simulates being inside of a space jet.
@@ -70,9 +78,28 @@ import GraphicsLab.Vertex;
  * origin
  * <li>Press the space bar when the lever is in it's rest position to start the
  * warp protocol
+ * <li>Press F3 to show or hide how long each part of a frame takes
  * </ul>
+ * 
+ * <p>
+ * Animations advance in fixed steps of simulation. Running with
+ * -Dgraphicslab.clock=fixed:0.0166667 makes every frame take a 60th of a
+ * second whatever its real length, so the warp plays out identically every
+ * run and as fast as frames can be drawn, for benchmarking. A list of frame
+ * times can be replayed with -Dgraphicslab.clock=script:file (see Clocks).
+ * 
+ * <p>
+ * With the real time clock the simulation runs on a thread of its own, and
+ * each frame draws between the last two snapshots it published so motion
+ * stays smooth whatever the frame rate. Any other clock steps it on the
+ * render thread instead, so that runs still repeat exactly.
+ * 
+ * <p>
+ * Frames are capped at 60 per second with vertical sync, dropping to 15 while
+ * nothing but the ambient motion is showing (see FramePacer for the
+ * -Dgraphicslab.fps, -Dgraphicslab.idlefps and -Dgraphicslab.vsync options).
  */
-public class Scene extends GraphicsLab {
+public class Scene extends GraphicsLab implements Simulation<Scene.Snapshot> {
 	/* declare tools */
 	private Random rnd = new Random();
 
@@ -86,9 +113,10 @@ public class Scene extends GraphicsLab {
 	private boolean warpFinished = true;
 	// current mode in animation, 'd' is the default mode
 	private char mode = 'd';
-	// stores time since last iteration of game render loop
-	private long lastFrameTime;
-	private long dT;
+	// steps the simulation in fixed steps, so the animations play out the
+	// same however the frames fall, and hands snapshots of it to the render
+	// thread
+	private SimulationRunner<Snapshot> runner;
 	// tick counter for the current animation mode
 	private float tick = 0;
 	// 's' mode, before the actual warp begins to provide tension
@@ -108,11 +136,19 @@ public class Scene extends GraphicsLab {
 	private float povMin = 25.0f;
 	private float povMax = 45.0f;
 	private float pov = povMax;
+	// the number of times the warp has switched skybox
+	private int skyboxSwitches = 0;
 
 	// declare the cockpit that contains check input, update and draw methods
 	// for a cockpit object
 	private Cockpit cockpit;
 
+	/* declare scene graph nodes */
+	// the scene origin, which the camera sits at
+	private SceneNode root = new SceneNode();
+	// the cockpit, moved every frame by the shaking effect
+	private SceneNode cockpitNode = new SceneNode();
+
 	/* declare cockpit shaking variables */
 	// amplitude parameters
 	private float ampMaxDefault = 0.5f;
@@ -139,62 +175,160 @@ public class Scene extends GraphicsLab {
 	private String skyboxDir = "textures";
 	private String[] skyboxNames = { "corona_ft.png", "redeclipse_ft.png",
 			"unnamedspace_ft.jpg", "unnamedspace3_ft.png" };
-	// stores loaded skybox textures
-	private List<Texture> skyboxes;
+	// paths of the skyboxes that have not failed to load
+	private List<String> skyboxPaths;
+	// keeps skybox textures on the graphics card while they are wanted,
+	// compressed into BC1 if the graphics card supports it. The budget is room
+	// for the current skybox and the next one at 1024x1024, whether or not
+	// they could be compressed
+	private TextureResidency skyboxes = new TextureResidency(8L * 1024 * 1024, true, true);
 	// stores skybox texture currently in use
 	private Texture currentSkybox;
 	// used to reference previously used skybox
 	private int currentSkyboxIndex = -1;
+	// the skybox being prefetched to be shown next, or -1 if none has been
+	// chosen yet
+	private int nextSkyboxIndex = -1;
+
+	/* declare render state, which is only touched on the render thread */
+	// the ambience, white plane alpha and point of view being drawn, between
+	// the last two snapshots
+	private float shownAmbient;
+	private float shownAlpha;
+	private float shownPov = povMax;
+	// the number of skybox switches the render thread has made
+	private int shownSkyboxSwitches = 0;
+
+	/* declare timings, shown by F3 and over JMX */
+	// the time a step of the simulation takes, on whichever thread runs it
+	private TimingSpan stepSpan = FrameTimings.span("Scene.step");
+	// the time switching, uploading and evicting skyboxes takes each frame
+	private TimingSpan skyboxSpan = FrameTimings.span("Scene.skyboxes");
+
+	/* declare plane vertexes, built once the display mode is known */
+	private VertexArray verts = new VertexArray(8);
+	// background plane
+	private int bg1, bg2, bg3, bg4;
+	// white plane
+	private int wp1, wp2, wp3, wp4;
 
 	public static void main(String args[]) {
 		new Scene().run(WINDOWED, "Scene", 1.0f);
 	}
 
 	protected void initScene() throws Exception {
+		// a clock that is not real time is for repeatable runs, so make the
+		// shaking repeat too
+		if (!getClock().isRealTime()) {
+			rnd = new Random(0);
+		}
+
+		// start decoding the first skybox in the background while the rest of
+		// the scene is built, the others are only loaded once they are wanted
+		skyboxPaths = new ArrayList<String>();
+		for (String name : skyboxNames) {
+			skyboxPaths.add(Util.pckgDir + "/" + skyboxDir + "/" + name);
+		}
+		prefetchSkybox();
+
 		// define aspect ratio of program
 		aspect = (float) displayMode.getWidth() / displayMode.getHeight();
 
-		// assigns new instance of cockpit class, passes animation scale in
-		// constructor so the cockpit's animations runs in-sync with scene
-		cockpit = new Cockpit();
+		// assigns new instance of cockpit class, which builds its parts of the
+		// scene graph under the cockpit node
+		root.addChild(cockpitNode);
+		cockpit = new Cockpit(cockpitNode);
+
+		// build the vertexes of the background and white planes
+		initPlanes();
 
 		// sets random values for shakebing effect
 		resetShake();
 		initShake();
 
-		// loads skyboxes, and set a random one as current
-		skyboxes = Util.loadTextures(Util.pckgDir + "/" + skyboxDir,
-				skyboxNames);
+		// loads the prefetched skybox and sets it as current
 		newSkybox();
 
 		// sets the global ambient lighting to it's default value
 		resetFade();
 
+		// step the simulation on a thread of its own in real time, unless the
+		// clock is meant to repeat, in which case it is stepped every frame
+		runner = new SimulationRunner<Snapshot>(this, 1.0f / 120.0f, 30);
+		if (getClock().isRealTime()) {
+			runner.start();
+		}
+
 		// enable lighting calculations
-		GL11.glEnable(GL11.GL_LIGHTING);
+		GLState.enable(GL11.GL_LIGHTING);
 		// ensure that all normals are re-normalised after transformations
 		// automatically
-		GL11.glEnable(GL11.GL_NORMALIZE);
-
-		// initialise last frame time with how long program has executed for
-		lastFrameTime = System.nanoTime();
+		GLState.enable(GL11.GL_NORMALIZE);
 	}
 
 	protected void checkSceneInput() {
-		cockpit.checkSceneInput();
+		cockpit.checkSceneInput(wasKeyPressed(Keyboard.KEY_SPACE));
 	}
 
 	protected void updateScene() {
-		// find time since last frame, and update tick accordingly
-		dT = System.nanoTime() - lastFrameTime;
-		// assign last frame time with how long program has executed for
-		lastFrameTime = System.nanoTime();
+		// advance the simulation by the time the clock says this frame takes,
+		// scaled by the animation scale, in as many fixed steps as fit, unless
+		// its own thread is already doing so
+		runner.setTimeScale(getAnimationScale());
+		if (!runner.isThreaded()) {
+			runner.advance(getFrameSeconds());
+		}
+
+		// show the scene at this moment, between the last two snapshots
+		SimulationRunner.Snapshots<Snapshot> snapshots = runner.getSnapshots();
+		Snapshot previous = snapshots.getPrevious();
+		Snapshot current = snapshots.getCurrent();
+		float t = runner.getAlpha(snapshots);
+		shownAmbient = Util.lerp(previous.ambient, current.ambient, t);
+		shownAlpha = Util.lerp(previous.alpha, current.alpha, t);
+		shownPov = Util.lerp(previous.pov, current.pov, t);
+		// move the cockpit, and so everything in it, by the shake
+		cockpitNode.editLocal().identity().translate(Util.lerp(previous.shakeX, current.shakeX, t),
+				Util.lerp(previous.shakeY, current.shakeY, t), Util.lerp(previous.shakeZ, current.shakeZ, t));
+		cockpit.apply(previous.cockpit, current.cockpit, t);
+
+		// as soon as the lever starts charging, start loading the skybox that
+		// the warp will switch to, so it is on the graphics card by the time
+		// the screen is white
+		long start = skyboxSpan.begin();
+		if (current.cockpit.isCharging() && nextSkyboxIndex < 0) {
+			prefetchSkybox();
+		}
+		// change current skybox texture if the warp has reached the white
+		// screen since the last frame
+		if (current.skyboxSwitches != shownSkyboxSwitches) {
+			shownSkyboxSwitches = current.skyboxSwitches;
+			newSkybox();
+		}
+
+		// upload a prefetched skybox if it is ready, and evict skyboxes that
+		// are no longer wanted
+		skyboxes.update();
+		skyboxes.touch(skyboxPaths.get(currentSkyboxIndex));
+		skyboxSpan.end(start);
+	}
+
+	/**
+	 * Advance the animations by one step of the simulation. Called on the
+	 * simulation thread if there is one, so touches nothing drawn.
+	 * 
+	 * @param seconds
+	 *            the number of seconds the step takes
+	 */
+	public void step(float seconds) {
+		long start = stepSpan.begin();
+
 		// update tick values
-		tick();
+		tick(seconds);
 
 		// updates cockpit, value returned tells scene whether warping has
 		// been activated
-		warping = cockpit.updateScene(warpFinished, dT, getAnimationScale());
+		warping = cockpit.updateScene(warpFinished, seconds);
 
 		// stores ratio of tick to the tick limit of current animation mode
 		float ratio;
@@ -206,7 +340,7 @@ public class Scene extends GraphicsLab {
 				ratio = getRatio(fadeOutTickLimit);
 				if (ratio > 1) {
 					// change mode to default
-					mode = 'd';
+					setMode('d');
 					// set global ambient lighting to it's default value
 					resetFade();
 					// reset pov to default value
@@ -226,7 +360,7 @@ public class Scene extends GraphicsLab {
 			switch (mode) {
 			case 'd':
 				// if warp has been activated then change mode to start stall
-				mode = 's';
+				setMode('s');
 				// update warping animation variables
 				warpFinished = false;
 
@@ -236,7 +370,7 @@ public class Scene extends GraphicsLab {
 				ratio = getRatio(startStallTickLimit);
 				if (ratio > 1) {
 					// change mode to fade in
-					mode = 'i';
+					setMode('i');
 
 					tickReset();
 				} else {
@@ -249,13 +383,13 @@ public class Scene extends GraphicsLab {
 				ratio = getRatio(fadeInTickLimit);
 				if (ratio > 1) {
 					// change mode to warping
-					mode = 'w';
+					setMode('w');
 					// set ambience to most extreme value
 					currentAmbient = 1.0f;
 					// make white screen fully opaque
 					alpha = 1.0f;
-					// change current skybox texture
-					newSkybox();
+					// have the render thread change current skybox texture
+					skyboxSwitches++;
 
 					tickReset();
 				} else {
@@ -275,7 +409,7 @@ public class Scene extends GraphicsLab {
 				if (ratio >= 1) {
 					resetShake();
 					// change mode to fade out
-					mode = 'o';
+					setMode('o');
 					// update warping animation variables
 					warping = false;
 					warpFinished = true;
@@ -288,6 +422,44 @@ public class Scene extends GraphicsLab {
 
 		// find amplitudes of x, y and z shaking effects
 		nextShake();
+
+		stepSpan.end(start);
+	}
+
+	/**
+	 * Change the current animation mode, recording the change for Java
+	 * Flight Recorder.
+	 * 
+	 * @param next
+	 *            the new mode
+	 */
+	private void setMode(char next) {
+		WarpStageEvent.commit("Scene", mode, next);
+		mode = next;
+	}
+
+	/**
+	 * @return an immutable snapshot of the scene's animation, including the
+	 *         cockpit's, which the render thread draws from
+	 */
+	public Snapshot snapshot() {
+		// nothing but the shaking, the lever and the hologram's spin moves
+		// outside of a warp
+		boolean idle = mode == 'd' && !warping && cockpit.isIdle();
+		return new Snapshot(shakeX, shakeY, shakeZ, currentAmbient, alpha, pov, skyboxSwitches, idle,
+				cockpit.snapshot());
+	}
+
+	protected boolean isSceneIdle() {
+		// draw fewer frames while only the ambient motion is being shown
+		return runner.getSnapshots().getCurrent().idle;
+	}
+
+	protected void cleanupScene() {
+		// stop stepping the simulation before the display it is drawn to goes
+		if (runner != null) {
+			runner.stop();
+		}
 	}
 
 	protected void renderScene() {
@@ -296,39 +468,34 @@ public class Scene extends GraphicsLab {
 		Colour.WHITE.submit();
 
 		// set the global ambient lighting to use current ambient level
-		GL11.glLightModel(
-				GL11.GL_LIGHT_MODEL_AMBIENT,
-				FloatBuffer.wrap(new float[] { currentAmbient, currentAmbient,
-						currentAmbient, 1.0f }));
+		GLState.lightModelAmbient(shownAmbient, shownAmbient, shownAmbient, 1.0f);
 
 		// draw background
 		GL11.glPushMatrix();
 		drawBackground(currentSkybox);
 		GL11.glPopMatrix();
 
-		// draw cockpit
-		GL11.glPushMatrix();
-		GL11.glTranslatef(shakeX, shakeY, shakeZ);
+		// draw cockpit, letting it know the current projection so that the
+		// hologram can pick its level of detail
+		cockpit.setProjectionScale(displayMode.getHeight()
+				/ (2.0f * (float) Math.tan(Math.toRadians(shownPov) / 2)));
 		cockpit.renderScene();
-		GL11.glPopMatrix();
 
 		// draw the white plane that covers the scene used in fading animations
 		GL11.glPushMatrix();
-		drawWhitePlane(alpha);
+		drawWhitePlane(shownAlpha);
 		GL11.glPopMatrix();
 
 	}
 
 	protected void setSceneCamera() {
 		// set perspective projection, point of view assigned to a variable
-		// modified by warping sequence
-		GL11.glMatrixMode(GL11.GL_PROJECTION);
-		GL11.glLoadIdentity();
-		GLU.gluPerspective(pov, aspect, 0.1f, 100.0f);
+		// modified by warping sequence, so the projection is only rebuilt
+		// during a warp
+		setPerspective(shownPov, aspect, 0.1f, 100.0f);
 
 		// default viewpoint is positioned at the scene origin facing along the
 		// negative Z axis
-		GL11.glMatrixMode(GL11.GL_MODELVIEW);
 		GL11.glLoadIdentity();
 	}
 
@@ -342,28 +509,18 @@ public class Scene extends GraphicsLab {
 	private void drawBackground(Texture texture) {
 		// disable lighting calculations so that they don't affect
 		// the appearance of the texture
-		GL11.glPushAttrib(GL11.GL_LIGHTING_BIT);
-		GL11.glDisable(GL11.GL_LIGHTING);
+		GLState.disable(GL11.GL_LIGHTING);
 
 		// enable texturing and bind an appropriate texture
-		GL11.glEnable(GL11.GL_TEXTURE_2D);
-		GL11.glBindTexture(GL11.GL_TEXTURE_2D, texture.getTextureID());
+		GLState.enable(GL11.GL_TEXTURE_2D);
+		GLState.bindTexture(texture.getTextureID());
 
-		// draw back plane
-		// bottom left
-		Vertex v1 = new Vertex(-bgHeight, -bgHeight, -bgZ);
-		// top left
-		Vertex v2 = new Vertex(-bgHeight, bgHeight, -bgZ);
-		// top right
-		Vertex v3 = new Vertex(bgHeight, bgHeight, -bgZ);
-		// bottom right
-		Vertex v4 = new Vertex(bgHeight, -bgHeight, -bgZ);
-		// draw the plane geometry
-		Util.drawTexRect(v4, v3, v2, v1);
+		// draw the back plane geometry
+		Util.drawTexRect(verts, bg4, bg3, bg2, bg1);
 
-		// disables textures and reset any local lighting changes
-		GL11.glDisable(GL11.GL_TEXTURE_2D);
-		GL11.glPopAttrib();
+		// disables textures and re-enable lighting
+		GLState.disable(GL11.GL_TEXTURE_2D);
+		GLState.enable(GL11.GL_LIGHTING);
 	}
 
 	/**
@@ -376,77 +533,114 @@ public class Scene extends GraphicsLab {
 	private void drawWhitePlane(float alpha) {
 		// disable lighting calculations so that they don't affect
 		// the appearance of the plane
-		GL11.glPushAttrib(GL11.GL_LIGHTING_BIT);
-		GL11.glDisable(GL11.GL_LIGHTING);
+		GLState.disable(GL11.GL_LIGHTING);
 
 		// change geometry colour to white with the provided alpha value used
-		// for transparency
+		// for transparency, drawing anything batched with the old colour first
+		Util.flush();
 		GL11.glColor4f(1.0f, 1.0f, 1.0f, alpha);
 
 		// enable blending and set blend function to interpolate the plane's
 		// transparency to the whole scene
-		GL11.glEnable(GL11.GL_BLEND);
-		GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+		GLState.enable(GL11.GL_BLEND);
+		GLState.blendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
 
-		// draw back plane to (more than) cover the scene
+		// draw the plane geometry that (more than) covers the scene
+		Util.drawRect(verts, wp4, wp3, wp2, wp1);
+
+		// disable blending and re-enable lighting
+		GLState.disable(GL11.GL_BLEND);
+		GLState.enable(GL11.GL_LIGHTING);
+	}
+
+	/**
+	 * Builds the vertexes of the background plane and the white plane that
+	 * covers the scene, neither of which change after initialisation.
+	 */
+	private void initPlanes() {
+		/* background plane */
 		// bottom left
-		Vertex v1 = new Vertex(-displayMode.getWidth(),
-				-displayMode.getHeight(), -1.0f);
+		bg1 = verts.add(-bgHeight, -bgHeight, -bgZ);
 		// top left
-		Vertex v2 = new Vertex(-displayMode.getWidth(),
-				displayMode.getHeight(), -1.0f);
+		bg2 = verts.add(-bgHeight, bgHeight, -bgZ);
 		// top right
-		Vertex v3 = new Vertex(displayMode.getWidth(), displayMode.getHeight(),
-				-1.0f);
+		bg3 = verts.add(bgHeight, bgHeight, -bgZ);
 		// bottom right
-		Vertex v4 = new Vertex(displayMode.getWidth(),
-				-displayMode.getHeight(), -1.0f);
-		// draw the plane geometry
-		Util.drawRect(v4, v3, v2, v1);
-
-		// disable blending and reset any local lighting changes
-		GL11.glDisable(GL11.GL_BLEND);
-		GL11.glPopAttrib();
+		bg4 = verts.add(bgHeight, -bgHeight, -bgZ);
+
+		/* white plane, sized to (more than) cover the scene */
+		// bottom left
+		wp1 = verts.add(-displayMode.getWidth(), -displayMode.getHeight(), -1.0f);
+		// top left
+		wp2 = verts.add(-displayMode.getWidth(), displayMode.getHeight(), -1.0f);
+		// top right
+		wp3 = verts.add(displayMode.getWidth(), displayMode.getHeight(), -1.0f);
+		// bottom right
+		wp4 = verts.add(displayMode.getWidth(), -displayMode.getHeight(), -1.0f);
 	}
 
 	/**
 	 * Change the current skybox to a new texture, ensuring no skyboxes are
-	 * shown twice in a row.
+	 * shown twice in a row. Uses the prefetched skybox if there is one, which
+	 * is usually already on the graphics card.
 	 */
 	private void newSkybox() {
-		// stores whether a valid index has been found yet
-		boolean found = false;
+		while (true) {
+			if (nextSkyboxIndex < 0) {
+				prefetchSkybox();
+			}
+			String path = skyboxPaths.get(nextSkyboxIndex);
+			try {
+				currentSkybox = skyboxes.get(path);
+				currentSkyboxIndex = nextSkyboxIndex;
+				nextSkyboxIndex = -1;
+				return;
+			} catch (IOException e) {
+				// captures any errors (i.e. path does not exist, image
+				// cannot be read, etc.), and never tries that skybox again
+				e.printStackTrace();
+				skyboxPaths.remove(nextSkyboxIndex);
+				if (currentSkyboxIndex > nextSkyboxIndex) {
+					currentSkyboxIndex--;
+				}
+				nextSkyboxIndex = -1;
+				if (skyboxPaths.isEmpty()) {
+					throw new IllegalStateException("no skybox could be loaded");
+				}
+			}
+		}
+	}
 
+	/**
+	 * Choose the next skybox at random, ensuring it isn't the current one
+	 * unless it is the only one, and start loading it in the background.
+	 */
+	private void prefetchSkybox() {
 		// stores currently found index
 		int index = 0;
 
-		// keeps on iterating until a new skybox index which isn't the previous
+		// keeps on iterating until a new skybox index which isn't the current
 		// index is found with a random number generator
-		while (!found) {
-			index = rnd.nextInt(skyboxes.size());
-			if (index != currentSkyboxIndex) {
-				currentSkyboxIndex = index;
-				found = true;
-			}
-		}
-		// gets the new skybox texture from the pre-loaded list of skybox
-		// textures
-		currentSkybox = skyboxes.get(currentSkyboxIndex);
+		do {
+			index = rnd.nextInt(skyboxPaths.size());
+		} while (index == currentSkyboxIndex && skyboxPaths.size() > 1);
+
+		nextSkyboxIndex = index;
+		skyboxes.prefetch(skyboxPaths.get(nextSkyboxIndex));
 	}
 
 	/**
-	 * Update tick values with the time that has passed since last render call.
+	 * Update tick values with the time that has passed since the last step.
+	 * 
+	 * @param updateTime
+	 *            the number of seconds the step takes, already scaled by the
+	 *            animation scale
 	 */
-	private void tick() {
+	private void tick(float updateTime) {
 		// reset tick after half a minute to ensure it's not too large for calculations
 		if(tick > 10.0f) {
 			tick = 0.0f;
 		}
-		
-		// Amount to update by.
-		// Converts delta time from nanoseconds to seconds.
-		// Multiplies by animation scale of the scene.
-		float updateTime = (float) ((dT * Math.pow(10, -9)) * getAnimationScale());
 
 		// update tick values
 		tick += updateTime;
@@ -537,4 +731,38 @@ public class Scene extends GraphicsLab {
 		// decrement period with ratio multiplied the default period length.
 		period = periodDefault - ratio * periodDefault;
 	}
+
+	/**
+	 * An immutable snapshot of the scene's animation, handed from the
+	 * simulation thread to the render thread.
+	 */
+	public static class Snapshot {
+		// the translation of the cockpit by the shaking effect
+		private final float shakeX;
+		private final float shakeY;
+		private final float shakeZ;
+		// the global ambience, white plane alpha and point of view
+		private final float ambient;
+		private final float alpha;
+		private final float pov;
+		// the number of times the warp has switched skybox
+		private final int skyboxSwitches;
+		// whether only the ambient animation is showing
+		private final boolean idle;
+		// the cockpit's animation
+		private final Cockpit.Snapshot cockpit;
+
+		private Snapshot(float shakeX, float shakeY, float shakeZ, float ambient, float alpha, float pov,
+				int skyboxSwitches, boolean idle, Cockpit.Snapshot cockpit) {
+			this.shakeX = shakeX;
+			this.shakeY = shakeY;
+			this.shakeZ = shakeZ;
+			this.ambient = ambient;
+			this.alpha = alpha;
+			this.pov = pov;
+			this.skyboxSwitches = skyboxSwitches;
+			this.idle = idle;
+			this.cockpit = cockpit;
+		}
+	}
 }
@@ -3,17 +3,22 @@ package coursework.barberm1;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.lwjgl.opengl.GL11;
 import org.newdawn.slick.opengl.Texture;
 import org.newdawn.slick.opengl.TextureLoader;
 import org.newdawn.slick.util.ResourceLoader;
 
-import GraphicsLab.FloatBuffer;
-import GraphicsLab.Normal;
+import GraphicsLab.Batch;
+import GraphicsLab.DecodedImage;
+import GraphicsLab.GLState;
+import GraphicsLab.PendingTexture;
+import GraphicsLab.TextureDecoder;
+import GraphicsLab.TextureUploadEvent;
+import GraphicsLab.Triangulator;
+import GraphicsLab.Vec3;
 import GraphicsLab.Vertex;
+import GraphicsLab.VertexArray;
 
 /**
  * Contains useful functions used across the package.
@@ -21,9 +26,37 @@ import GraphicsLab.Vertex;
 public class Util {
 	public static String pckgDir = "coursework/barberm1";
 	public static double rad = 2 * Math.PI;
+	// reused when working out normals so that drawing doesn't create garbage
+	private static Vec3 normal = new Vec3();
+	// splits polygons into triangles, remembering how each was split
+	private static Triangulator triangulator = new Triangulator();
+	// texture coordinates of each corner of a textured rectangle
+	private static float[] rectTexCoords = { 1.0f, 0.0f, 1.0f, 1.0f, 0.0f, 1.0f, 0.0f, 0.0f };
+	// reused when splitting rectangles so that drawing doesn't create garbage
+	private static int[] quad = new int[4];
+	private static Vertex[] quadVertexes = new Vertex[4];
+	private static float[] quadPositions = new float[12];
+	private static int[] quadTriangles = new int[6];
 
 	/**
-	 * Draw a rectangular polygon with given vertexes.
+	 * Interpolate linearly between two values.
+	 * 
+	 * @param a
+	 *            the value at t = 0
+	 * @param b
+	 *            the value at t = 1
+	 * @param t
+	 *            how far from a to b
+	 * @return the value between a and b
+	 */
+	public static float lerp(float a, float b, float t) {
+		return a + (b - a) * t;
+	}
+
+	/**
+	 * Draw a rectangular polygon with given vertexes. The polygon is split
+	 * into triangles and added to the batch, which draws it along with
+	 * everything else that shares its material and texture.
 	 * 
 	 * @param v1
 	 * @param v2
@@ -31,13 +64,7 @@ public class Util {
 	 * @param v4
 	 */
 	public static void drawRect(Vertex v1, Vertex v2, Vertex v3, Vertex v4) {
-		GL11.glBegin(GL11.GL_POLYGON);
-		new Normal(v1.toVector(), v2.toVector(), v3.toVector(), v4.toVector()).submit();
-		v1.submit();
-		v2.submit();
-		v3.submit();
-		v4.submit();
-		GL11.glEnd();
+		batchQuad(v1, v2, v3, v4, false);
 	}
 
 	/**
@@ -50,17 +77,7 @@ public class Util {
 	 * @param v4
 	 */
 	public static void drawTexRect(Vertex v1, Vertex v2, Vertex v3, Vertex v4) {
-		GL11.glBegin(GL11.GL_POLYGON);
-		new Normal(v1.toVector(), v2.toVector(), v3.toVector(), v4.toVector()).submit();
-		GL11.glTexCoord2f(1.0f, 0.0f);
-		v1.submit();
-		GL11.glTexCoord2f(1.0f, 1.0f);
-		v2.submit();
-		GL11.glTexCoord2f(0.0f, 1.0f);
-		v3.submit();
-		GL11.glTexCoord2f(0.0f, 0.0f);
-		v4.submit();
-		GL11.glEnd();
+		batchQuad(v1, v2, v3, v4, true);
 	}
 
 	/**
@@ -71,29 +88,110 @@ public class Util {
 	 * @param v3
 	 */
 	public static void drawTri(Vertex v1, Vertex v2, Vertex v3) {
-		GL11.glBegin(GL11.GL_TRIANGLES);
-		new Normal(v1.toVector(), v2.toVector(), v3.toVector()).submit();
-		v1.submit();
-		v2.submit();
-		v3.submit();
-		GL11.glEnd();
+		normal.newell(v1, v2, v3, null);
+		Batch.normal(normal.x, normal.y, normal.z);
+		batchVertex(v1);
+		batchVertex(v2);
+		batchVertex(v3);
 	}
 
 	/**
-	 * Set material properties to GL11 buffer.
+	 * Draw a rectangular polygon with given vertex handles. The face normal and
+	 * the triangles the polygon is split into are only worked out the first
+	 * time the face is drawn, and the triangles are added to the batch.
+	 * 
+	 * @param verts
+	 *            the array the vertexes are stored in
+	 * @param v1
+	 * @param v2
+	 * @param v3
+	 * @param v4
+	 */
+	public static void drawRect(VertexArray verts, int v1, int v2, int v3, int v4) {
+		batchQuad(verts, v1, v2, v3, v4, false);
+	}
+
+	/**
+	 * Draw a rectangular polygon with given vertex handles and map texture
+	 * coordinates.
+	 * 
+	 * @param verts
+	 *            the array the vertexes are stored in
+	 * @param v1
+	 * @param v2
+	 * @param v3
+	 * @param v4
+	 */
+	public static void drawTexRect(VertexArray verts, int v1, int v2, int v3, int v4) {
+		batchQuad(verts, v1, v2, v3, v4, true);
+	}
+
+	/**
+	 * Draw a triangle polygon with given vertex handles.
+	 * 
+	 * @param verts
+	 *            the array the vertexes are stored in
+	 * @param v1
+	 * @param v2
+	 * @param v3
+	 */
+	public static void drawTri(VertexArray verts, int v1, int v2, int v3) {
+		Batch.faceNormal(verts, verts.faceNormal(v1, v2, v3, -1));
+		Batch.vertex(verts, v1);
+		Batch.vertex(verts, v2);
+		Batch.vertex(verts, v3);
+	}
+
+	/**
+	 * Draw a flat polygon, which may be concave, with given vertex handles.
+	 * The polygon is split into triangles the first time it is drawn.
+	 * 
+	 * @param verts
+	 *            the array the vertexes are stored in
+	 * @param handles
+	 *            the vertex handles in anti-clockwise order around the front
+	 *            of the polygon
+	 */
+	public static void drawPolygon(VertexArray verts, int[] handles) {
+		int[] triangles = triangulator.triangles(verts, handles, handles.length);
+		if (triangles.length == 0) {
+			return;
+		}
+		// every triangle faces the same way as the polygon, so the first one's
+		// normal is the polygon's
+		Batch.faceNormal(verts, verts.faceNormal(handles[triangles[0]], handles[triangles[1]],
+				handles[triangles[2]], -1));
+		for (int index : triangles) {
+			Batch.vertex(verts, handles[index]);
+		}
+	}
+
+	/**
+	 * Draw everything that has been batched so far. This must be called
+	 * before changing OpenGL state without going through GLState, such as
+	 * the current colour.
+	 */
+	public static void flush() {
+		Batch.flush();
+	}
+
+	/**
+	 * Set material properties to GL11 buffer, skipping any that are already
+	 * set.
 	 * 
 	 * @param shininess
 	 * @param specular
 	 * @param colour
 	 */
 	public static void material(float shininess, float[] specular, float[] colour) {
-		GL11.glMaterialf(GL11.GL_FRONT, GL11.GL_SHININESS, shininess);
-		GL11.glMaterial(GL11.GL_FRONT, GL11.GL_SPECULAR, FloatBuffer.wrap(specular));
-		GL11.glMaterial(GL11.GL_FRONT, GL11.GL_AMBIENT_AND_DIFFUSE, FloatBuffer.wrap(colour));
+		GLState.shininess(shininess);
+		GLState.material(GL11.GL_SPECULAR, specular[0], specular[1], specular[2], specular[3]);
+		GLState.material(GL11.GL_AMBIENT_AND_DIFFUSE, colour[0], colour[1], colour[2], colour[3]);
 	}
 
 	/**
-	 * Loads provided images into OpenGL textures.
+	 * Loads provided images into OpenGL textures. The images are decoded in
+	 * parallel, then uploaded one by one.
 	 * 
 	 * @param dir
 	 *            the path to the images
@@ -102,23 +200,68 @@ public class Util {
 	 * @return an arraylist of the textures that loaded successfully
 	 */
 	public static List<Texture> loadTextures(String dir, String[] names) {
-		// initiate arraylist that stores successfully loaded textures
-		List<Texture> textures = new ArrayList<Texture>();
-		// regex pattern that captures the image's type (i.e. png, jpg, etc.)
-		Pattern ext = Pattern.compile("\\.(.+)");
-		// iterates over every image provided to attempt loading as a texture
+		return uploadTextures(decodeTextures(dir, names));
+	}
+
+	/**
+	 * Start decoding provided images in the background, so that they can be
+	 * uploaded as textures later without waiting.
+	 * 
+	 * @param dir
+	 *            the path to the images
+	 * @param names
+	 *            a array of all the names of the images
+	 * @return an arraylist of the textures being decoded
+	 */
+	public static List<PendingTexture> decodeTextures(String dir, String[] names) {
+		List<PendingTexture> pending = new ArrayList<PendingTexture>();
 		for (String name : names) {
+			pending.add(decodeTexture(dir + "/" + name));
+		}
+		return pending;
+	}
+
+	/**
+	 * Start decoding an image in the background.
+	 * 
+	 * @param path
+	 *            path of texture
+	 * @return the texture being decoded
+	 */
+	public static PendingTexture decodeTexture(String path) {
+		return decodeTexture(path, false);
+	}
+
+	/**
+	 * Start decoding an image in the background, and maybe compressing it.
+	 * 
+	 * @param path
+	 *            path of texture
+	 * @param compressed
+	 *            whether to compress the image, which is worth it for large
+	 *            images such as skyboxes
+	 * @return the texture being decoded
+	 */
+	public static PendingTexture decodeTexture(String path, boolean compressed) {
+		return TextureDecoder.decode(path, true, compressed);
+	}
+
+	/**
+	 * Upload textures that are being decoded, waiting for any that have not
+	 * finished.
+	 * 
+	 * @param pending
+	 *            the textures being decoded
+	 * @return an arraylist of the textures that loaded successfully
+	 */
+	public static List<Texture> uploadTextures(List<PendingTexture> pending) {
+		List<Texture> textures = new ArrayList<Texture>();
+		for (PendingTexture texture : pending) {
 			try {
-				// applies regex pattern to image name
-				Matcher match = ext.matcher(name);
-				match.find();
-				// loads texture with the path to image generated by the
-				// provided dir value and current name, and provides what is the
-				// image's type using captured regex pattern from name
-				textures.add(loadTexture(dir + "/" + name, match.group(1).toUpperCase()));
+				textures.add(texture.get());
 			} catch (IOException e) {
-				// captures any errors (i.e. no pattern found, path does not
-				// exist, etc.)
+				// captures any errors (i.e. path does not exist, image
+				// cannot be read, etc.)
 				e.printStackTrace();
 			}
 		}
@@ -137,7 +280,102 @@ public class Util {
 	 *             incase path doesn't exist or texture cannot be read
 	 */
 	public static Texture loadTexture(String path, String imageType) throws IOException {
+		TextureUploadEvent event = new TextureUploadEvent();
+		event.begin();
 		Texture tex = TextureLoader.getTexture(imageType, ResourceLoader.getResourceAsStream(path), true);
+		event.end();
+		// Slick decodes and uploads in one go, always as RGBA
+		if (event.shouldCommit()) {
+			event.set(path, tex.getImageWidth(), tex.getImageHeight(), "RGBA",
+					(long) tex.getTextureWidth() * tex.getTextureHeight() * DecodedImage.BYTES_PER_PIXEL);
+			event.commit();
+		}
 		return tex;
 	}
+
+	/**
+	 * Load a texture, compressed into BC1 or BC3 (S3TC) blocks if asked.
+	 * Compressed textures take a quarter to an eighth of the video memory
+	 * and upload time, and are decompressed again if the graphics card does
+	 * not support S3TC. The compressed image is kept in the texture cache, so
+	 * it is only compressed once.
+	 * 
+	 * @param path
+	 *            path of texture
+	 * @param compressed
+	 *            whether to compress the texture
+	 * @return loaded Texture object
+	 * @throws IOException
+	 *             incase path doesn't exist or texture cannot be read
+	 */
+	public static Texture loadTexture(String path, boolean compressed) throws IOException {
+		return decodeTexture(path, compressed).get();
+	}
+
+	/**
+	 * Split a rectangular polygon into triangles and add them to the batch.
+	 * 
+	 * @param verts
+	 *            the array the vertexes are stored in
+	 * @param v1
+	 * @param v2
+	 * @param v3
+	 * @param v4
+	 * @param textured
+	 *            whether to map texture coordinates
+	 */
+	private static void batchQuad(VertexArray verts, int v1, int v2, int v3, int v4, boolean textured) {
+		Batch.faceNormal(verts, verts.faceNormal(v1, v2, v3, v4));
+		quad[0] = v1;
+		quad[1] = v2;
+		quad[2] = v3;
+		quad[3] = v4;
+		for (int index : triangulator.triangles(verts, quad, 4)) {
+			if (textured) {
+				Batch.texCoord(rectTexCoords[index * 2], rectTexCoords[index * 2 + 1]);
+			}
+			Batch.vertex(verts, quad[index]);
+		}
+	}
+
+	/**
+	 * Split a rectangular polygon into triangles and add them to the batch.
+	 * 
+	 * @param v1
+	 * @param v2
+	 * @param v3
+	 * @param v4
+	 * @param textured
+	 *            whether to map texture coordinates
+	 */
+	private static void batchQuad(Vertex v1, Vertex v2, Vertex v3, Vertex v4, boolean textured) {
+		normal.newell(v1, v2, v3, v4);
+		Batch.normal(normal.x, normal.y, normal.z);
+		quadVertexes[0] = v1;
+		quadVertexes[1] = v2;
+		quadVertexes[2] = v3;
+		quadVertexes[3] = v4;
+		for (int i = 0; i < 4; i++) {
+			quadPositions[i * 3] = quadVertexes[i].getX();
+			quadPositions[i * 3 + 1] = quadVertexes[i].getY();
+			quadPositions[i * 3 + 2] = quadVertexes[i].getZ();
+		}
+		int count = Triangulator.triangulate(quadPositions, 4, quadTriangles);
+		for (int i = 0; i < count; i++) {
+			int index = quadTriangles[i];
+			if (textured) {
+				Batch.texCoord(rectTexCoords[index * 2], rectTexCoords[index * 2 + 1]);
+			}
+			batchVertex(quadVertexes[index]);
+		}
+	}
+
+	/**
+	 * Add a vertex to the batch.
+	 * 
+	 * @param v
+	 */
+	private static void batchVertex(Vertex v) {
+		Batch.vertex(v.getX(), v.getY(), v.getZ());
+	}
 }
\ No newline at end of file
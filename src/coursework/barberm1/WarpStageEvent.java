@@ -0,0 +1,57 @@
+package coursework.barberm1;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for each change of animation mode in the
+ * scene or the cockpit, so that a recording shows which stage of the warp
+ * any hitch happened in.
+ * 
+ * <p>
+ * The scene's modes are 'd' (default), 's' (start stall), 'i' (fade in), 'w'
+ * (warping) and 'o' (fade out). The cockpit's are 'd' (default), 'c' (lever
+ * charging) and 'r' (lever reset). Changes happen on the simulation thread.
+ */
+@Name("GraphicsLab.WarpStage")
+@Label("Warp Stage")
+@Category({ "GraphicsLab", "Scene" })
+@Description("A change of animation mode in the scene or the cockpit")
+@StackTrace(false)
+public class WarpStageEvent extends Event {
+	// says whether any recording wants the event
+	private static final EventType TYPE = EventType.getEventType(WarpStageEvent.class);
+
+	@Label("Machine")
+	@Description("Scene or Cockpit")
+	String machine;
+	@Label("From")
+	String from;
+	@Label("To")
+	String to;
+
+	/**
+	 * Commit an event for a change of mode, if any recording wants it.
+	 * 
+	 * @param machine
+	 *            the name of the class whose mode changed
+	 * @param from
+	 *            the mode before
+	 * @param to
+	 *            the mode after
+	 */
+	public static void commit(String machine, char from, char to) {
+		if (TYPE.isEnabled()) {
+			WarpStageEvent event = new WarpStageEvent();
+			event.machine = machine;
+			event.from = String.valueOf(from);
+			event.to = String.valueOf(to);
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package GraphicsLab;
+import java.nio.ByteBuffer;
+
+import org.lwjgl.BufferUtils;
+
+/**
+ * Checks that BlockCompressor picks BC1 for opaque images whatever their
+ * size, and BC3 only for images with transparent pixels of their own. Run
+ * with assertions enabled or not; a failure throws
+ */
+public class BlockCompressorTest
+{
+	public static void main(String[] args)
+	{
+		// an opaque image that is not a power of two, padded as DecodedImage.decode pads it
+		DecodedImage opaque = image(100, 60, 128, 64, -1, -1);
+		DecodedImage compressed = BlockCompressor.compress(opaque);
+		check(compressed.getFormat() == DecodedImage.BC1, "an opaque 100x60 image is compressed to BC1");
+		check(!compressed.hasAlpha(), "an opaque 100x60 image has no alpha");
+
+		// the same image with one transparent pixel of its own, in its last row and column
+		DecodedImage transparent = image(100, 60, 128, 64, 99, 59);
+		compressed = BlockCompressor.compress(transparent);
+		check(compressed.getFormat() == DecodedImage.BC3, "a transparent pixel is compressed to BC3");
+		check(compressed.hasAlpha(), "a transparent pixel has alpha");
+
+		System.out.println("BlockCompressorTest passed");
+	}
+
+	/**
+	 * @param transparentX the column of the transparent pixel, or -1 for none
+	 * @param transparentY the row of the transparent pixel, or -1 for none
+	 * @return a grey image whose pixels are opaque but for one, padded with transparent black
+	 */
+	private static DecodedImage image(int width, int height, int textureWidth, int textureHeight,
+		int transparentX, int transparentY)
+	{
+		ByteBuffer pixels = BufferUtils.createByteBuffer(textureWidth * textureHeight * DecodedImage.BYTES_PER_PIXEL);
+		for(int y = 0; y < height; y++)
+		{
+			for(int x = 0; x < width; x++)
+			{
+				int offset = (y * textureWidth + x) * DecodedImage.BYTES_PER_PIXEL;
+				pixels.put(offset, (byte) 128);
+				pixels.put(offset + 1, (byte) 128);
+				pixels.put(offset + 2, (byte) 128);
+				pixels.put(offset + 3, x == transparentX && y == transparentY ? (byte) 0 : (byte) 0xff);
+			}
+		}
+		return new DecodedImage(pixels, width, height, textureWidth, textureHeight, transparentX >= 0);
+	}
+
+	private static void check(boolean condition, String message)
+	{
+		if(!condition)
+		{   throw new AssertionError(message);
+		}
+	}
+}
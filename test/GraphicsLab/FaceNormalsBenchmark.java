@@ -0,0 +1,121 @@
+package GraphicsLab;
+import java.util.Random;
+
+/**
+ * Times FaceNormals.compute against computeScalar and against making a new
+ * Normal from Vectors for every face, the way the scene's normals used to be
+ * made, for triangles and planar quads, and checks that they all agree.
+ * Run with src-vector compiled onto the class path and
+ * {@code --add-modules jdk.incubator.vector} to time the Vector API path;
+ * without them compute falls back to computeScalar
+ */
+public class FaceNormalsBenchmark
+{
+	public static void main(String[] args)
+	{
+		System.out.println("FaceNormals " + (FaceNormals.isVectorised() ? "uses the Vector API"
+			: "falls back to computeScalar"));
+		run(3);
+		run(4);
+	}
+
+	/**
+	 * Times each way of computing the normals of FACES random faces
+	 * @param verticesPerFace 3 for triangles or 4 for planar quads
+	 */
+	private static void run(int verticesPerFace)
+	{
+		Random random = new Random(verticesPerFace);
+		float[] positions = new float[FACES * verticesPerFace * 3];
+		int[] indices = new int[FACES * verticesPerFace];
+		for(int face = 0; face < FACES; face++)
+		{
+			// triangles are p, p+a, p+b and quads the parallelograms p, p+a, p+a+b, p+b, so they are planar
+			float[] p = point(random), a = point(random), b = point(random);
+			float[][] corners = verticesPerFace == 3 ? new float[][] { {0, 0}, {1, 0}, {0, 1} }
+				: new float[][] { {0, 0}, {1, 0}, {1, 1}, {0, 1} };
+			for(int corner = 0; corner < verticesPerFace; corner++)
+			{
+				int vertex = face * verticesPerFace + corner;
+				indices[vertex] = vertex;
+				for(int axis = 0; axis < 3; axis++)
+				{   positions[vertex * 3 + axis] = p[axis] + corners[corner][0] * a[axis] + corners[corner][1] * b[axis];
+				}
+			}
+		}
+		Vertex[] vertices = new Vertex[FACES * verticesPerFace];
+		for(int i = 0; i < vertices.length; i++)
+		{   vertices[i] = new Vertex(positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]);
+		}
+
+		float[] objects = new float[FACES * 3], scalar = new float[FACES * 3], batch = new float[FACES * 3];
+		FaceNormals normals = new FaceNormals();
+		String shape = verticesPerFace == 3 ? "triangles" : "quads";
+		report(shape, "new Normal", time(() -> normalObjects(vertices, verticesPerFace, objects)));
+		report(shape, "computeScalar", time(() -> FaceNormals.computeScalar(positions, indices, verticesPerFace, FACES, scalar)));
+		report(shape, "compute", time(() -> normals.compute(positions, indices, verticesPerFace, FACES, batch)));
+
+		float worst = 0.0f;
+		for(int i = 0; i < objects.length; i++)
+		{   worst = Math.max(worst, Math.max(Math.abs(scalar[i] - objects[i]), Math.abs(batch[i] - objects[i])));
+		}
+		if(worst > 1e-3f)
+		{   throw new AssertionError(shape + " disagree by " + worst);
+		}
+		System.out.println(shape + " agree within " + worst);
+	}
+
+	/**
+	 * Makes a new Normal from Vectors for every face
+	 */
+	private static void normalObjects(Vertex[] vertices, int verticesPerFace, float[] out)
+	{
+		for(int face = 0; face < FACES; face++)
+		{
+			int base = face * verticesPerFace;
+			Normal normal = verticesPerFace == 3
+				? new Normal(vertices[base].toVector(), vertices[base + 1].toVector(), vertices[base + 2].toVector())
+				: new Normal(vertices[base].toVector(), vertices[base + 1].toVector(),
+					vertices[base + 2].toVector(), vertices[base + 3].toVector());
+			out[face * 3] = normal.getX();
+			out[face * 3 + 1] = normal.getY();
+			out[face * 3 + 2] = normal.getZ();
+		}
+	}
+
+	/**
+	 * Runs a pass until the JIT has had WARMUP nanoseconds to compile it, then times RUNS passes
+	 * @return the quickest pass, in nanoseconds per face
+	 */
+	private static double time(Runnable pass)
+	{
+		long warmUntil = System.nanoTime() + WARMUP;
+		while(System.nanoTime() < warmUntil)
+		{   pass.run();
+		}
+		long best = Long.MAX_VALUE;
+		for(int run = 0; run < RUNS; run++)
+		{
+			long start = System.nanoTime();
+			pass.run();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return (double) best / FACES;
+	}
+	private static void report(String shape, String method, double nanosPerFace)
+	{   System.out.println(String.format("%-9s %-14s %7.2f ns/face", shape, method, nanosPerFace));
+	}
+	/**
+	 * @return a random point in a cube 20 units across
+	 */
+	private static float[] point(Random random)
+	{   return new float[] { random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10 };
+	}
+
+	/** the number of faces computed in each pass */
+	private static final int FACES = 65536;
+	/** how long each way is run before it is timed, in nanoseconds */
+	private static final long WARMUP = 2000000000L;
+	/** the number of passes timed */
+	private static final int RUNS = 50;
+}
@@ -0,0 +1,63 @@
+package GraphicsLab;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Checks that MeshFile maps the meshes it writes, and refuses a file with an
+ * index of a vertex its mesh does not have rather than handing it to the
+ * graphics card. Run with assertions enabled or not; a failure throws
+ */
+public class MeshFileTest
+{
+	public static void main(String[] args) throws IOException
+	{
+		VertexArray vertices = new VertexArray();
+		vertices.add(0.0f, 0.0f, 0.0f);
+		vertices.add(1.0f, 0.0f, 0.0f);
+		vertices.add(0.0f, 1.0f, 0.0f);
+		Map<String, Mesh> meshes = new LinkedHashMap<String, Mesh>();
+		meshes.put("triangle", new Mesh(vertices, new int[] { 0, 1, 2 }, false));
+
+		File file = File.createTempFile("MeshFileTest", ".mesh");
+		try
+		{
+			MeshFile.write(file, meshes);
+			check(MeshFile.map(file).get("triangle").getTriangleCount() == 1, "the triangle is mapped");
+
+			// point the last index one past the last vertex
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try
+			{
+				raf.seek(MeshFile.HEADER_SIZE + MeshFile.NAME_SIZE + 16);
+				int indexOffset = Integer.reverseBytes(raf.readInt());
+				raf.seek(indexOffset + 8);
+				raf.writeInt(Integer.reverseBytes(3));
+			}
+			finally
+			{   raf.close();
+			}
+			boolean refused = false;
+			try
+			{   MeshFile.map(file);
+			}
+			catch(IOException e)
+			{   refused = true;
+			}
+			check(refused, "an index past the last vertex is refused");
+		}
+		finally
+		{   file.delete();
+		}
+		System.out.println("MeshFileTest passed");
+	}
+
+	private static void check(boolean condition, String message)
+	{
+		if(!condition)
+		{   throw new AssertionError(message);
+		}
+	}
+}
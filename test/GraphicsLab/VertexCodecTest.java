@@ -0,0 +1,132 @@
+package GraphicsLab;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Checks that values decoded by VertexCodec are within the error bounds its
+ * documentation gives. Run with assertions enabled or not; a failure throws
+ */
+public class VertexCodecTest
+{
+	public static void main(String[] args)
+	{
+		snorm16();
+		snorm8();
+		octahedral();
+		positions();
+		System.out.println("VertexCodecTest passed");
+	}
+
+	/**
+	 * Every value round trips through snorm16 within half a step, and the ends and middle exactly
+	 */
+	private static void snorm16()
+	{
+		check(VertexCodec.decodeSnorm16(VertexCodec.encodeSnorm16(-1.0f)) == -1.0f, "snorm16 -1");
+		check(VertexCodec.decodeSnorm16(VertexCodec.encodeSnorm16(0.0f)) == 0.0f, "snorm16 0");
+		check(VertexCodec.decodeSnorm16(VertexCodec.encodeSnorm16(1.0f)) == 1.0f, "snorm16 1");
+		check(VertexCodec.decodeSnorm16(VertexCodec.encodeSnorm16(2.0f)) == 1.0f, "snorm16 clamps");
+		for(int i = -100000; i <= 100000; i++)
+		{
+			float value = i / 100000.0f;
+			float error = Math.abs(VertexCodec.decodeSnorm16(VertexCodec.encodeSnorm16(value)) - value);
+			check(error <= 1.0f / 65534.0f + 1e-7f, "snorm16 error " + error + " at " + value);
+		}
+	}
+	/**
+	 * Every value round trips through snorm8 within 1 / 254, and the ends and middle exactly
+	 */
+	private static void snorm8()
+	{
+		check(VertexCodec.decodeSnorm8(VertexCodec.encodeSnorm8(-1.0f)) == -1.0f, "snorm8 -1");
+		check(VertexCodec.decodeSnorm8(VertexCodec.encodeSnorm8(0.0f)) == 0.0f, "snorm8 0");
+		check(VertexCodec.decodeSnorm8(VertexCodec.encodeSnorm8(1.0f)) == 1.0f, "snorm8 1");
+		for(int i = -10000; i <= 10000; i++)
+		{
+			float value = i / 10000.0f;
+			float error = Math.abs(VertexCodec.decodeSnorm8(VertexCodec.encodeSnorm8(value)) - value);
+			check(error <= 1.0f / 254.0f + 1e-7f, "snorm8 error " + error + " at " + value);
+		}
+	}
+	/**
+	 * The axes, normals on the planes between them in both hemispheres, and
+	 * random normals all round trip within 0.0001 radians
+	 */
+	private static void octahedral()
+	{
+		float[][] normals = {
+			{ 1, 0, 0 }, { -1, 0, 0 }, { 0, 1, 0 }, { 0, -1, 0 }, { 0, 0, 1 }, { 0, 0, -1 },
+			{ 0, 0.6f, 0.8f }, { 0, 0.6f, -0.8f }, { 0, -0.6f, -0.8f }, { 0.6f, 0, -0.8f }, { -0.6f, 0, -0.8f },
+			{ 0.6f, 0.8f, 0 }, { -0.6f, -0.8f, 0 }
+		};
+		for(float[] normal : normals)
+		{   octahedral(normal[0], normal[1], normal[2]);
+		}
+		Random random = new Random(14);
+		for(int i = 0; i < 200000; i++)
+		{
+			Vec3 normal = new Vec3((float) random.nextGaussian(), (float) random.nextGaussian(),
+				(float) random.nextGaussian()).normalise();
+			octahedral(normal.x, normal.y, normal.z);
+		}
+	}
+	/**
+	 * Checks one unit normal round trips through the octahedral encoding within 0.0001 radians
+	 */
+	private static void octahedral(float x, float y, float z)
+	{
+		Vec3 decoded = VertexCodec.decodeOctahedral(VertexCodec.encodeOctahedral(x, y, z), new Vec3());
+		// the angle from the cross product, as acos of a dot product near 1
+		// is swamped by float rounding in the lengths
+		double dot = (double) decoded.x * x + (double) decoded.y * y + (double) decoded.z * z;
+		double crossX = (double) decoded.y * z - (double) decoded.z * y;
+		double crossY = (double) decoded.z * x - (double) decoded.x * z;
+		double crossZ = (double) decoded.x * y - (double) decoded.y * x;
+		double angle = Math.atan2(Math.sqrt(crossX * crossX + crossY * crossY + crossZ * crossZ), dot);
+		check(angle <= 1e-4, "octahedral error " + angle + " radians at (" + x + ", " + y + ", " + z + ")");
+	}
+	/**
+	 * Packed positions decode within Packing.getPositionError of the originals
+	 */
+	private static void positions()
+	{
+		VertexArray verts = new VertexArray();
+		Random random = new Random(16);
+		for(int i = 0; i < 10000; i++)
+		{
+			int v = verts.add(random.nextFloat() * 40.0f - 7.0f, random.nextFloat() * 3.0f + 2.0f,
+				random.nextFloat() * -25.0f);
+			verts.setNormal(v, 0.0f, 1.0f, 0.0f);
+		}
+		VertexCodec.Packing packing = new VertexCodec.Packing();
+		ByteBuffer packed = VertexCodec.pack(verts, false, packing);
+		ByteBuffer stored = ByteBuffer.allocate(32);
+		packing.store(stored);
+		stored.flip();
+		float centreX = stored.getFloat(), centreY = stored.getFloat(), centreZ = stored.getFloat();
+		float scale = stored.getFloat() / 32767.0f;
+		// float rounding in the subtraction and division while encoding, and in decoding
+		float bound = packing.getPositionError() + 4 * Math.ulp(40.0f);
+		packed.order(ByteOrder.nativeOrder());
+		for(int v = 0; v < verts.size(); v++)
+		{
+			int base = v * VertexCodec.STRIDE;
+			float x = centreX + packed.getShort(base) * scale;
+			float y = centreY + packed.getShort(base + 2) * scale;
+			float z = centreZ + packed.getShort(base + 4) * scale;
+			check(Math.abs(x - verts.getX(v)) <= bound && Math.abs(y - verts.getY(v)) <= bound
+				&& Math.abs(z - verts.getZ(v)) <= bound, "position " + v + " is further than " + bound + " off");
+		}
+	}
+
+	/**
+	 * @throws AssertionError with a message if a condition does not hold
+	 */
+	private static void check(boolean condition, String message)
+	{
+		if(!condition)
+		{   throw new AssertionError(message);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package coursework.barberm1;
+
+import GraphicsLab.Triangulator;
+import GraphicsLab.VertexArray;
+
+/**
+ * Checks that the lever's T shaped front face triangulates into triangles
+ * that cover it exactly and face the same way, including when the same
+ * Triangulator has already seen the same handles in another VertexArray, as
+ * happens with the one Util shares between the scene and the cockpit. Run
+ * with assertions enabled or not; a failure throws
+ */
+public class TriangulatorTest {
+
+	public static void main(String[] args) {
+		CockpitGeometry geometry = new CockpitGeometry();
+		leverFront(new Triangulator(), geometry);
+
+		// the same handles in another array, placed around a convex octagon,
+		// must not be handed back for the lever
+		VertexArray other = new VertexArray();
+		int[] handles = geometry.leverFront;
+		float[][] octagon = new float[geometry.verts.size()][];
+		for (int k = 0; k < handles.length; k++) {
+			double angle = 2 * Math.PI * k / handles.length;
+			octagon[handles[k]] = new float[] { (float) Math.cos(angle), (float) Math.sin(angle), 0.0f };
+		}
+		for (int i = 0; i < octagon.length; i++) {
+			float[] p = octagon[i] != null ? octagon[i] : new float[3];
+			other.add(p[0], p[1], p[2]);
+		}
+		Triangulator shared = new Triangulator();
+		shared.triangles(other, handles, handles.length);
+		leverFront(shared, geometry);
+		check(shared.size() == 2, "one cached polygon per array, not " + shared.size());
+
+		System.out.println("TriangulatorTest passed");
+	}
+
+	/**
+	 * The lever's front face splits into 6 triangles that all wind the same
+	 * way as the outline and add up to its area
+	 */
+	private static void leverFront(Triangulator triangulator, CockpitGeometry geometry) {
+		VertexArray verts = geometry.verts;
+		int[] handles = geometry.leverFront;
+		check(handles.length == 8, "the lever's front has 8 vertexes, not " + handles.length);
+		int[] triangles = triangulator.triangles(verts, handles, handles.length);
+		check(triangles.length == 6 * 3, "6 triangles, not " + triangles.length / 3.0f);
+
+		// the outline's normal by Newell's method, twice its area long
+		double nx = 0, ny = 0, nz = 0;
+		for (int i = 0; i < handles.length; i++) {
+			int a = handles[i], b = handles[(i + 1) % handles.length];
+			nx += (verts.getY(a) - verts.getY(b)) * (verts.getZ(a) + verts.getZ(b));
+			ny += (verts.getZ(a) - verts.getZ(b)) * (verts.getX(a) + verts.getX(b));
+			nz += (verts.getX(a) - verts.getX(b)) * (verts.getY(a) + verts.getY(b));
+		}
+		double outline = Math.sqrt(nx * nx + ny * ny + nz * nz);
+
+		double total = 0;
+		for (int t = 0; t < triangles.length; t += 3) {
+			int a = handles[triangles[t]], b = handles[triangles[t + 1]], c = handles[triangles[t + 2]];
+			double ux = verts.getX(b) - verts.getX(a), uy = verts.getY(b) - verts.getY(a), uz = verts.getZ(b) - verts.getZ(a);
+			double vx = verts.getX(c) - verts.getX(a), vy = verts.getY(c) - verts.getY(a), vz = verts.getZ(c) - verts.getZ(a);
+			double cx = uy * vz - uz * vy, cy = uz * vx - ux * vz, cz = ux * vy - uy * vx;
+			// twice the triangle's area along the outline's normal, negative if it winds the other way
+			double area = (cx * nx + cy * ny + cz * nz) / outline;
+			check(area > 0, "triangle " + t / 3 + " winds against the outline");
+			total += area;
+		}
+		check(Math.abs(total - outline) <= 1e-5 * outline, "triangles cover " + total / 2 + ", not " + outline / 2);
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+}